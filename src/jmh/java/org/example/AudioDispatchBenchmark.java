@@ -0,0 +1,65 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import java.util.concurrent.TimeUnit;
+
+/** 音频分发：AudioEngine 的即时命中音、模式排程与调度器入队，发往丢弃一切的 Receiver */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AudioDispatchBenchmark {
+    /** 只计数的 Receiver，代替真实合成器 */
+    static final class NullReceiver implements Receiver {
+        volatile long received;
+        @Override public void send(MidiMessage message, long timeStamp){ received++; }
+        @Override public void close(){}
+    }
+
+    private final NullReceiver receiver = new NullReceiver();
+    private AudioEngine engine;
+    private Instrument piano, drum;
+    private int note;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        engine = new AudioEngine(receiver);
+        piano = GameSimulation.createInstruments().get(1);
+        drum = GameSimulation.createInstruments().get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){ engine.shutdown(); }
+
+    @Benchmark
+    public long hitNote(){
+        engine.playHitNote(piano);
+        return receiver.received;
+    }
+
+    @Benchmark
+    public long hitDrum(){
+        engine.playHitNote(drum);
+        return receiver.received;
+    }
+
+    /** 同一拍内的重复触发走合并路径，跨拍时排入两拍低音 */
+    @Benchmark
+    public long pattern(){
+        engine.playPattern(piano);
+        return engine.getMergedPatterns();
+    }
+
+    /** 调度器入队一对到期的 noteOn/noteOff，由分发线程立即发送 */
+    @Benchmark
+    public int scheduleNow(){
+        MidiScheduler s = engine.getScheduler();
+        long t = System.nanoTime();
+        note = (note + 1) & 0x3F;
+        s.noteOn(t, 0, 36 + note, 100);
+        s.noteOff(t, 0, 36 + note);
+        return note;
+    }
+}
@@ -0,0 +1,87 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每种攻击特效与每个 Boss 画到离屏 BufferedImage 的耗时。
+ * 特效先推进到生命周期前段再反复绘制；烟花类的粒子统一由 ParticleBenchmark 覆盖。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DrawBenchmark {
+    static final int W = 900, H = 700;
+
+    /** 离屏画布 */
+    @State(Scope.Thread)
+    public static class Canvas {
+        BufferedImage image;
+        Graphics2D g;
+        @Setup(Level.Trial)
+        public void setup(){
+            image = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+            g = image.createGraphics();
+            g.setClip(0, 0, W, H); // 部分特效按 clip 取画布尺寸
+        }
+        @TearDown(Level.Trial)
+        public void tearDown(){ g.dispose(); }
+    }
+
+    @State(Scope.Thread)
+    public static class EffectState {
+        @Param({"Ripple", "FullScreenRipple", "Shockwave", "CorePulse", "UltimateOverlay", "HackOverlay",
+                "CircleTelegraph", "EdgeThreat", "HealingBurst", "BlurTelegraph"})
+        public String effect;
+        AttackEffects.AttackEffect instance;
+        @Setup(Level.Trial)
+        public void setup(){ instance = create(effect); instance.update(120); }
+
+        static AttackEffects.AttackEffect create(String name){
+            return switch(name){
+                case "Ripple" -> new AttackEffects.RippleEffect(W/2, H/2, Color.BLUE);
+                case "FullScreenRipple" -> new AttackEffects.FullScreenRippleEffect(W, H, Color.GREEN);
+                case "Shockwave" -> new AttackEffects.ShockwaveEffect(W, H);
+                case "CorePulse" -> new AttackEffects.CorePulseEffect(W, H, new Color(120,200,255));
+                case "UltimateOverlay" -> new AttackEffects.UltimateOverlayEffect(Color.MAGENTA, 5000);
+                case "HackOverlay" -> new AttackEffects.HackOverlayEffect();
+                case "CircleTelegraph" -> new AttackEffects.CircleTelegraphEffect(W/2, H/3, 300, 1500, "SPACE");
+                case "EdgeThreat" -> new AttackEffects.EdgeThreatEffect(1500, "SPACE");
+                case "HealingBurst" -> new AttackEffects.HealingBurstEffect(W, H, new Color(255,140,90), 0.35, 1200);
+                case "BlurTelegraph" -> new AttackEffects.BlurTelegraphEffect(W/2, H/3, 260, 1500, new Color(255,230,90), true);
+                default -> throw new IllegalArgumentException(name);
+            };
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BossState {
+        @Param({"BugBoss", "MatrixBoss", "NeuralCoreBoss"})
+        public String boss;
+        BossEntity instance;
+        @Setup(Level.Trial)
+        public void setup(){
+            instance = switch(boss){
+                case "BugBoss" -> new BugBoss(12_000_000, "code");
+                case "MatrixBoss" -> new MatrixBoss(18_000_000, "matrix");
+                default -> new NeuralCoreBoss(25_000_000, "core");
+            };
+        }
+    }
+
+    @Benchmark
+    public BufferedImage drawEffect(Canvas c, EffectState s){
+        s.instance.draw(c.g);
+        return c.image;
+    }
+
+    /** 每次推进一个模拟步再画，覆盖 Boss 帧缓存随时间的命中/重建 */
+    @Benchmark
+    public BufferedImage drawBoss(Canvas c, BossState s){
+        s.instance.update(SimulationLoop.TICK_MS);
+        s.instance.draw(c.g, W/2, H/3);
+        return c.image;
+    }
+}
@@ -0,0 +1,62 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 烟花粒子：稳定在给定存活数时的一个模拟步（特效推进 + 粒子推进 + 补发）与一帧绘制。
+ * 每轮以一个超级烟花开场，其余由单簇烟花补足；消亡的簇在同一步内补发，存活数保持在目标附近。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParticleBenchmark {
+    @Param({"1000", "10000", "50000"})
+    public int particles;
+
+    private final Random r = new Random(7);
+    private final List<AttackEffects.AttackEffect> effects = new ArrayList<>();
+    private BufferedImage canvas;
+    private Graphics2D g;
+
+    @Setup(Level.Iteration)
+    public void setup(){
+        ParticleSystem.global().clear();
+        effects.clear();
+        effects.add(new AttackEffects.SuperFireworkEffect(900, 700, Color.RED));
+        refill();
+        canvas = new BufferedImage(900, 700, BufferedImage.TYPE_INT_ARGB);
+        g = canvas.createGraphics();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(){ g.dispose(); ParticleSystem.global().clear(); }
+
+    @Benchmark
+    public int update(){
+        for(Iterator<AttackEffects.AttackEffect> it = effects.iterator(); it.hasNext();){
+            AttackEffects.AttackEffect ef = it.next(); ef.update(SimulationLoop.TICK_MS); if(!ef.isAlive()) it.remove();
+        }
+        ParticleSystem.global().update(SimulationLoop.TICK_MS);
+        refill();
+        return ParticleSystem.global().getAlive();
+    }
+
+    // 补发到目标数量，保持稳态
+    private void refill(){
+        while(ParticleSystem.global().getAlive() < particles) effects.add(new AttackEffects.FireworkEffect(r.nextInt(900), r.nextInt(350) + 80, Color.CYAN));
+    }
+
+    @Benchmark
+    public BufferedImage draw(){
+        ParticleSystem.global().draw(g);
+        return canvas;
+    }
+}
@@ -0,0 +1,54 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** 投射物：池内给定数量时的一步推进（移动 + 拖尾 + 命中删除 + 补发），以及带投射物的完整规则步 */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectileBenchmark {
+    @Param({"256", "4096", "65536"})
+    public int projectiles;
+
+    private final Random r = new Random(11);
+    private final ChunkedUpdate update = new ChunkedUpdate(256);
+    private final ChunkedUpdate.RangeBody moveBody = this::move;
+    private ProjectileStore store;
+    private GameSimulation sim;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        store = new ProjectileStore(projectiles);
+        while(store.size() < projectiles) spawn();
+        sim = new GameSimulation(GameSimulation.createBosses(), GameSimulation.createInstruments(), () -> now, 3);
+    }
+
+    private void spawn(){
+        store.spawn(50 + r.nextInt(800), 720, 450 + r.nextInt(120) - 60, 193, 600, 10000, Color.ORANGE);
+    }
+
+    private void move(int from, int to){ store.move(from, to, SimulationLoop.TICK_MS / 1000f, true, ProjectileStore.MAX_TRAIL); }
+
+    @Benchmark
+    public int storeStep(){
+        update.run(store.size(), moveBody);
+        store.removeHits();
+        while(store.size() < projectiles) spawn();
+        return store.size();
+    }
+
+    /** 规则核心一步：每 15 步（约 120ms）按一次乐器，投射物数量由游戏节奏决定 */
+    @Benchmark
+    public int simulationStep(){
+        now += SimulationLoop.TICK_MS;
+        if(now % 120 < SimulationLoop.TICK_MS) sim.triggerInstrument((int)(now / 120 % 5));
+        sim.step(SimulationLoop.TICK_MS);
+        if(sim.isBossSwitching()) sim.restart();
+        return sim.getProjectiles().size();
+    }
+}
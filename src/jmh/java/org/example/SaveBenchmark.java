@@ -0,0 +1,62 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存档：快照写入、读取（含日志重放）、写后读往返，以及单条预写日志追加。
+ * user.home 由 build.gradle 指到 build/jmh-home，不会动到真实存档。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SaveBenchmark {
+    private static final double[] MAX_HEALTHS = {12_000_000, 18_000_000, 25_000_000};
+
+    private SaveManager.SaveData data;
+    private long tick;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Files.createDirectories(Paths.get(System.getProperty("user.home")));
+        data = new SaveManager.SaveData();
+        data.currentBossIndex = 1; data.totalScore = 9_876_543; data.bpm = 132; data.skillCharge = 123.5; data.comboCount = 17;
+        data.bossHealths = new double[]{0, 7_500_000, 25_000_000}; data.ultimateComboRemainMs = 1200; data.volume = 80; data.bpmMax = 180;
+        SaveManager.save(data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){ SaveManager.close(); }
+
+    @Benchmark
+    public SaveManager.SaveData save(){
+        data.totalScore = ++tick;
+        data.journalSeq = SaveManager.journal().currentSeq();
+        SaveManager.save(data);
+        return data;
+    }
+
+    @Benchmark
+    public SaveManager.SaveData load(){
+        return SaveManager.load(MAX_HEALTHS.length, MAX_HEALTHS);
+    }
+
+    @Benchmark
+    public SaveManager.SaveData roundTrip(){
+        save();
+        return load();
+    }
+
+    /** 一次命中对应的日志追加（游戏内最频繁的写入） */
+    @Benchmark
+    public long journalAppend(){
+        SaveJournal journal = SaveManager.journal();
+        long seq = journal.append(SaveJournal.DAMAGE, 1, 1000);
+        if(journal.needsSnapshot()){ journal.markSnapshot(); data.journalSeq = seq; SaveManager.save(data); }
+        return seq;
+    }
+}
@@ -0,0 +1,127 @@
+package org.example;
+
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 主动渲染：Canvas + BufferStrategy，在独立线程按显示器刷新率节奏绘制并翻页，
+ * 绕开 Swing 计时器与 repaint 合并造成的帧率上限和抖动。后备缓冲（VolatileImage）内容丢失时整帧重绘。
+ */
+public class ActiveRenderer {
+    private static final Logger LOGGER = Logger.getLogger(ActiveRenderer.class.getName());
+
+    /** 绘制一帧到给定的后备缓冲 */
+    public interface Painter { void paint(Graphics2D g, int w, int h); }
+
+    // 暂停时渲染线程挂起：系统重绘（遮挡后露出、repaint）只请求渲染线程补一帧，不在 EDT 上绘制
+    @SuppressWarnings("serial")
+    private final Canvas canvas = new Canvas(){
+        @Override public void paint(Graphics g){ requestFrame(); }
+        @Override public void update(Graphics g){ requestFrame(); }
+    };
+    private final Painter painter;
+    private volatile double avgFrameMs = 16.0;
+    private volatile long contentLosses = 0;
+    private volatile boolean running = true;
+    private volatile boolean paused = false;
+    private volatile boolean renderOnce = false; // 暂停期间补画一帧（暂停画面、尺寸变化、重新露出）
+    private Thread thread;
+
+    public ActiveRenderer(Painter painter){
+        this.painter = painter;
+        canvas.setFocusable(false); // 焦点与按键绑定保持在 Swing 面板上
+        canvas.setBackground(Color.BLACK);
+        canvas.addComponentListener(new ComponentAdapter(){
+            @Override public void componentResized(ComponentEvent e){ requestFrame(); }
+            @Override public void componentShown(ComponentEvent e){ requestFrame(); }
+        });
+    }
+
+    public Canvas getCanvas(){ return canvas; }
+    public Thread getThread(){ return thread; }
+
+    public void start(){
+        thread = new Thread(this::renderLoop, "Render-Loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** 暂停时渲染线程先画完一帧（含暂停画面）再挂起，恢复后重新对齐帧节奏 */
+    public void setPaused(boolean p){
+        if(p) renderOnce = true;
+        paused = p;
+        if(thread != null) LockSupport.unpark(thread);
+    }
+
+    /** 暂停期间请求补画一帧；运行中每帧都会重画，忽略 */
+    public void requestFrame(){
+        if(!paused) return;
+        renderOnce = true;
+        if(thread != null) LockSupport.unpark(thread);
+    }
+
+    public void shutdown(){
+        running = false;
+        if(thread == null) return;
+        LockSupport.unpark(thread);
+        try { thread.join(500); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+    }
+
+    private void renderLoop(){
+        BufferStrategy bs = null;
+        long last = System.nanoTime(), next = last;
+        while(running){
+            if(paused && !renderOnce){ LockSupport.park(this); last = next = System.nanoTime(); continue; }
+            boolean single = paused; // 暂停期间的补画帧：不计入帧时间
+            if(single) renderOnce = false;
+            long period = framePeriodNanos();
+            int w = canvas.getWidth(), h = canvas.getHeight();
+            if(!canvas.isDisplayable() || w <= 0 || h <= 0){ bs = null; LockSupport.parkNanos(this, period); last = next = System.nanoTime(); continue; }
+            try {
+                if(bs == null){ canvas.createBufferStrategy(2); bs = canvas.getBufferStrategy(); }
+                do {
+                    do {
+                        Graphics2D g = (Graphics2D) bs.getDrawGraphics();
+                        try { painter.paint(g, w, h); } finally { g.dispose(); }
+                    } while(bs.contentsRestored());
+                    bs.show();
+                    if(bs.contentsLost()) contentLosses++;
+                } while(bs.contentsLost());
+                Toolkit.getDefaultToolkit().sync();
+            } catch (IllegalStateException e){
+                bs = null; // 组件刚被移除/重建，下次重新创建缓冲
+            } catch (RuntimeException e){
+                LOGGER.log(Level.WARNING, "主动渲染异常", e);
+            }
+            long now = System.nanoTime();
+            if(single){ last = next = now; continue; }
+            recordFrame(now - last); last = now;
+            next += period; // 按刷新周期对齐下一帧；落后时不补帧
+            if(next < now) next = now;
+            LockSupport.parkNanos(this, next - now);
+        }
+    }
+
+    // 按显示器刷新率确定帧周期（未知时按 60Hz）
+    private long framePeriodNanos(){
+        int hz = DisplayMode.REFRESH_RATE_UNKNOWN;
+        GraphicsConfiguration gc = canvas.getGraphicsConfiguration();
+        if(gc != null){ DisplayMode dm = gc.getDevice().getDisplayMode(); if(dm != null) hz = dm.getRefreshRate(); }
+        if(hz <= 0) hz = 60;
+        return 1_000_000_000L / hz;
+    }
+
+    // 帧时间分位数由 PerfMetrics 统计，这里只保留平滑平均供自适应画质使用
+    private void recordFrame(long nanos){
+        avgFrameMs = avgFrameMs + (nanos / 1e6 - avgFrameMs) * 0.08;
+        PerfMetrics.global().record(PerfMetrics.Metric.FRAME, nanos);
+    }
+
+    public double getAvgFrameMs(){ return avgFrameMs; }
+    public long getContentLosses(){ return contentLosses; }
+}
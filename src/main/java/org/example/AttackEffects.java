@@ -1,43 +1,47 @@
 package org.example;
 
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.awt.image.BufferedImage;
 import java.util.Random;
 
 /** 攻击特效集合：包含抽象基类与具体烟花/波纹实现 */
 public class AttackEffects {
+    // 特效随机源：每个特效从一个可设种子的序列取种子，录制回放时粒子结果可复现
+    private static final Random SEEDS = new Random();
+    public static synchronized void seedRandom(long seed){ SEEDS.setSeed(seed); }
+    static synchronized Random newRandom(){ return new Random(SEEDS.nextLong()); }
+
     /** 基类 */
     public static abstract class AttackEffect {
         protected boolean alive = true;
         public boolean isAlive(){ return alive; }
         public abstract void update(long dt);
         public abstract void draw(Graphics2D g2d);
+        /** 本帧绘制范围并入脏区域；返回 false 表示覆盖整屏（默认） */
+        public boolean addDirtyBounds(DirtyRegions dirty){ return false; }
     }
 
-    /** 粒子粒状烟花 */
+    /** 粒子粒状烟花：只负责发射，粒子由全局 ParticleSystem 统一推进与绘制 */
     public static class FireworkEffect extends AttackEffect {
-        private static class P { double x,y,vx,vy,life,maxLife; Color c; double size; }
-        private static final java.util.Deque<P> P_POOL = new java.util.ArrayDeque<>();
-        private static P obtain(){ P p = P_POOL.pollFirst(); if(p==null) p=new P(); return p; }
-        private static void recycle(P p){ p.vx=p.vy=0; p.life=0; p.maxLife=0; P_POOL.offerFirst(p); }
-        private final List<P> ps = new ArrayList<>();
-        private final Random r = new Random();
-        private final int cx, cy; private final double density;
+        private final Random r = newRandom();
+        private long life = 0; private final long maxLife;
         public FireworkEffect(int cx, int cy, Color base){ this(cx,cy,base,1.0); }
-        public FireworkEffect(int cx,int cy,Color base,double density){ this.cx=cx; this.cy=cy; this.density=density; int baseCount = 65 + r.nextInt(25); int count = Math.max(12, (int)(baseCount * density)); for(int i=0;i<count;i++){ P p = obtain(); double ang = r.nextDouble()*Math.PI*2; double sp = 60 + r.nextDouble()*180; p.vx = Math.cos(ang)*sp; p.vy = Math.sin(ang)*sp; p.x = cx; p.y = cy; p.life = 0; p.maxLife = 600 + r.nextInt(500); int rr = Math.min(255, base.getRed() + r.nextInt(80)); int gg = Math.min(255, base.getGreen() + r.nextInt(80)); int bb = Math.min(255, base.getBlue() + r.nextInt(80)); p.c = new Color(rr,gg,bb,255); p.size = 3 + r.nextDouble()*5; ps.add(p);} }
-        @Override public void update(long dt) {
-            if(ps.isEmpty()){ alive = false; return; }
-            double dts = dt/1000.0; Iterator<P> it = ps.iterator();
-            while(it.hasNext()){ P p = it.next(); p.life += dt; p.x += p.vx * dts; p.y += p.vy * dts; p.vy += 40 * dts; if(p.life > p.maxLife){ it.remove(); recycle(p);} }
-            if(ps.isEmpty()) alive = false;
-        }
-        @Override public void draw(Graphics2D g2d) {
-            Composite old = g2d.getComposite();
-            for(P p: ps){ float alpha = (float)(1.0 - p.life / p.maxLife); alpha = Math.max(0, Math.min(1, alpha)); g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha)); g2d.setColor(p.c); g2d.fillOval((int)(p.x - p.size/2), (int)(p.y - p.size/2), (int)p.size, (int)p.size); }
-            g2d.setComposite(old);
+        public FireworkEffect(int cx,int cy,Color base,double density){ maxLife = emitBurst(r, cx, cy, base, density); }
+        /** 向全局粒子系统发射一簇烟花，返回其中最长的粒子寿命（毫秒） */
+        static long emitBurst(Random r, int cx, int cy, Color base, double density){
+            ParticleSystem ps = ParticleSystem.global();
+            int baseCount = 65 + r.nextInt(25); int count = Math.max(12, (int)(baseCount * density)); long longest = 0;
+            for(int i=0;i<count;i++){
+                double ang = r.nextDouble()*Math.PI*2; double sp = 60 + r.nextDouble()*180; int maxLife = 600 + r.nextInt(500);
+                int rr = Math.min(255, base.getRed() + r.nextInt(80)); int gg = Math.min(255, base.getGreen() + r.nextInt(80)); int bb = Math.min(255, base.getBlue() + r.nextInt(80));
+                if(!ps.emit(cx, cy, (float)(Math.cos(ang)*sp), (float)(Math.sin(ang)*sp), maxLife, (float)(3 + r.nextDouble()*5), 0xFF000000 | rr<<16 | gg<<8 | bb)) break; // 超出预算
+                longest = Math.max(longest, maxLife);
+            }
+            return longest;
         }
+        @Override public void update(long dt) { life += dt; if(life > maxLife) alive = false; }
+        @Override public void draw(Graphics2D g2d) {} // 粒子在 ParticleSystem.draw 中统一绘制
+        @Override public boolean addDirtyBounds(DirtyRegions dirty){ return true; } // 范围由 ParticleSystem 汇报
     }
 
     /** 波纹扩散 */
@@ -55,32 +59,31 @@ public class AttackEffects {
             thickness = Math.max(1, thickness - dt * 0.008);
             if(radius >= maxRadius) alive = false;
         }
+        @Override public boolean addDirtyBounds(DirtyRegions dirty){ dirty.addCircle(cx, cy, radius + thickness); return true; }
         @Override public void draw(Graphics2D g2d){
             float alpha = (float)(1 - radius / maxRadius);
             alpha = Math.max(0, alpha);
             g2d.setStroke(new BasicStroke((float)thickness));
             g2d.setColor(new Color(base.getRed(), base.getGreen(), base.getBlue(), (int)(alpha*180)));
             g2d.drawOval((int)(cx - radius), (int)(cy - radius), (int)(radius*2), (int)(radius*2));
-            // 内部柔光
-            RadialGradientPaint rg = new RadialGradientPaint(
-                    new Point(cx,cy), (float)radius,
-                    new float[]{0f,1f},
-                    new Color[]{new Color(base.getRed(), base.getGreen(), base.getBlue(), (int)(alpha*120)), new Color(base.getRed(), base.getGreen(), base.getBlue(), 0)});
-            Paint old = g2d.getPaint();
-            g2d.setPaint(rg);
-            g2d.fillOval((int)(cx - radius), (int)(cy - radius), (int)(radius*2), (int)(radius*2));
-            g2d.setPaint(old);
+            // 内部柔光（预渲染光晕贴图）
+            Composite old = g2d.getComposite();
+            g2d.setComposite(SpriteAtlas.alpha(alpha * 120 / 255f));
+            SpriteAtlas.drawScaled(g2d, SpriteAtlas.glow(base.getRGB()), cx, cy, (int)radius);
+            g2d.setComposite(old);
         }
     }
 
     /** 超级烟花特效 */
     public static class SuperFireworkEffect extends AttackEffect {
-        private final List<FireworkEffect> bursts = new ArrayList<>();
-        private long elapsed = 0; private final int durationMs = 1600; private final Random r = new Random(); private final int w, h; private final Color base; private final double density;
+        private long elapsed = 0; private long lingerUntil = 0; private final int durationMs = 1600; private final Random r = newRandom(); private final int w, h; private final Color base; private final double density;
         public SuperFireworkEffect(int w,int h, Color base){ this(w,h,base,1.0); }
-        public SuperFireworkEffect(int w,int h, Color base,double density){ this.w=w; this.h=h; this.base=base; this.density=density; for(int i=0;i<3;i++) bursts.add(new FireworkEffect(r.nextInt(w), r.nextInt(h/2)+h/8, base, density)); }
-        @Override public void update(long dt){ elapsed += dt; if (elapsed < durationMs) { double prob = 0.18 * density; if (r.nextDouble() < prob) bursts.add(new FireworkEffect(r.nextInt(w), r.nextInt(h/2)+h/8, base, density)); } Iterator<FireworkEffect> it = bursts.iterator(); while(it.hasNext()){ FireworkEffect f = it.next(); f.update(dt); if(!f.isAlive()) it.remove(); } if (elapsed >= durationMs && bursts.isEmpty()) alive = false; }
-        @Override public void draw(Graphics2D g2d){ for(FireworkEffect f: bursts) f.draw(g2d); }
+        public SuperFireworkEffect(int w,int h, Color base,double density){ this.w=w; this.h=h; this.base=base; this.density=density; for(int i=0;i<3;i++) burst(); }
+        private void burst(){ lingerUntil = Math.max(lingerUntil, elapsed + FireworkEffect.emitBurst(r, r.nextInt(w), r.nextInt(h/2)+h/8, base, density)); }
+        // 连发概率按 60Hz 帧标定，换算到实际步长
+        @Override public void update(long dt){ elapsed += dt; if (elapsed < durationMs) { double prob = 0.18 * density * dt / 16.0; if (r.nextDouble() < prob) burst(); } if (elapsed >= durationMs && elapsed > lingerUntil) alive = false; }
+        @Override public void draw(Graphics2D g2d){} // 粒子在 ParticleSystem.draw 中统一绘制
+        @Override public boolean addDirtyBounds(DirtyRegions dirty){ return true; }
     }
 
     /** 全屏波纹特效 */
@@ -95,6 +98,7 @@ public class AttackEffects {
             r += dt * 0.55; // 更快扩散
             if (r >= maxR) alive = false;
         }
+        @Override public boolean addDirtyBounds(DirtyRegions dirty){ dirty.addCircle(cx, cy, r + 3); return true; }
         @Override public void draw(Graphics2D g2d){
             float alpha = (float)(1 - r / maxR);
             alpha = Math.max(0, alpha);
@@ -114,6 +118,7 @@ public class AttackEffects {
             r += dt * 0.7; thickness = Math.max(2, thickness - dt*0.03);
             if (r >= maxR) alive = false;
         }
+        @Override public boolean addDirtyBounds(DirtyRegions dirty){ dirty.addCircle(cx, cy, r + thickness); return true; }
         @Override public void draw(Graphics2D g2d){
             float alpha = (float)(1 - r/maxR);
             g2d.setStroke(new BasicStroke((float)thickness));
@@ -127,6 +132,7 @@ public class AttackEffects {
         private double r=10; private final int cx,cy; private final int maxR; private final Color c;
         public CorePulseEffect(int w,int h,Color c){ this.cx=w/2; this.cy=h/3; this.maxR=(int)(Math.max(w,h)*0.9); this.c=c; }
         @Override public void update(long dt){ r += dt*0.6; if(r>=maxR) alive=false; }
+        @Override public boolean addDirtyBounds(DirtyRegions dirty){ dirty.addCircle(cx, cy, r + 5); return true; }
         @Override public void draw(Graphics2D g){ float a=(float)(1-r/maxR); g.setColor(new Color(c.getRed(),c.getGreen(),c.getBlue(),(int)(a*200))); g.setStroke(new BasicStroke(10f)); g.drawOval((int)(cx-r),(int)(cy-r),(int)(r*2),(int)(r*2)); }
     }
     /** 终极技能覆盖特效 */
@@ -138,7 +144,7 @@ public class AttackEffects {
         @Override public void draw(Graphics2D g){ float p = Math.min(1f, life/(float)maxLife); int alpha = (int)(255*(1-Math.abs(0.5f-p)*2)); g.setColor(new Color(base.getRed(),base.getGreen(),base.getBlue(), Math.min(200,alpha))); g.fillRect(0,0,g.getClipBounds().width,g.getClipBounds().height); }
     }
     public static class HackOverlayEffect extends AttackEffect {
-        private long life=0; private final long maxLife=5000; private final Random r = new Random();
+        private long life=0; private final long maxLife=5000; private final Random r = newRandom();
         @Override public void update(long dt){ life+=dt; if(life>maxLife) alive=false; }
         @Override public void draw(Graphics2D g){ int w=g.getClipBounds().width; int h=g.getClipBounds().height; float progress=life/(float)maxLife; // 扫描线
             for(int i=0;i<25;i++){ int y=(int)((((life/40)+i*18)%h)); g.setColor(new Color(0,255,160,40)); g.drawLine(0,y,w,y); }
@@ -153,9 +159,12 @@ public class AttackEffects {
         }
     }
     public static class CircleTelegraphEffect extends AttackEffect {
+        private static BufferedImage glow; // 背景淡光圆，按满透明度预渲染一次
+        private static final Font KEY_FONT = new Font("Monospaced", Font.BOLD, 30);
         private final long maxLife; private long life=0; private final int cx,cy; private final int startR; private final String key;
         public CircleTelegraphEffect(int cx,int cy,int startR,long duration,String key){ this.cx=cx;this.cy=cy;this.startR=startR;this.maxLife=duration;this.key=key; }
         @Override public void update(long dt){ life+=dt; if(life>maxLife) alive=false; }
+        @Override public boolean addDirtyBounds(DirtyRegions dirty){ dirty.addCircle(cx, cy, Math.max(8, startR*1.06*(1 - Math.min(1.0, life/(double)maxLife))) + 62); return true; } // 含脉冲外圈
         @Override public void draw(Graphics2D g){
             double p = Math.min(1.0, life/(double)maxLife);
             // 主收缩半径 + 轻微呼吸 (sin)
@@ -164,13 +173,10 @@ public class AttackEffects {
             // 背景淡光圆
             float coreAlpha = (float)(1 - p);
             coreAlpha = Math.max(0, Math.min(1, coreAlpha));
-            RadialGradientPaint rg = new RadialGradientPaint(
-                    new Point(cx,cy), r,
-                    new float[]{0f,0.55f,1f},
-                    new Color[]{new Color(255,210,110,(int)(160*coreAlpha)), new Color(255,160,60,(int)(70*coreAlpha)), new Color(255,120,0,0)});
-            Paint old = g.getPaint(); g.setPaint(rg); g.fillOval(cx-r, cy-r, r*2, r*2); g.setPaint(old);
-            // 多层描边 (外亮内暗)
+            if(glow == null) glow = SpriteAtlas.radial(new float[]{0f,0.55f,1f}, new Color[]{new Color(255,210,110,160), new Color(255,160,60,70), new Color(255,120,0,0)});
             Composite oldC = g.getComposite();
+            g.setComposite(SpriteAtlas.alpha(coreAlpha)); SpriteAtlas.drawScaled(g, glow, cx, cy, r); g.setComposite(oldC);
+            // 多层描边 (外亮内暗)
             for(int i=0;i<3;i++){
                 float f = 1 - i/3f; int cr = (int)(r * (1 - i*0.12)); if(cr<=0) break;
                 int alpha = (int)(180 * f * (1-p)); if(alpha<0) alpha=0;
@@ -187,8 +193,7 @@ public class AttackEffects {
             g.drawOval(cx-pr, cy-pr, pr*2, pr*2);
             // 文字提示阴影+本体
             String disp = key;
-            Font font = new Font("Monospaced", Font.BOLD, 30);
-            g.setFont(font);
+            g.setFont(KEY_FONT);
             FontMetrics fm = g.getFontMetrics(); int sw = fm.stringWidth(disp); int tx = cx - sw/2; int ty = cy + fm.getAscent()/2 - 4;
             g.setColor(new Color(0,0,0,180)); g.fillRoundRect(tx-12, ty-fm.getAscent()-6, sw+24, fm.getHeight()+12, 18,18);
             g.setColor(new Color(255,245,200)); g.drawString(disp, tx, ty);
@@ -219,12 +224,15 @@ public class AttackEffects {
         private final int cx,cy; private double r=10; private final int maxR; private final Color base; private final double speed; private long life=0; private final long maxLife;
         public HealingBurstEffect(int w,int h, Color base, double speed, long maxLife){ this.cx=w/2; this.cy=h/3; this.maxR=(int)(Math.max(w,h)*0.9); this.base=base; this.speed=speed; this.maxLife=maxLife; }
         @Override public void update(long dt){ life+=dt; r += dt*speed; if(life>maxLife) alive=false; }
+        @Override public boolean addDirtyBounds(DirtyRegions dirty){ dirty.addCircle(cx, cy, r + 3); return true; }
         @Override public void draw(Graphics2D g){ float a = (float)(1 - life/(float)maxLife); if(a<0)a=0; g.setColor(new Color(base.getRed(), base.getGreen(), base.getBlue(), (int)(a*180))); g.setStroke(new BasicStroke(6f)); g.drawOval((int)(cx-r),(int)(cy-r),(int)(r*2),(int)(r*2)); }
     }
     public static class BlurTelegraphEffect extends AttackEffect {
         private final long duration; private long life=0; private final int cx,cy; private final int maxR; private final Color base; private final boolean inward;
         public BlurTelegraphEffect(int cx,int cy,int radius,long duration,Color base, boolean inward){ this.cx=cx; this.cy=cy; this.maxR=radius; this.duration=duration; this.base=base; this.inward=inward; }
         @Override public void update(long dt){ life+=dt; if(life>duration) alive=false; }
-        @Override public void draw(Graphics2D g){ float p=Math.min(1f, life/(float)duration); int r = inward? (int)(maxR*(1-p)) : (int)(maxR*p); if(r<=0) r=1; int layers=10; Composite old=g.getComposite(); for(int i=layers;i>=1;i--){ float f=i/(float)layers; int rr=(int)(r*f); float a = inward? f*(1-p) : f*(1-p*0.7f); a=Math.min(0.9f,a); g.setColor(new Color(base.getRed(),base.getGreen(),base.getBlue(), (int)(a*140))); g.fillOval(cx-rr, cy-rr, rr*2, rr*2); } g.setComposite(old); }
+        @Override public boolean addDirtyBounds(DirtyRegions dirty){ dirty.addCircle(cx, cy, maxR); return true; }
+        // 10 层叠加的柔光盘预渲染为贴图，整体透明度随进度衰减
+        @Override public void draw(Graphics2D g){ float p=Math.min(1f, life/(float)duration); int r = inward? (int)(maxR*(1-p)) : (int)(maxR*p); if(r<=0) r=1; Composite old=g.getComposite(); g.setComposite(SpriteAtlas.alpha(inward? (1-p) : (1-p*0.7f))); SpriteAtlas.drawScaled(g, SpriteAtlas.layeredDisc(base.getRGB()), cx, cy, r); g.setComposite(old); }
     }
 }
@@ -1,7 +1,10 @@
 package org.example;
 
 import javax.sound.midi.*;
-import java.util.concurrent.*;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -9,16 +12,19 @@ import java.util.logging.Logger;
 public class AudioEngine {
     private static final Logger LOGGER = Logger.getLogger(AudioEngine.class.getName());
     private Synthesizer synthesizer;
-    private MidiChannel[] channels;
-    private final ExecutorService patternPool = Executors.newCachedThreadPool();
+    private volatile MidiChannel[] channels; // 合成器重新打开时在生命周期线程替换，分发线程读取
+    private MidiScheduler scheduler; // 统一时间线：所有模式音符均由其分发
+    private AudioRenderBus renderBus; // 可选预渲染模式（-Dcodesymphony.audio.render=true）
+    private static final boolean RENDER_MODE = Boolean.getBoolean("codesymphony.audio.render");
+    private static final int RENDER_BUFFER_FRAMES = Integer.getInteger("codesymphony.audio.bufferFrames", 1024);
+    // 模式背压：同一通道同一拍的重复触发合并为一次；队列接近饱和时直接丢弃
+    private static final int PATTERN_HIGH_WATER_EVENTS = 64;
+    private static final long HIT_GATE_NANOS = 180_000_000L; // 玩家击打（非鼓）的发声时长
+    private final long[] patternBeatByChannel = new long[16];
+    private volatile long mergedPatterns = 0, droppedPatterns = 0;
 
-    private volatile int bpm = 120; // 基准BPM
-    private volatile long beatLengthMs; // 每拍毫秒
-    private volatile long nextBeatTime; // 下一拍时间戳
-    private final ScheduledExecutorService beatScheduler = Executors.newSingleThreadScheduledExecutor();
-    private volatile long beatCounter = 0;
+    private final BeatClock beatClock = new BeatClock(120); // 基准BPM；拍位置按需推算
 
-    private final ScheduledExecutorService bgMelodyExec = Executors.newSingleThreadScheduledExecutor();
     private volatile boolean bgRunning = false;
     private final int BG_CHANNEL = 5; // 预留后台主旋律通道
     private volatile int bgSectionIndex = 0;
@@ -37,96 +43,140 @@ public class AudioEngine {
     private int barsPerChord = 1; // 和弦持续
     private int[] dropBassPattern = {36,36,36,38, 36,36,41,43};
 
-    private Thread bgThread; // optimized background melody loop thread
     private volatile boolean paused = false; // 新增：整体暂停标志
+    private volatile boolean suspended = false; // 挂起：合成器/渲染线程停止，节拍时钟冻结
+    private volatile int bgGeneration = 0; // 后台旋律代次：停止/挂起时递增，队列里残留的旧回调据此失效
+    private volatile boolean bgWanted = false; // 是否应播放后台旋律（挂起期间保持，恢复后重新开始）
+    private ExecutorService lifecycle; // 实时合成器的关闭/重新打开（打开音频线路、可能重载音色库，耗时数百毫秒），串行执行，不占用 EDT
 
     public AudioEngine() {
         try {
             synthesizer = MidiSystem.getSynthesizer();
-            synthesizer.open();
+            if (RENDER_MODE) renderBus = AudioRenderBus.open(synthesizer, RENDER_BUFFER_FRAMES);
+            if (renderBus == null) synthesizer.open();
             channels = synthesizer.getChannels();
+            scheduler = new MidiScheduler(synthesizer, renderBus != null ? renderBus.getReceiver() : synthesizer.getReceiver());
         } catch (MidiUnavailableException e) {
             LOGGER.log(Level.SEVERE, "无法初始化合成器", e);
         }
-        setBpm(bpm);
-        startBeatClock();
+        Arrays.fill(patternBeatByChannel, Long.MIN_VALUE);
     }
 
-    public void setBpm(int bpm){
-        this.bpm = bpm;
-        this.beatLengthMs = 60000L / bpm;
-        this.nextBeatTime = System.currentTimeMillis() + beatLengthMs;
+    /** 不打开合成器，全部事件发往给定 Receiver（基准测试用） */
+    AudioEngine(Receiver receiver){
+        channels = new MidiChannel[16];
+        scheduler = new MidiScheduler(null, receiver);
+        Arrays.fill(patternBeatByChannel, Long.MIN_VALUE);
     }
 
-    private void startBeatClock(){
-        beatScheduler.scheduleAtFixedRate(() -> {
-            long now = System.currentTimeMillis();
-            while (now >= nextBeatTime) {
-                beatCounter++;
-                nextBeatTime += beatLengthMs;
-            }
-        }, 0, 5, TimeUnit.MILLISECONDS);
-    }
+    public void setBpm(int bpm){ beatClock.setBpm(bpm); }
 
-    private void waitForNextBeat() {
-        try {
-            while (true) {
-                long now = System.currentTimeMillis();
-                long remain = nextBeatTime - now;
-                if (remain <= 2) break;
-                Thread.sleep(Math.min(10, remain/2));
-            }
-        } catch (InterruptedException ignored) {}
-    }
+    /** 下一拍起点（nanoTime 时间基） */
+    private long nextBeatNanos(){ return beatClock.nextBeatNanos(); }
+    private long beatNanos(){ return beatClock.beatLengthNanos(); }
 
-    public long currentBeat(){ return beatCounter; }
-    public double progressToNextBeat(){
-        long now = System.currentTimeMillis();
-        long prevBeatStart = nextBeatTime - beatLengthMs;
-        return Math.min(1.0, Math.max(0.0, (now - prevBeatStart) / (double)beatLengthMs));
-    }
+    public long currentBeat(){ return beatClock.currentBeat(); }
+    public double progressToNextBeat(){ return beatClock.progressToNextBeat(); }
+    public BeatClock getBeatClock(){ return beatClock; }
 
-    public int getBpm(){ return bpm; }
+    public int getBpm(){ return beatClock.getBpm(); }
     public void setVolume(int vol){ volumeScale = Math.max(0, Math.min(100, vol))/100.0; }
     public int getVolume(){ return (int)Math.round(volumeScale*100); }
+    public MidiScheduler getScheduler(){ return scheduler; }
+    /** 预渲染总线；实时合成器模式下为 null */
+    public AudioRenderBus getRenderBus(){ return renderBus; }
+    public long getMergedPatterns(){ return mergedPatterns; }
+    public long getDroppedPatterns(){ return droppedPatterns; }
+
+    public void startBackgroundMelody(){ bgWanted = true; if(!suspended) startBackgroundChain(); }
+    public void stopBackgroundMelody(){ bgWanted = false; stopBackgroundChain(); }
 
-    public void startBackgroundMelody(){
+    private void startBackgroundChain(){
         if (bgRunning || channels == null) return;
         bgRunning = true;
-        try{ channels[BG_CHANNEL].programChange(0); }catch(Exception ignored){}
-        bgThread = new Thread(() -> {
-            while(bgRunning){
-                loopMainMelody();
-            }
-        }, "BG-Melody-Loop");
-        bgThread.setDaemon(true);
-        bgThread.start();
+        int gen = bgGeneration;
+        scheduler.programChange(System.nanoTime(), BG_CHANNEL, 0);
+        long first = beatClock.currentBeat() + 1;
+        scheduler.call(beatClock.nanosOfBeat(first), () -> onBackgroundBeat(first, gen));
+    }
+    private void stopBackgroundChain(){ bgRunning=false; bgGeneration++; }
+    public void setPaused(boolean p){
+        this.paused = p;
+        if(p && scheduler != null) scheduler.silence(); // 暂停时撤销待播音符并释放所有发声
     }
-    public void stopBackgroundMelody(){ bgRunning=false; }
-    public void setPaused(boolean p){ this.paused = p; }
 
-    private void loopMainMelody(){
-        if(!bgRunning || channels==null) return;
-        try {
-            waitForNextBeat();
-            if(paused){ return; }
-            long currentBeat = currentBeat();
-            boolean newBar = (currentBeat % 4)==0;
-            if(newBar) barCounter++;
-            int section = (int)((barCounter / SECTION_LENGTH_BARS) % TOTAL_SECTIONS);
-            switch(section){
-                case 0 -> playSectionA(currentBeat);
-                case 1 -> playSectionB(currentBeat);
-                case 2 -> playSectionC(currentBeat);
+    /**
+     * 挂起（工具窗口隐藏、IDE 失焦、省电模式）：停止后台旋律、释放发声、冻结节拍时钟，
+     * 预渲染总线挂起渲染线程；实时合成器的输出线程会一直推送静音块，只能关闭（在生命周期线程上），恢复时重新打开。
+     */
+    public synchronized void suspend(){
+        if(suspended || scheduler == null) return;
+        suspended = true;
+        stopBackgroundChain();
+        scheduler.silence();
+        beatClock.freeze();
+        if(renderBus != null) renderBus.suspend();
+        else if(synthesizer != null) lifecycle().execute(() -> { if(suspended && synthesizer.isOpen()) synthesizer.close(); });
+    }
+
+    /** 恢复：节拍从挂起时的相位继续，后台旋律在下一拍重新开始；实时合成器重新打开完成后才恢复，调用线程不等待 */
+    public synchronized void resume(){
+        if(!suspended) return;
+        suspended = false;
+        if(renderBus != null){ renderBus.resume(); resumed(); }
+        else if(synthesizer != null) lifecycle().execute(this::reopenSynthesizer);
+        else resumed();
+    }
+
+    // 生命周期线程：期间又被挂起则什么都不做（随后排队的关闭任务会处理）
+    private void reopenSynthesizer(){
+        if(suspended) return;
+        if(!synthesizer.isOpen()){
+            try {
+                synthesizer.open();
+                channels = synthesizer.getChannels();
+                scheduler.reconnect(synthesizer.getReceiver());
+            } catch (MidiUnavailableException e) {
+                LOGGER.log(Level.WARNING, "恢复时无法重新打开合成器", e);
+                return;
             }
-        } catch (Exception ignored) {}
+        }
+        resumed();
+    }
+
+    private synchronized void resumed(){
+        if(suspended) return;
+        beatClock.resume();
+        if(bgWanted) startBackgroundChain();
     }
 
-    private void playSectionA(long beat) throws InterruptedException {
+    private synchronized ExecutorService lifecycle(){
+        if(lifecycle == null) lifecycle = Executors.newSingleThreadExecutor(r -> { Thread t = new Thread(r, "Audio-Lifecycle"); t.setDaemon(true); return t; });
+        return lifecycle;
+    }
+    public boolean isSuspended(){ return suspended; }
+
+    /** 后台旋律生成器：每拍在分发线程上生成本拍事件并预约下一拍 */
+    private void onBackgroundBeat(long beat, int gen){
+        if(!bgRunning || gen != bgGeneration || channels==null) return;
+        long beatStart = beatClock.nanosOfBeat(beat);
+        scheduler.call(beatClock.nanosOfBeat(beat + 1), () -> onBackgroundBeat(beat + 1, gen)); // 按最新速度段预约，变速后相位连续
+        if(paused) return;
+        boolean newBar = (beat % 4)==0;
+        if(newBar) barCounter++;
+        int section = (int)((barCounter / SECTION_LENGTH_BARS) % TOTAL_SECTIONS);
+        switch(section){
+            case 0 -> playSectionA(beat, beatStart);
+            case 1 -> playSectionB(beat, beatStart);
+            case 2 -> playSectionC(beat, beatStart);
+        }
+    }
+
+    private void playSectionA(long beat, long t){
         // Sparse pad + occasional arp tail on bar end
-        MidiChannel pad = channels[BG_CHANNEL];
-        MidiChannel perc = channels[9];
-        try { pad.programChange(91);}catch(Exception ignored){}
+        int pad = BG_CHANNEL;
+        int perc = 9;
+        scheduler.programChange(t, pad, 91);
         int bar = (int)((beat/4)%SECTION_LENGTH_BARS);
         if(beat % 4 == 0){
             int root = switch(bar){
@@ -136,52 +186,52 @@ public class AudioEngine {
                 default -> 55;
             };
             int[] chord = {root, root+4, root+7, root+11};
-            for(int n: chord) pad.noteOn(n,vs(60));
+            long hold = beatNanos()*4; // 和弦持续一小节后释放
+            for(int n: chord) scheduler.note(t, pad, n, vs(60), hold);
         }
-        if((beat %4)==0 || (beat %4)==2){ perc.noteOn(35,vs(110)); }
-        if((beat %4)==3){ int[] fill={72,76,79}; MidiChannel arp=channels[(BG_CHANNEL+1)%channels.length]; for(int n:fill){ arp.noteOn(n,vs(80)); Thread.sleep(beatLengthMs/6); arp.noteOff(n);} }
+        if((beat %4)==0 || (beat %4)==2){ scheduler.noteOn(t, perc, 35, vs(110)); }
+        if((beat %4)==3){ int[] fill={72,76,79}; int arp=(BG_CHANNEL+1)%channels.length; long step=beatNanos()/6; for(int n:fill){ scheduler.note(t, arp, n, vs(80), step); t+=step; } }
     }
 
-    private void playSectionB(long beat) throws InterruptedException {
+    private void playSectionB(long beat, long t){
         // Busy syncopated arp + snare off-beat
-        MidiChannel arp = channels[(BG_CHANNEL+1)%channels.length];
-        MidiChannel drum = channels[9];
-        try { arp.programChange(0);}catch(Exception ignored){}
+        int arp = (BG_CHANNEL+1)%channels.length;
+        int drum = 9;
+        scheduler.programChange(t, arp, 0);
         // 16分琶音循环
         int[] scale={72,74,76,79,81};
-        long step = beatLengthMs/4; // 16分
+        long step = beatNanos()/4; // 16分
         for(int i=0;i<4;i++){
             int note = scale[(int)((beat*4+i)%scale.length)];
-            arp.noteOn(note,vs(90));
-            Thread.sleep(step/2);
-            arp.noteOff(note);
-            Thread.sleep(step/2);
+            scheduler.note(t, arp, note, vs(90), step/2);
+            t += step;
         }
-        if((beat %4)==1 || (beat %4)==3){ drum.noteOn(38,vs(100)); }
-        drum.noteOn(42,vs(50));
+        if((beat %4)==1 || (beat %4)==3){ scheduler.noteOn(t, drum, 38, vs(100)); }
+        scheduler.noteOn(t, drum, 42, vs(50));
     }
 
-    private void playSectionC(long beat) throws InterruptedException {
+    private void playSectionC(long beat, long t){
         // Drop: strong bass pulses + rapid hat + rising synth stab
-        MidiChannel bass = channels[(BG_CHANNEL+2)%channels.length];
-        MidiChannel drum = channels[9];
-        try { bass.programChange(33);}catch(Exception ignored){}
+        int bass = (BG_CHANNEL+2)%channels.length;
+        int drum = 9;
+        scheduler.programChange(t, bass, 33);
         int idx = (int)(beat % dropBassPattern.length);
         int note = dropBassPattern[idx];
-        bass.noteOn(note,vs(120));
-        Thread.sleep(beatLengthMs/3);
-        bass.noteOff(note);
+        scheduler.note(t, bass, note, vs(120), beatNanos()/3);
+        t += beatNanos()/3;
         // trap style hats 3 subdivisions
-        for(int i=0;i<3;i++){ drum.noteOn(42,vs(55)); Thread.sleep(beatLengthMs/6); }
-        if((beat %2)==1){ drum.noteOn(39,vs(100)); }
+        for(int i=0;i<3;i++){ scheduler.noteOn(t, drum, 42, vs(55)); t += beatNanos()/6; }
+        if((beat %2)==1){ scheduler.noteOn(t, drum, 39, vs(100)); }
     }
 
     /** Play an immediate short hit for player feedback (no beat wait). */
-    public void playHitNote(Instrument inst){
-        if(channels==null) return;
+    public void playHitNote(Instrument inst){ playHitNote(inst, 0); }
+
+    /** 同上；keyNanos 为触发该击打的按键事件时刻（nanoTime 时间基，0 表示长按重复等无按键事件），用于记录按键到发声延迟 */
+    public void playHitNote(Instrument inst, long keyNanos){
+        if(channels==null || suspended) return;
         int ch = inst.getChannel();
         if(ch<0 || ch>=channels.length) return;
-        try { if(ch!=9) channels[ch].programChange(inst.getProgram()); } catch(Exception ignored){}
         int base = switch(inst.getSoundType()){
             case "鼓" -> -1; // percussion
             case "钢琴" -> 60;
@@ -191,76 +241,80 @@ public class AudioEngine {
             default -> 60;
         };
         if(ch==9){ // percussion immediate hit
-            int[] drums={35,38,42,46,49}; int note=drums[(int)(System.nanoTime()%drums.length)]; channels[9].noteOn(note, boostVel(115)); patternPool.submit(() -> { try { Thread.sleep(150); channels[9].noteOff(note);} catch(InterruptedException ignored){} }); return; }
+            int[] drums={35,38,42,46,49}; int note=drums[(int)(System.nanoTime()%drums.length)]; scheduler.sendHit(9, -1, note, boostVel(115)); recordHitLatency(keyNanos); return; } // 释放由调度器按这次起音自动预约
         int note = base + (int)(System.nanoTime()%5); // simple small range
-        channels[ch].noteOn(note, boostVel(105));
+        scheduler.sendHit(ch, inst.getProgram(), note, boostVel(105), HIT_GATE_NANOS); // 释放交给时间线，且只释放这次击打
+        recordHitLatency(keyNanos);
         // 叠加一个高八度弱音增强存在感（非鼓）
-        int high = note+12; if(high<120) channels[ch].noteOn(high, boostVel(70));
-        patternPool.submit(() -> { try { Thread.sleep(180); channels[ch].noteOff(note); if(high<120) channels[ch].noteOff(high);} catch(InterruptedException ignored){} });
+        int high = note+12; if(high<120) scheduler.sendHit(ch, -1, high, boostVel(70), HIT_GATE_NANOS);
+    }
+
+    // 起音已发出：记录按键到 noteOn；预渲染模式下再由渲染线程在渲染出该音后记录到渲染点。
+    // 实时合成器的渲染时刻无法观察，不记录 KEY_TO_RENDER（只有常数估算没有意义）
+    private void recordHitLatency(long keyNanos){
+        if(keyNanos == 0) return;
+        PerfMetrics.global().record(PerfMetrics.Metric.KEY_TO_NOTE, System.nanoTime() - keyNanos);
+        if(renderBus != null) renderBus.markHit(keyNanos);
     }
 
     public void playPattern(Instrument instrument) {
         if (channels == null) return;
-        // 玩家触发统一为两拍低音 / 鼔点
-        patternPool.submit(() -> {
-            try {
-                waitForNextBeat();
-                if (instrument.getSoundType().contains("鼓")) {
-                    playTwoBeatDrum();
-                } else {
-                    playTwoBeatBass(instrument);
-                }
-            } catch (Exception e){ LOGGER.log(Level.WARNING, "播放两拍底音失败", e); }
-        });
+        // 玩家触发统一为两拍低音 / 鼔点（下一拍起音）
+        int ch = instrument.getChannel() & 0x0F;
+        long beat = beatClock.currentBeat() + 1;
+        synchronized (patternBeatByChannel) {
+            if (patternBeatByChannel[ch] == beat) { mergedPatterns++; return; } // 同拍已排过，合并
+            if (!scheduler.hasCapacity(PATTERN_HIGH_WATER_EVENTS)) { droppedPatterns++; return; }
+            patternBeatByChannel[ch] = beat;
+        }
+        long t = beatClock.nanosOfBeat(beat);
+        if (instrument.getSoundType().contains("鼓")) {
+            playTwoBeatDrum(t);
+        } else {
+            playTwoBeatBass(instrument, t);
+        }
     }
 
-    private void playTwoBeatDrum() throws InterruptedException {
-        MidiChannel drum = channels[9]; long step = beatLengthMs;
-        drum.noteOn(35,boostVel(120)); drum.noteOn(42,boostVel(75)); Thread.sleep(step/2); drum.noteOff(35); drum.noteOff(42);
-        drum.noteOn(42,boostVel(75)); Thread.sleep(step/2); drum.noteOff(42);
-        drum.noteOn(38,boostVel(118)); drum.noteOn(46,boostVel(90)); Thread.sleep(step/2); drum.noteOff(38); drum.noteOff(46);
-        drum.noteOn(42,boostVel(75)); Thread.sleep(step/2); drum.noteOff(42);
+    private void playTwoBeatDrum(long t) {
+        int drum = 9; long half = beatNanos()/2;
+        scheduler.note(t, drum, 35, boostVel(120), half); scheduler.note(t, drum, 42, boostVel(75), half); t += half;
+        scheduler.note(t, drum, 42, boostVel(75), half); t += half;
+        scheduler.note(t, drum, 38, boostVel(118), half); scheduler.note(t, drum, 46, boostVel(90), half); t += half;
+        scheduler.note(t, drum, 42, boostVel(75), half);
     }
 
-    private void playTwoBeatBass(Instrument inst) throws InterruptedException {
-        programIfNeeded(inst); MidiChannel ch = channels[inst.getChannel()]; int root = 36 + (inst.getChannel()*2 % 12); long dur = beatLengthMs*2; ch.noteOn(root,boostVel(115)); if(root+12<120) ch.noteOn(root+12, boostVel(70)); Thread.sleep(dur); ch.noteOff(root); if(root+12<120) ch.noteOff(root+12); }
+    private void playTwoBeatBass(Instrument inst, long t) {
+        programIfNeeded(inst, t); int ch = inst.getChannel(); int root = 36 + (inst.getChannel()*2 % 12); long dur = beatNanos()*2; scheduler.note(t, ch, root, boostVel(115), dur); if(root+12<120) scheduler.note(t, ch, root+12, boostVel(70), dur); }
     public void playUltimateSequence() {
         if (channels == null) return;
-        patternPool.submit(() -> {
-            try {
-                waitForNextBeat();
-                MidiChannel bass = channels[3];
-                MidiChannel lead = channels[4];
-                MidiChannel drum = channels[9];
-                try { bass.programChange(33); lead.programChange(81);}catch(Exception ignored){}
-                long total=5200; long start=System.currentTimeMillis(); long phase1 = 1600; long phase2 = 3600;
-                int[] chord = {40,47,52,55};
-                // Phase 1: 持续底座 + 渐进鼓
-                while(System.currentTimeMillis()-start < phase1){
-                    for(int n: chord) bass.noteOn(n, ultimateVel(100));
-                    drum.noteOn(35, ultimateVel(127));
-                    Thread.sleep(beatLengthMs/2);
-                    drum.noteOn(42, ultimateVel(90));
-                    Thread.sleep(beatLengthMs/2);
-                    for(int n: chord) bass.noteOff(n);
-                }
-                // Phase 2: 快速上行炫技 + 叠加底鼓
-                int[] scale={52,55,59,64,67,71,76,79,83,88}; int idx=0; long t2Start=System.currentTimeMillis();
-                while(System.currentTimeMillis()-t2Start < (phase2-phase1)){
-                    int note=scale[idx]; lead.noteOn(note, ultimateVel(120)); if(note+12<120) lead.noteOn(note+12, ultimateVel(95));
-                    drum.noteOn(38, ultimateVel(120));
-                    Thread.sleep(Math.max(40, beatLengthMs/6));
-                    lead.noteOff(note); if(note+12<120) lead.noteOff(note+12);
-                    idx=(idx+1)%scale.length;
-                }
-                // Final burst: 琶音扫弦 + 全鼓冲击
-                int[] burst={52,55,59,64,67,71,76};
-                for(int n: burst){ bass.noteOn(n, ultimateVel(127)); lead.noteOn(n+12<120? n+12 : n, ultimateVel(110)); Thread.sleep(60); }
-                drum.noteOn(35,127); drum.noteOn(38,127); drum.noteOn(49,120); drum.noteOn(46,110);
-                Thread.sleep(500);
-                for(int n: burst){ bass.noteOff(n); if(n+12<120) lead.noteOff(n+12); }
-            } catch (InterruptedException ignored) {}
-        });
+        long t = nextBeatNanos(); long beat = beatNanos();
+        int bass = 3;
+        int lead = 4;
+        int drum = 9;
+        scheduler.programChange(t, bass, 33); scheduler.programChange(t, lead, 81);
+        long start=t; long phase1 = 1600_000_000L; long phase2 = 3600_000_000L;
+        int[] chord = {40,47,52,55};
+        // Phase 1: 持续底座 + 渐进鼓
+        while(t-start < phase1){
+            for(int n: chord) scheduler.note(t, bass, n, ultimateVel(100), beat);
+            scheduler.noteOn(t, drum, 35, ultimateVel(127));
+            t += beat/2;
+            scheduler.noteOn(t, drum, 42, ultimateVel(90));
+            t += beat/2;
+        }
+        // Phase 2: 快速上行炫技 + 叠加底鼓
+        int[] scale={52,55,59,64,67,71,76,79,83,88}; int idx=0; long t2Start=t; long step=Math.max(40_000_000L, beat/6);
+        while(t-t2Start < (phase2-phase1)){
+            int note=scale[idx]; scheduler.note(t, lead, note, ultimateVel(120), step); if(note+12<120) scheduler.note(t, lead, note+12, ultimateVel(95), step);
+            scheduler.noteOn(t, drum, 38, ultimateVel(120));
+            t += step;
+            idx=(idx+1)%scale.length;
+        }
+        // Final burst: 琶音扫弦 + 全鼓冲击
+        int[] burst={52,55,59,64,67,71,76};
+        long end = t + burst.length * 60_000_000L + 500_000_000L; // 扫弦的音一起在冲击后 0.5s 释放
+        for(int n: burst){ scheduler.note(t, bass, n, ultimateVel(127), end - t); scheduler.note(t, lead, n+12<120? n+12 : n, ultimateVel(110), end - t); t += 60_000_000L; }
+        scheduler.noteOn(t, drum, 35, 127); scheduler.noteOn(t, drum, 38, 127); scheduler.noteOn(t, drum, 49, 120); scheduler.noteOn(t, drum, 46, 110);
     }
     private int boostVel(int base){
         int v = (int)Math.round(base * playerBoost * volumeScale); if(v>127) v=127; return Math.max(0,v);
@@ -269,61 +323,56 @@ public class AudioEngine {
         int v = (int)Math.round(base * playerBoost * ultimateBoost * volumeScale); if(v>127) v=127; return Math.max(0,v);
     }
 
-    private void programIfNeeded(Instrument inst) {
+    private void programIfNeeded(Instrument inst, long t) {
         if (channels == null) return;
         int ch = inst.getChannel();
         if (ch >= 0 && ch < channels.length && ch != 9) { // 9 为打击乐
-            channels[ch].programChange(inst.getProgram());
+            scheduler.programChange(t, ch, inst.getProgram());
         }
     }
 
-    private void singleNote(Instrument inst, int note, int durationMs) throws InterruptedException {
-        programIfNeeded(inst);
-        MidiChannel ch = channels[inst.getChannel()];
-        ch.noteOn(note, 100);
-        Thread.sleep(durationMs);
-        ch.noteOff(note);
+    private void singleNote(Instrument inst, int note, int durationMs, long t) {
+        programIfNeeded(inst, t);
+        int ch = inst.getChannel();
+        scheduler.note(t, ch, note, 100, durationMs * 1_000_000L);
     }
 
-    private void playArpPattern(Instrument inst, int[] notes) throws InterruptedException {
-        programIfNeeded(inst);
-        MidiChannel ch = channels[inst.getChannel()];
+    private void playArpPattern(Instrument inst, int[] notes, long t) {
+        programIfNeeded(inst, t);
+        int ch = inst.getChannel();
         int vel = 100;
-        long step = beatLengthMs/4; // 16分音符
+        long step = beatNanos()/4; // 16分音符
         for (int n : notes) {
-            ch.noteOn(n, vel);
-            Thread.sleep(step);
-            ch.noteOff(n);
+            scheduler.note(t, ch, n, vel, step);
+            t += step;
         }
     }
 
-    private void playSwellPattern(Instrument inst, int root) throws InterruptedException {
-        programIfNeeded(inst);
-        MidiChannel ch = channels[inst.getChannel()];
+    private void playSwellPattern(Instrument inst, int root, long t) {
+        programIfNeeded(inst, t);
+        int ch = inst.getChannel();
         int[] add = {0, 7, 12};
-        long step = beatLengthMs/6; // 渐强更平滑
+        long step = beatNanos()/6; // 渐强更平滑
+        long end = t + step * 7; // 5 级渐强后再保持两步
         for (int v = 40; v <= 100; v += 15) {
-            for (int a : add) ch.noteOn(root + a, v);
-            Thread.sleep(step);
+            for (int a : add) scheduler.note(t, ch, root + a, v, end - t); // 每级重击同一组音，只有最后一次的释放生效
+            t += step;
         }
-        Thread.sleep(step*2);
-        for (int a : add) ch.noteOff(root + a);
     }
 
-    private void playBassPulse(Instrument inst, int[] seq) throws InterruptedException {
-        programIfNeeded(inst);
-        MidiChannel ch = channels[inst.getChannel()];
-        long step = beatLengthMs/3;
+    private void playBassPulse(Instrument inst, int[] seq, long t) {
+        programIfNeeded(inst, t);
+        int ch = inst.getChannel();
+        long step = beatNanos()/3;
         for (int n : seq) {
-            ch.noteOn(n, 110);
-            Thread.sleep(step);
-            ch.noteOff(n);
+            scheduler.note(t, ch, n, 110, step);
+            t += step;
         }
     }
 
-    private void playDrumPattern() throws InterruptedException {
-        MidiChannel drum = channels[9];
-        long step = beatLengthMs/4; // 16分
+    private void playDrumPattern(long t) {
+        int drum = 9;
+        long step = beatNanos()/4; // 16分
         int[][] pattern = {
                 {35, 120},
                 {42, 80},
@@ -335,17 +384,20 @@ public class AudioEngine {
                 {42, 70}
         };
         for (int[] ev : pattern) {
-            drum.noteOn(ev[0], ev[1]);
-            Thread.sleep(step);
-            drum.noteOff(ev[0]);
+            scheduler.note(t, drum, ev[0], ev[1], step);
+            t += step;
         }
     }
 
     public void shutdown() {
         stopBackgroundMelody();
-        patternPool.shutdownNow();
-        beatScheduler.shutdownNow();
-        bgMelodyExec.shutdownNow();
+        ExecutorService lc; synchronized (this){ lc = lifecycle; }
+        if(lc != null){
+            lc.shutdownNow(); // 不再重新打开合成器；等待时不持锁，正在执行的任务才能结束
+            try { lc.awaitTermination(1, TimeUnit.SECONDS); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+        }
+        if (scheduler != null) scheduler.shutdown();
+        if (renderBus != null) renderBus.close();
         if (synthesizer != null && synthesizer.isOpen()) synthesizer.close();
     }
     private int vs(int vel){ int v=(int)Math.round(vel * volumeScale); if(v>127) v=127; return Math.max(0,v); }
@@ -0,0 +1,129 @@
+package org.example;
+
+import javax.sound.midi.*;
+import javax.sound.sampled.*;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 预渲染音频总线：单个音频线程从无锁事件环取 MIDI 消息，经合成器 openStream 渲染 PCM 写入 SourceDataLine。
+ * 所有调用线程只与事件环交互，不再并发触碰合成器内部锁。
+ */
+public class AudioRenderBus {
+    private static final Logger LOGGER = Logger.getLogger(AudioRenderBus.class.getName());
+    private static final float SAMPLE_RATE = 44100f;
+
+    private final Synthesizer synthesizer;
+    private final Receiver synthReceiver;
+    private final AudioInputStream stream;
+    private final SourceDataLine line;
+    private final MidiEventRing ring = new MidiEventRing(4096);
+    private final int frameSize;
+    private final int periodFrames;
+    private final Thread renderThread;
+    private volatile boolean running = true;
+    private volatile boolean suspended = false;
+
+    private volatile long underruns = 0;
+    private volatile double latencyMs = 0;
+    private final AtomicLong pendingHit = new AtomicLong(); // 已投递、尚未渲染的击打所对应的按键时刻（0 表示无）
+
+    private final Receiver busReceiver = new Receiver() {
+        @Override public void send(MidiMessage message, long timeStamp){
+            if(message instanceof ShortMessage sm) ring.offer(MidiEventRing.pack(sm.getStatus(), sm.getData1(), sm.getData2()), timeStamp);
+        }
+        @Override public void close(){}
+    };
+
+    private AudioRenderBus(Synthesizer synthesizer, AudioInputStream stream, SourceDataLine line, int periodFrames) throws MidiUnavailableException {
+        this.synthesizer = synthesizer; this.stream = stream; this.line = line; this.periodFrames = periodFrames;
+        this.synthReceiver = synthesizer.getReceiver();
+        this.frameSize = stream.getFormat().getFrameSize();
+        renderThread = new Thread(this::renderLoop, "Audio-Render");
+        renderThread.setDaemon(true);
+        renderThread.setPriority(Thread.MAX_PRIORITY);
+        renderThread.start();
+    }
+
+    /**
+     * 以流模式打开合成器并连接输出线路；bufferFrames 为线路缓冲帧数（决定输出延迟）。
+     * 合成器不支持流模式或 JDK 未开放 com.sun.media.sound 时返回 null，由调用方回退到实时合成器。
+     */
+    public static AudioRenderBus open(Synthesizer synthesizer, int bufferFrames){
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+        SourceDataLine line = null;
+        try {
+            Method openStream = synthesizer.getClass().getMethod("openStream", AudioFormat.class, Map.class);
+            openStream.setAccessible(true); // 需 --add-opens java.desktop/com.sun.media.sound=ALL-UNNAMED
+            AudioInputStream stream = (AudioInputStream) openStream.invoke(synthesizer, format, null);
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, bufferFrames * format.getFrameSize());
+            line.start();
+            return new AudioRenderBus(synthesizer, stream, line, Math.max(64, bufferFrames / 4));
+        } catch (Exception | LinkageError e){
+            LOGGER.log(Level.INFO, "预渲染音频总线不可用，回退实时合成器", e);
+            if(line != null) line.close();
+            if(synthesizer.isOpen()) synthesizer.close();
+            return null;
+        }
+    }
+
+    /** 投递到事件环的 Receiver（线程安全、无锁） */
+    public Receiver getReceiver(){ return busReceiver; }
+
+    private void renderLoop(){
+        byte[] buf = new byte[periodFrames * frameSize];
+        try {
+            while(running){
+                if(suspended){ // 挂起：送完已投递的事件（静音用的 noteOff），停线路并挂起线程，不再渲染静音块
+                    ring.drain(this::dispatch);
+                    line.stop(); line.flush();
+                    while(suspended && running) LockSupport.park(this);
+                    line.start();
+                    continue;
+                }
+                long hit = pendingHit.getAndSet(0); // 先取标记再取事件：击打最迟在本周期渲染，延迟只会多算不会少算
+                ring.drain(this::dispatch);
+                int read = 0;
+                while(read < buf.length){ int n = stream.read(buf, read, buf.length - read); if(n < 0){ running = false; break; } read += n; }
+                if(hit != 0) PerfMetrics.global().record(PerfMetrics.Metric.KEY_TO_RENDER, System.nanoTime() - hit);
+                // 写入前线路缓冲已完全排空即视为一次欠载
+                if(line.available() >= line.getBufferSize()) underruns++;
+                line.write(buf, 0, read); // 阻塞直到有空间，决定渲染节奏
+                int queuedFrames = (line.getBufferSize() - line.available()) / frameSize;
+                latencyMs = queuedFrames * 1000.0 / SAMPLE_RATE;
+            }
+        } catch (Exception e){
+            if(running) LOGGER.log(Level.WARNING, "音频渲染线程异常终止", e);
+        }
+    }
+
+    private void dispatch(int packed, long timeStamp){
+        try {
+            synthReceiver.send(new ShortMessage(MidiEventRing.status(packed), MidiEventRing.data1(packed), MidiEventRing.data2(packed)), timeStamp);
+        } catch (InvalidMidiDataException ignored){}
+    }
+
+    /** 挂起/恢复渲染线程（工具窗口隐藏、IDE 失焦时） */
+    public void suspend(){ suspended = true; }
+    public void resume(){ suspended = false; LockSupport.unpark(renderThread); }
+
+    /** 击打已投递到事件环（keyNanos 为按键时刻）；同一周期内多次击打按最早的一次计 */
+    void markHit(long keyNanos){ pendingHit.compareAndSet(0, keyNanos); }
+
+    public long getUnderruns(){ return underruns; }
+    public double getLatencyMs(){ return latencyMs; }
+    public int getBufferFrames(){ return line.getBufferSize() / frameSize; }
+    public long getDroppedEvents(){ return ring.getDropped(); }
+
+    public void close(){
+        running = false;
+        renderThread.interrupt();
+        line.stop(); line.close();
+        if(synthesizer.isOpen()) synthesizer.close();
+    }
+}
@@ -0,0 +1,52 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/** 拍点时钟：由 nanoTime 原点 + 原子替换的节拍段 (origin, bpm) 按需推算拍号与拍内进度，无后台线程 */
+public class BeatClock {
+    /** 不可变节拍段：originNanos 时刻位于 originBeat 拍位置，此后按 bpm 匀速前进；冻结段停在 originBeat */
+    private static final class Segment {
+        final long originNanos; final double originBeat; final int bpm; final double nanosPerBeat; final boolean frozen;
+        Segment(long originNanos, double originBeat, int bpm, boolean frozen){
+            this.originNanos = originNanos; this.originBeat = originBeat; this.bpm = bpm; this.nanosPerBeat = 60_000_000_000.0 / bpm; this.frozen = frozen;
+        }
+        double beatAt(long nanos){ return frozen ? originBeat : originBeat + (nanos - originNanos) / nanosPerBeat; }
+    }
+
+    private final AtomicReference<Segment> segment;
+
+    public BeatClock(int bpm){ segment = new AtomicReference<>(new Segment(System.nanoTime(), 0, bpm, false)); }
+
+    /** 切换速度：以当前拍位置为新段原点，保持相位连续 */
+    public void setBpm(int bpm){ replace(bpm, null); }
+
+    /** 冻结在当前拍位置（挂起期间）；resume 后从同一相位继续，挂起的时长不计入拍数 */
+    public void freeze(){ replace(0, true); }
+    public void resume(){ replace(0, false); }
+    public boolean isFrozen(){ return segment.get().frozen; }
+
+    // bpm 为 0 表示保持；frozen 为 null 表示保持
+    private void replace(int bpm, Boolean frozen){
+        while(true){
+            Segment cur = segment.get();
+            long now = System.nanoTime();
+            if(segment.compareAndSet(cur, new Segment(now, cur.beatAt(now), bpm > 0 ? bpm : cur.bpm, frozen != null ? frozen : cur.frozen))) return;
+        }
+    }
+
+    public int getBpm(){ return segment.get().bpm; }
+    public long beatLengthNanos(){ return (long)segment.get().nanosPerBeat; }
+
+    /** 连续拍位置（整数部分为拍号，小数部分为拍内进度） */
+    public double beatPosition(){ return beatPositionAt(System.nanoTime()); }
+    public double beatPositionAt(long nanos){ return segment.get().beatAt(nanos); }
+    public long currentBeat(){ return (long)Math.floor(beatPosition()); }
+    public double progressToNextBeat(){ double p = beatPosition(); return p - Math.floor(p); }
+
+    /** 指定拍号的起点（nanoTime 时间基，按当前速度段推算） */
+    public long nanosOfBeat(long beat){
+        Segment s = segment.get();
+        return s.originNanos + (long)((beat - s.originBeat) * s.nanosPerBeat);
+    }
+    public long nextBeatNanos(){ return nanosOfBeat(currentBeat() + 1); }
+}
@@ -0,0 +1,195 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * 二进制存档：固定布局、内存映射、原地写入。
+ * <pre>
+ * 头部 16 字节: magic(int) version(short) bossCount(short) slotSize(int) reserved(int)
+ * 槽位 A/B   : seq(long) crc(int) 负载(固定字段 + bossHealths[bossCount] + journalSeq(long, v2))
+ * </pre>
+ * 每次保存写入较旧的槽位，最后写 seq 与 CRC；写到一半崩溃时 CRC 不匹配，读取回退到另一槽位。
+ */
+public class BinarySaveStore implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(BinarySaveStore.class.getName());
+    static final int MAGIC = 0x4353594D; // "CSYM"
+    static final short VERSION = 2; // v2：负载末尾追加 journalSeq
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_HEADER = 12; // seq + crc
+    private static final int FIXED_PAYLOAD = 4 + 8 + 4 + 8 + 4 + 8 + 4 + 4;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final ByteBuffer[] slotViews = new ByteBuffer[2]; // 预先切好的槽位视图，计算 CRC 不再分配
+    private final CRC32 crc = new CRC32();
+    private final int bossCount;
+    private final short version;
+    private final int slotSize;
+    private long lastSeq;
+
+    private BinarySaveStore(FileChannel channel, int bossCount, short version) throws IOException {
+        this.channel = channel; this.bossCount = bossCount; this.version = version;
+        this.slotSize = slotSize(bossCount, version);
+        this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + 2L * slotSize);
+        for(int i=0;i<2;i++) slotViews[i] = map.slice(HEADER_SIZE + i * slotSize, slotSize);
+    }
+
+    private static int slotSize(int bossCount, short version){ return SLOT_HEADER + FIXED_PAYLOAD + 8 * bossCount + (version >= 2 ? 8 : 0); }
+
+    /**
+     * 打开（或新建）存档文件。v1 存档或 bossCount 不同的存档先读入堆内存，再经临时文件 + 原子替换重写为当前布局，
+     * 旧文件从未被映射，Windows 上不会因截断已映射文件而失败；无法识别的文件记录警告后按空存档重建。
+     */
+    public static BinarySaveStore open(Path path, int bossCount) throws IOException {
+        if(!matchesLayout(path, bossCount)) migrate(path, bossCount);
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            BinarySaveStore store = new BinarySaveStore(ch, bossCount, VERSION);
+            store.lastSeq = Math.max(store.slotSeq(0), store.slotSeq(1));
+            return store;
+        } catch (IOException | RuntimeException e){
+            ch.close();
+            throw e;
+        }
+    }
+
+    private static boolean matchesLayout(Path path, int bossCount) throws IOException {
+        if(!Files.exists(path)) return false;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)){
+            ByteBuffer head = readFully(ch, 0, HEADER_SIZE);
+            return head != null && head.getInt(0) == MAGIC && head.getShort(4) == VERSION && head.getShort(6) == bossCount
+                    && head.getInt(8) == slotSize(bossCount, VERSION) && ch.size() == HEADER_SIZE + 2L * slotSize(bossCount, VERSION);
+        }
+    }
+
+    /** 按旧文件自身的版本与 bossCount 解析最新有效槽位，迁移公共字段，bossHealths 截断或以 NaN 补齐，写成新布局后原子替换 */
+    private static void migrate(Path path, int bossCount) throws IOException {
+        SaveManager.SaveData old = null;
+        if(Files.exists(path)){
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)){
+                ByteBuffer head = readFully(ch, 0, HEADER_SIZE);
+                short ver = head != null ? head.getShort(4) : 0; int count = head != null ? head.getShort(6) : 0;
+                int slot = head != null ? head.getInt(8) : 0;
+                if(head != null && head.getInt(0) == MAGIC && (ver == 1 || ver == VERSION) && count >= 0
+                        && slot == slotSize(count, ver) && ch.size() == HEADER_SIZE + 2L * slot){
+                    ByteBuffer slots = readFully(ch, HEADER_SIZE, 2 * slot);
+                    if(slots != null) old = decodeNewest(slots, count, ver, slot, new CRC32());
+                    if(count != bossCount) LOGGER.warning("存档 bossCount 为 " + count + "，当前为 " + bossCount + "，迁移公共字段并调整 bossHealths");
+                } else {
+                    LOGGER.warning("无法识别的存档布局，按空存档重建: " + path);
+                }
+            }
+            if(old != null && old.bossHealths.length != bossCount){
+                int keep = old.bossHealths.length;
+                old.bossHealths = Arrays.copyOf(old.bossHealths, bossCount);
+                for(int i=keep;i<bossCount;i++) old.bossHealths[i] = Double.NaN; // 新增 boss 由 SaveManager 按满血补齐
+            }
+        }
+        int slot = slotSize(bossCount, VERSION);
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + 2 * slot);
+        out.putInt(0, MAGIC).putShort(4, VERSION).putShort(6, (short)bossCount).putInt(8, slot).putInt(12, 0);
+        if(old != null) encode(out.slice(HEADER_SIZE, slot), old, bossCount, 1, slot, new CRC32());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            while(out.hasRemaining()) ch.write(out);
+            ch.force(false);
+        }
+        try { Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING); }
+        catch (AtomicMoveNotSupportedException e){ Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING); }
+    }
+
+    private static ByteBuffer readFully(FileChannel ch, long pos, int len) throws IOException {
+        if(ch.size() < pos + len) return null;
+        ByteBuffer b = ByteBuffer.allocate(len);
+        while(b.hasRemaining()){ if(ch.read(b, pos + b.position()) < 0) return null; }
+        return b.clear();
+    }
+
+    /** 原地写入较旧的槽位；不分配对象 */
+    public void write(SaveManager.SaveData d){
+        encode(slotViews[(int)((lastSeq + 1) & 1)], d, bossCount, lastSeq + 1, slotSize, crc);
+        map.force();
+        lastSeq++;
+    }
+
+    /** 读取最新的有效槽位；两个槽位都无效时返回 null */
+    public SaveManager.SaveData read(){
+        int best = -1; long bestSeq = 0;
+        for(int i=0;i<2;i++){
+            ByteBuffer b = slotViews[i];
+            long seq = b.getLong(0);
+            if(seq > bestSeq && b.getInt(8) == checksum(b, slotSize, crc)){ best = i; bestSeq = seq; }
+        }
+        return best < 0 ? null : decode(slotViews[best], bossCount, version);
+    }
+
+    private long slotSeq(int slot){ ByteBuffer b = slotViews[slot]; return b.getInt(8) == checksum(b, slotSize, crc) ? b.getLong(0) : 0; }
+
+    /** slots 为紧邻的 A/B 两个槽位 */
+    private static SaveManager.SaveData decodeNewest(ByteBuffer slots, int bossCount, short version, int slotSize, CRC32 crc){
+        ByteBuffer best = null; long bestSeq = 0;
+        for(int i=0;i<2;i++){
+            ByteBuffer b = slots.slice(i * slotSize, slotSize);
+            long seq = b.getLong(0);
+            if(seq > bestSeq && b.getInt(8) == checksum(b, slotSize, crc)){ best = b; bestSeq = seq; }
+        }
+        return best == null ? null : decode(best, bossCount, version);
+    }
+
+    private static void encode(ByteBuffer b, SaveManager.SaveData d, int bossCount, long seq, int slotSize, CRC32 crc){
+        int o = SLOT_HEADER;
+        b.putInt(o, d.currentBossIndex); o += 4;
+        b.putLong(o, d.totalScore); o += 8;
+        b.putInt(o, d.bpm); o += 4;
+        b.putDouble(o, d.skillCharge); o += 8;
+        b.putInt(o, d.comboCount); o += 4;
+        b.putLong(o, d.ultimateComboRemainMs); o += 8;
+        b.putInt(o, d.volume); o += 4;
+        b.putInt(o, d.bpmMax); o += 4;
+        for(int i=0;i<bossCount;i++){ b.putDouble(o, d.bossHealths != null && i < d.bossHealths.length ? d.bossHealths[i] : 0); o += 8; }
+        b.putLong(o, d.journalSeq);
+        b.putLong(0, seq);
+        b.putInt(8, checksum(b, slotSize, crc));
+    }
+
+    private static SaveManager.SaveData decode(ByteBuffer b, int bossCount, short version){
+        SaveManager.SaveData d = new SaveManager.SaveData();
+        int o = SLOT_HEADER;
+        d.currentBossIndex = b.getInt(o); o += 4;
+        d.totalScore = b.getLong(o); o += 8;
+        d.bpm = b.getInt(o); o += 4;
+        d.skillCharge = b.getDouble(o); o += 8;
+        d.comboCount = b.getInt(o); o += 4;
+        d.ultimateComboRemainMs = b.getLong(o); o += 8;
+        d.volume = b.getInt(o); o += 4;
+        d.bpmMax = b.getInt(o); o += 4;
+        d.bossHealths = new double[bossCount];
+        for(int i=0;i<bossCount;i++){ d.bossHealths[i] = b.getDouble(o); o += 8; }
+        if(version >= 2) d.journalSeq = b.getLong(o);
+        return d;
+    }
+
+    /** CRC 覆盖 seq 与负载，跳过 crc 字段本身 */
+    private static int checksum(ByteBuffer b, int slotSize, CRC32 crc){
+        crc.reset();
+        b.limit(8).position(0); crc.update(b);
+        b.limit(slotSize).position(SLOT_HEADER); crc.update(b);
+        b.clear();
+        return (int)crc.getValue();
+    }
+
+    public int getBossCount(){ return bossCount; }
+
+    @Override public void close() throws IOException { channel.close(); }
+}
@@ -10,4 +10,6 @@ public interface BossEntity {
     int getMaxHealth();
     String getName();
     void setHealth(int hp); // 新增用于存档恢复
+    /** 本帧绘制范围并入脏区域；默认按中心 500x500 保守估计 */
+    default void addDirtyBounds(DirtyRegions dirty, int centerX, int centerY){ dirty.add(centerX - 250, centerY - 250, 500, 500); }
 }
@@ -1,8 +1,11 @@
 package org.example;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.util.List;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 // Boss类 (代码人形)
@@ -12,6 +15,18 @@ public class BugBoss implements BossEntity {
     private String name;
     private long animTimeMs = 0;
     private final Random rand = new Random();
+    private static final Font CODE_FONT = new Font("Monospaced", Font.BOLD, 14), EYE_FONT = new Font("Monospaced", Font.BOLD, 28);
+    private static final Color CODE_COLOR = new Color(220,255,255), BORDER = new Color(200,160,255), HEAD_RING = new Color(200,160,255,180);
+    private static final BasicStroke BORDER_STROKE = new BasicStroke(4f);
+    // 身体帧缓存：按血量阶段、濒危脉动档位和呼吸档位预渲染，LRU 淘汰（-Dcodesymphony.boss.cacheFrames 调整上限）
+    private static final int CACHE_FRAMES = Integer.getInteger("codesymphony.boss.cacheFrames", 40);
+    private static final int PULSE_STEPS = 4;
+    private static final double BREATHE_QUANT = 0.02; // 呼吸档位步长，档位之间缩放补齐
+    private static final int PAD = 4;
+    private final Map<Integer, BufferedImage> frameCache = new LinkedHashMap<>(16, 0.75f, true){
+        @Override protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest){ return size() > CACHE_FRAMES; }
+    };
+    private BufferedImage headGlow;
 
     private final java.util.List<String> codeLines = Arrays.asList(
             "public class Code {",
@@ -48,46 +63,32 @@ public class BugBoss implements BossEntity {
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         int bodyWidth = 260;
         int bodyHeight = 320;
-        int topY = centerY - bodyHeight/2;
-
-        // 阶段颜色设定
-        Color cTop;
-        Color cBottom;
-        if (hpPct > 0.7) {
-            cTop = new Color(30,30,60,160);
-            cBottom = new Color(80,0,120,160);
-        } else if (hpPct > 0.4) {
-            cTop = new Color(60,0,90,170);
-            cBottom = new Color(140,20,180,180);
-        } else if (hpPct > 0.15) {
-            cTop = new Color(90,0,30,190);
-            cBottom = new Color(220,40,90,190);
-        } else { // 濒危阶段：颜色脉动
-            int pulse = (int)(120 + 80 * Math.sin(animTimeMs/120.0));
-            cTop = new Color(120,0,pulse/2,200);
-            cBottom = new Color(255,pulse,120,210);
-        }
+
+        // 阶段（0..3，濒危阶段颜色脉动量化为 PULSE_STEPS 档）
+        int phase = hpPct > 0.7 ? 0 : hpPct > 0.4 ? 1 : hpPct > 0.15 ? 2 : 3;
+        int pulseStep = phase == 3 ? (int)Math.round((Math.sin(animTimeMs/120.0) + 1) / 2 * (PULSE_STEPS - 1)) : 0;
 
         // 轻微呼吸放缩（低血量加剧）
         double breathe = 1 + 0.02 * Math.sin(animTimeMs/400.0) + (1-hpPct)*0.05*Math.sin(animTimeMs/150.0);
         int bw = (int)(bodyWidth * breathe);
         int bh = (int)(bodyHeight * breathe);
         int topYAdj = centerY - bh/2;
+        int breatheStep = (int)Math.round((breathe - 1) / BREATHE_QUANT);
 
-        // 背景渐变
-        GradientPaint gp = new GradientPaint(centerX - bw/2f, topYAdj, cTop, centerX + bw/2f, topYAdj + bh, cBottom);
-        g2d.setPaint(gp);
-        g2d.fillRoundRect(centerX - bw/2, topYAdj, bw, bh, 40, 40);
-
-        // 边框闪烁
+        // 身体渐变与边框：取最近的量化帧，缩放到本帧精确尺寸贴图
+        Object oldInterp = g2d.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        blitFrame(g2d, bodyFrame(phase, pulseStep, breatheStep), centerX, topYAdj, bw, bh);
         float borderAlpha = (float)(0.55 + 0.25 * Math.sin(animTimeMs/180.0) + (1-hpPct)*0.3);
         borderAlpha = Math.min(1f, Math.max(0.2f, borderAlpha));
-        g2d.setColor(new Color(200,160,255,(int)(borderAlpha*255)));
-        g2d.setStroke(new BasicStroke(4f));
-        g2d.drawRoundRect(centerX - bw/2, topYAdj, bw, bh, 40, 40);
-
-        // 代码行动态（水平波动 + 随血量抖动）
-        g2d.setFont(new Font("Monospaced", Font.BOLD, 14));
+        Composite oldComp = g2d.getComposite();
+        g2d.setComposite(SpriteAtlas.alpha(borderAlpha));
+        blitFrame(g2d, borderFrame(breatheStep), centerX, topYAdj, bw, bh);
+        if(oldInterp != null) g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, oldInterp);
+
+        // 代码行动态（水平波动 + 随血量抖动），逐帧实时绘制
+        g2d.setFont(CODE_FONT);
+        g2d.setColor(CODE_COLOR);
         int lineHeight = 26;
         int startY = topYAdj + 40;
         for (int i = 0; i < codeLines.size(); i++) {
@@ -103,35 +104,89 @@ public class BugBoss implements BossEntity {
             if (hpPct < 0.4 && rand.nextDouble() < 0.08) {
                 alpha = 0.4f + rand.nextFloat()*0.3f;
             }
-            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
-            g2d.setColor(new Color(220,255,255));
+            g2d.setComposite(SpriteAtlas.alpha(alpha));
             g2d.drawString(codeLines.get(i), drawX, y);
         }
-        g2d.setComposite(AlphaComposite.SrcOver);
 
-        // 头部（动态脉动光球, 低血量变大 & 闪烁）
+        // 头部（动态脉动光球, 低血量变大 & 闪烁）：固定光晕贴图按脉动透明度缩放绘制
         int headRBase = 90;
         int headR = (int)(headRBase * (1 + 0.05*Math.sin(animTimeMs/250.0) + (1-hpPct)*0.25));
         int headY = topYAdj - headR/2 + 10;
         float glowPulse = (float)(0.6 + 0.3*Math.sin(animTimeMs/140.0) + (1-hpPct)*0.4);
         glowPulse = Math.min(1f, Math.max(0.2f, glowPulse));
-        RadialGradientPaint rgp = new RadialGradientPaint(new Point(centerX, headY + headR/2), headR/2f,
-                new float[]{0f,0.5f,1f}, new Color[]{
-                        new Color(255,255,255,(int)(255*glowPulse)),
-                        new Color(200,160,255,(int)(200*glowPulse)),
-                        new Color(40,0,60,0)});
-        g2d.setPaint(rgp);
-        g2d.fillOval(centerX - headR/2, headY, headR, headR);
-        g2d.setColor(new Color(200,160,255,(int)(180*glowPulse)));
+        if(headGlow == null) headGlow = SpriteAtlas.radial(new float[]{0f,0.5f,1f}, new Color[]{ new Color(255,255,255,255), new Color(200,160,255,200), new Color(40,0,60,0)});
+        g2d.setComposite(SpriteAtlas.alpha(glowPulse));
+        SpriteAtlas.drawScaled(g2d, headGlow, centerX, headY + headR/2, headR/2);
+        g2d.setColor(HEAD_RING);
         g2d.drawOval(centerX - headR/2, headY, headR, headR);
 
         // 眼睛（括号闪烁）
-        g2d.setFont(new Font("Monospaced", Font.BOLD, 28));
-        int eyeAlpha = (int)(220 + 30 * Math.sin(animTimeMs/90.0));
-        g2d.setColor(new Color(255,255,255, Math.min(255, Math.max(0, eyeAlpha))));
+        g2d.setFont(EYE_FONT);
+        g2d.setComposite(SpriteAtlas.alpha((float)(Math.min(255, 220 + 30 * Math.sin(animTimeMs/90.0)) / 255.0)));
+        g2d.setColor(Color.WHITE);
         g2d.drawString("{ }", centerX - 30, headY + headR/2 + 10);
+        g2d.setComposite(oldComp);
+    }
+
+    // 量化帧四周留 PAD 像素容纳边框描边，缩放时按比例一并缩放
+    private static void blitFrame(Graphics2D g2d, BufferedImage img, int centerX, int top, int bw, int bh){
+        int fw = img.getWidth() - PAD*2, fh = img.getHeight() - PAD*2;
+        int pw = PAD * bw / fw, ph = PAD * bh / fh;
+        g2d.drawImage(img, centerX - bw/2 - pw, top - ph, bw + pw*2, bh + ph*2, null);
     }
 
+    private BufferedImage bodyFrame(int phase, int pulseStep, int breatheStep){
+        int key = (phase << 12) | (pulseStep << 8) | (breatheStep + 64);
+        BufferedImage img = frameCache.get(key);
+        if(img != null) return img;
+        Color cTop, cBottom;
+        if (phase == 0) { cTop = new Color(30,30,60,160); cBottom = new Color(80,0,120,160); }
+        else if (phase == 1) { cTop = new Color(60,0,90,170); cBottom = new Color(140,20,180,180); }
+        else if (phase == 2) { cTop = new Color(90,0,30,190); cBottom = new Color(220,40,90,190); }
+        else { // 濒危阶段：颜色脉动
+            int pulse = 40 + 160 * pulseStep / (PULSE_STEPS - 1);
+            cTop = new Color(120,0,pulse/2,200);
+            cBottom = new Color(255,pulse,120,210);
+        }
+        int bw = frameW(breatheStep), bh = frameH(breatheStep);
+        img = createFrame(bw, bh);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(PAD, PAD, cTop, PAD + bw, PAD + bh, cBottom));
+        g.fillRoundRect(PAD, PAD, bw, bh, 40, 40);
+        g.dispose();
+        frameCache.put(key, img);
+        return img;
+    }
+
+    private BufferedImage borderFrame(int breatheStep){
+        int key = (1 << 16) | (breatheStep + 64);
+        BufferedImage img = frameCache.get(key);
+        if(img != null) return img;
+        int bw = frameW(breatheStep), bh = frameH(breatheStep);
+        img = createFrame(bw, bh);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(BORDER);
+        g.setStroke(BORDER_STROKE);
+        g.drawRoundRect(PAD, PAD, bw, bh, 40, 40);
+        g.dispose();
+        frameCache.put(key, img);
+        return img;
+    }
+
+    private static int frameW(int breatheStep){ return (int)(260 * (1 + breatheStep * BREATHE_QUANT)); }
+    private static int frameH(int breatheStep){ return (int)(320 * (1 + breatheStep * BREATHE_QUANT)); }
+
+    private static BufferedImage createFrame(int bw, int bh){
+        if(GraphicsEnvironment.isHeadless()) return new BufferedImage(bw + PAD*2, bh + PAD*2, BufferedImage.TYPE_INT_ARGB_PRE);
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(bw + PAD*2, bh + PAD*2, Transparency.TRANSLUCENT);
+    }
+
+    // 身体呼吸最大约 1.07 倍，头部在身体上方最多约 60px
+    @Override public void addDirtyBounds(DirtyRegions dirty, int centerX, int centerY){ dirty.add(centerX - 160, centerY - 235, 320, 420); }
+
     public int getHealth() { return health; }
     public int getMaxHealth() { return maxHealth; }
     public String getName() { return name; }
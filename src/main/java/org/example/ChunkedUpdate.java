@@ -0,0 +1,52 @@
+package org.example;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 分块并行更新：把 [0, n) 切成连续区间，数量超过阈值时在公共 ForkJoinPool 上并行执行，否则在调用线程串行执行。
+ * 任务对象预先分配、每帧 reinitialize 复用，不产生任务垃圾；各区间互不重叠，结果与串行执行一致。
+ */
+public class ChunkedUpdate {
+    public static final int DEFAULT_THRESHOLD = Integer.getInteger("codesymphony.parallel.threshold", 4096);
+    public static final int DEFAULT_MIN_CHUNK = 512;
+
+    /** 处理一个连续区间 [from, to)；只能写入该区间内的元素 */
+    public interface RangeBody { void run(int from, int to); }
+
+    @SuppressWarnings("serial") // 只在进程内复用，不会序列化
+    private static final class Chunk extends RecursiveAction {
+        RangeBody body; int from, to;
+        @Override protected void compute(){ body.run(from, to); }
+    }
+
+    private final int threshold, minChunk;
+    private final Chunk[] chunks;
+
+    public ChunkedUpdate(int threshold){ this(threshold, DEFAULT_MIN_CHUNK); }
+
+    /** minChunk 为每块的最少元素数：元素少而单个开销大时调小，才能在 threshold 附近真正分块 */
+    public ChunkedUpdate(int threshold, int minChunk){
+        this.threshold = threshold; this.minChunk = Math.max(1, minChunk);
+        int parallelism = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        chunks = new Chunk[parallelism + 1]; // 调用线程也执行一块
+        for(int i=0;i<chunks.length;i++) chunks[i] = new Chunk();
+    }
+
+    public void run(int n, RangeBody body){
+        int count = Math.min(chunks.length, n / minChunk);
+        if(n < threshold || count <= 1){ body.run(0, n); return; }
+        int per = (n + count - 1) / count;
+        for(int i=1;i<count;i++){
+            Chunk c = chunks[i];
+            c.reinitialize();
+            c.body = body; c.from = i * per; c.to = Math.min(n, c.from + per);
+            c.fork();
+        }
+        body.run(0, Math.min(n, per));
+        for(int i=1;i<count;i++){ chunks[i].join(); chunks[i].body = null; }
+    }
+
+    public int getThreshold(){ return threshold; }
+    public int getMinChunk(){ return minChunk; }
+}
@@ -3,15 +3,20 @@ package org.example;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.geom.CubicCurve2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.example.AttackEffects.*;
@@ -21,85 +26,33 @@ public class CodeSymphonyGame extends JFrame {
     private static final int HEIGHT = 700;
     private static final Logger LOGGER = Logger.getLogger(CodeSymphonyGame.class.getName());
 
-    private BossEntity boss; // 改为接口
-    private List<BossEntity> bosses = new ArrayList<>();
-    private int currentBossIndex = 0;
-    private long totalScore = 0; // 汇总分数
-
-    // 新增连击&特效字段
-    private int comboCount = 0;
-    private long lastTriggerTime = 0;
-    private static final long COMBO_WINDOW_MS = 800; // 连击时间窗口
-    private double comboMultiplier = 1.0;
+    // 游戏规则核心（Boss/连击/技能/投射物）：只在模拟线程上访问，渲染端在 worldLock 下读取 Boss
+    private GameSimulation sim;
+    private long simTicks = 0, simTimeMs = 0; // 已执行的模拟步数 / 模拟时间（规则核心的时钟，只在模拟线程推进）
+    // -Dcodesymphony.record=true 时录制输入，退出时写入 ~/codesymphony-input-<时间戳>.csir，供 ReplayRunner 回放
+    private static final boolean RECORD_INPUT = Boolean.getBoolean("codesymphony.record");
+    private InputRecording recording; private int recordedW, recordedH;
 
     // 自动连击：按住键重复触发
-    private final Map<Integer, javax.swing.Timer> holdTimers = new LinkedHashMap<>();
-    private final Map<Integer, Boolean> keyHolding = new LinkedHashMap<>();
+    private InputScheduler input; // 乐器键按下/长按重复（模拟线程）
+    private final long[] hitKeyNanos = new long[16]; // 按通道暂存本次触发对应的按键时刻，交给击打音记录延迟（模拟线程）
 
-    // 屏幕抖动 & 低频光晕
-    private double shakeIntensity = 0; // 0~1
-    private double bassPulseAmp = 0;   // 低频脉冲幅度
-    private double bassPulsePhase = 0; // 相位
     private final Random randFX = new Random();
 
-    // 技能条 & 超级技能
-    private double skillCharge = 0; // 0-100
-    private boolean skillReady = false;
-    private static final double SKILL_THRESHOLD = 300.0; // 三倍蓄力
-    private static final double SKILL_GAIN_PER_HIT = 6.5; // 基础获得不变但阈值提高意味着更久
-    private static final double SKILL_COMBO_BONUS = 0.25; // 补回每连击额外百分比
-
-    // Boss 阶段反击
-    private int bossPhase = 0; // 0..3
-    private boolean counterActive = false;
-    private long counterEndTime = 0;
-    private boolean counterResolved = false;
-    private static final long COUNTER_WINDOW_MS = 1500; // 格挡时间
-
-    // 记录最后一次血量阶段
-    private double lastBossHealthPct = 1.0;
-
-    // 减速 & 暗化
-    private double slowFactor = 1.0; // <1 表示减速（延长触发间隔）
-    private long slowEndTime = 0;
-    private float darkAlpha = 0f; // 屏幕暗化层
-
     // 缺失字段补充
     private Map<Integer, Instrument> instruments; // 乐器表
     private JPanel gamePanel; // 主画布
     private AudioEngine audioEngine; // 音频引擎
     // 改为无锁集合 -> 再改回普通 ArrayList 提升频繁增删性能
     private final java.util.List<AttackEffect> activeEffects = new java.util.ArrayList<>();
-    private long lastUpdate = System.currentTimeMillis(); // 上次帧时间
-    private int score = 0; // 当前Boss内得分
-    private int lastUsedInstrumentIndex = -1; // 最近使用乐器索引
-
-    // Boss专属技能状态
-    private enum BossSkillType { NONE, ABSORB, REFLECT, CORE_PULSE }
-    private BossSkillType bossSkill = BossSkillType.NONE;
-    private long bossSkillEnd = 0;
-    private boolean reflectActive = false;
-    private double absorbAccum = 0; // 吸收期间累计伤害
-    private long nextSkillTime = 0; // 下次技能触发时间
-
-    // 终极技能屏幕标记
-    private boolean ultimateActive = false;
-    private long ultimateEnd = 0;
-
-    // 新增：终极技能连击倍率加倍状态
-    private boolean ultimateComboBoost = false;
-    private long ultimateComboEnd = 0;
-
-    // Telegraph 提示相关
-    private AttackEffects.CircleTelegraphEffect pendingTelegraph = null;
-    private boolean telegraphSatisfied = false;
-    private String telegraphKey = "SPACE";
-
-    // 新增：Boss 切换保护，防止同帧多次判定
-    private boolean bossSwitching = false;
+    private long lastFrame = System.currentTimeMillis(); // 上次重绘时间（渲染节奏）
 
     // 当前存档数据引用
     private SaveManager.SaveData saveData;
+    // 预写日志：每个事件一条小记录；累计足够条目或击败 Boss 时生成快照
+    private final SaveJournal journal = SaveManager.journal();
+    // 后台存档写入（每秒最多 2 次，合并中间快照）
+    private final SaveWriter saveWriter = new SaveWriter(2, journal);
 
     // 可调上限
     private int bpmMax = 180;
@@ -111,36 +64,72 @@ public class CodeSymphonyGame extends JFrame {
     // 星点缓存
     private int[] starX, starY; private int starCount=70;
 
-    private static class Projectile {
-        double x,y; final double tx,ty; final double speed; final int damage; final Color color; boolean hit=false; Instrument inst;
-        final java.util.Deque<Point> trail = new java.util.ArrayDeque<>(); // 拖尾
-        Projectile(double x,double y,double tx,double ty,double speed,int damage,Color c, Instrument inst){this.x=x;this.y=y;this.tx=tx;this.ty=ty;this.speed=speed;this.damage=damage;this.color=c;this.inst=inst;}
-    }
-    private final java.util.List<Projectile> projectiles = new CopyOnWriteArrayList<>();
-
     // 性能自适应
     private enum QualityLevel { HIGH, MED, LOW }
-    private QualityLevel quality = QualityLevel.HIGH;
-    private double avgFrameMs = 16.0; // 平滑帧时间
+    private volatile QualityLevel quality = QualityLevel.HIGH;
+    private volatile double avgFrameMs = 16.0; // 平滑帧时间（EDT 重绘间隔）
     private long perfLastAdjust = 0;
     private static final double PERF_SMOOTH = 0.08; // 平滑因子
     // 调试 HUD 开关
-    private boolean showDebugHud = false;
+    private volatile boolean showDebugHud = false;
     // 终极技能强制质量
     private QualityLevel qualityBeforeUltimate = QualityLevel.HIGH;
     private boolean qualityForced = false;
-    // 低质量模式投射物节流计数
-    private int lowQualityProjectileSkipCounter = 0;
 
     // ====== 新增性能相关字段 ======
     private boolean frameSkipToggle = false; // 低质量帧跳过
     private int frameCounter = 0; // 用于降低部分绘制频率
-    private boolean projectileUpdateToggle = false; // LOW 模式抛射物逻辑隔帧
     // ===========================
 
+    // 固定步长模拟线程：游戏逻辑只在 Sim-Loop 上运行，EDT 只负责输入投递与绘制
+    private SimulationLoop simLoop;
+    private final Object worldLock = new Object(); // 模拟步进与 Boss/特效绘制互斥
+    private final SnapshotExchange<FrameSnapshot> frames = new SnapshotExchange<>(FrameSnapshot::new);
+    private volatile int viewW = WIDTH, viewH = HEIGHT; // 画布尺寸（EDT 写，模拟线程读）
+    // 主动渲染（-Dcodesymphony.render.active=true，仅独立窗口）：Canvas + BufferStrategy 由渲染线程直接翻页
+    private static final boolean ACTIVE_RENDER = Boolean.getBoolean("codesymphony.render.active");
+    private ActiveRenderer activeRenderer;
+    // 被动模式脏矩形重绘（-Dcodesymphony.render.dirty=false 关闭）；以下字段只在 EDT 上访问
+    private static final boolean DIRTY_REPAINT = !"false".equals(System.getProperty("codesymphony.render.dirty"));
+    private FrameSnapshot paintFrame; // 本次重绘使用的快照（计时器取得，paintComponent 复用）
+    private final DirtyRegions hudDirty = new DirtyRegions(8), lastPainted = new DirtyRegions(8), repaintRegions = new DirtyRegions(8);
+    private final Rectangle repaintBounds = new Rectangle();
+    private QualityLevel lastPaintedQuality; private boolean lastDebugHud;
+    private int hudBossHealth = -1, hudBossIndex = -1, hudCombo = -1, hudSkill = -1, hudBpm = -1; private long hudScore = -1; private double hudComboMul;
+    private boolean hudSlow, hudReflect, hudUltimate, hudSkillReady, hudCounter; private GameSimulation.BossSkill hudBossSkill;
+
+    /** HUD 布局：绘制与脏区域计算共用（坐标为面板像素，*_RIGHT / *_BOTTOM 为距右/下边缘） */
+    private static final class HudLayout {
+        static final int BEAT_W = 160, BEAT_H = 6, BEAT_Y = 12; // 拍点条，水平居中
+        static final int HP_W = 500, HP_H = 24, HP_Y = 40, HP_TEXT_DX = 10, HP_TEXT_DY = 17; // 血条，水平居中
+        static final int SLOW_DX = 180; static final String SLOW_TEXT = "减速中"; // 相对中线
+        static final int SCORE_X = 20, SCORE_BOTTOM = 50, COMBO_BOTTOM = 60;
+        static final int ULTIMATE_Y = 70; static final String ULTIMATE_TEXT = "终极连击 x2";
+        static final int SKILL_W = 260, SKILL_H = 16, SKILL_RIGHT = 30, SKILL_BOTTOM = 60, COUNTER_DY = 20;
+        static final int BPM_RIGHT = 170, BPM_BOTTOM = 30;
+        static final int BOSS_SKILL_RIGHT = 180, BOSS_SKILL_Y = 30;
+        static final int REFLECT_X = 8, REFLECT_Y = 8, REFLECT_SIZE = 28;
+        static final int SUBTITLE_DY = 70, SUBTITLE_PAD_X = 14, SUBTITLE_PAD_Y = 4; // 字幕基线在 h/3 之上
+        static final int DEBUG_X = 10, DEBUG_Y0 = 18, DEBUG_LINE = 14, DEBUG_LINES = 7; // F3 调试信息
+        static int debugBaseline(int line){ return DEBUG_Y0 + line * DEBUG_LINE; }
+    }
+
+    /** 模拟线程发布给渲染端的一帧：HUD 数值 + 投射物上一 tick / 当前 tick 位置（用于插值） */
+    private static final class FrameSnapshot {
+        long tickNanos; QualityLevel quality = QualityLevel.HIGH;
+        double shakeIntensity, bassPulseAmp, bassPulsePhase, slowFactor = 1.0, comboMultiplier = 1.0, skillCharge; float darkAlpha;
+        int bossHealth, bossMaxHealth = 1, bossIndex, bossCount, comboCount; String bossName = ""; long totalScore;
+        boolean skillReady, counterActive, counterResolved, reflectActive, ultimateComboBoost; long counterRemainMs;
+        GameSimulation.BossSkill bossSkill = GameSimulation.BossSkill.NONE;
+        final ProjectileStore projectiles = new ProjectileStore(ProjectileStore.DEFAULT_CAPACITY); // 模拟端投射物池的只读副本
+        final DirtyRegions dirty = new DirtyRegions(8); // 世界元素（Boss/特效/粒子/投射物）本帧的绘制范围
+    }
+
     private JPanel rootPanel; // 新增：根容器（用于嵌入 ToolWindow）
     private boolean embedded = false; // 是否嵌入模式（不显示为独立窗口）
-    private boolean paused = false; // 暂停状态
+    private volatile boolean paused = false; // 暂停状态
+    private volatile boolean suspended = false; // 挂起：工具窗口隐藏、IDE 失焦或省电模式（由宿主控制）
+    private volatile boolean dialogOpen = false; // 模态对话框期间模拟暂停
     private javax.swing.Timer mainLoopTimer; // 保存主循环计时器
 
     public CodeSymphonyGame() { this(false,false); }
@@ -163,26 +152,72 @@ public class CodeSymphonyGame extends JFrame {
 
     public JPanel getRootPanel(){ return rootPanel; }
     public boolean isPaused(){ return paused; }
-    public void togglePause(){ paused = !paused; if(audioEngine!=null) audioEngine.setPaused(paused); }
+    public void togglePause(){ paused = !paused; if(paused && simLoop!=null) onSim(() -> input.releaseAll(simTimeMs)); if(audioEngine!=null) audioEngine.setPaused(paused); applyRunState(); }
+
+    /**
+     * 挂起（EDT）：模拟线程、重绘计时器/渲染线程、MIDI 分发与合成器全部停下，不占 CPU；
+     * 游戏时钟是模拟时间、节拍时钟冻结，resume 后两者都从挂起时的位置继续。与玩家暂停相互独立。
+     */
+    public void suspend(){
+        if(suspended) return;
+        suspended = true;
+        if(simLoop!=null) onSim(() -> input.releaseAll(simTimeMs)); // 失焦时收不到按键抬起
+        applyRunState();
+        audioEngine.suspend();
+        LOGGER.fine("游戏已挂起");
+    }
+
+    public void resume(){
+        if(!suspended) return;
+        suspended = false;
+        audioEngine.resume();
+        applyRunState();
+        LOGGER.fine("游戏已恢复");
+    }
+    public boolean isSuspended(){ return suspended; }
+
+    // 按暂停/挂起/对话框状态启停模拟与重绘（EDT）；暂停画面只在切换时重绘一次
+    private void applyRunState(){
+        boolean halt = paused || suspended;
+        if(simLoop!=null) simLoop.setHalted(halt || dialogOpen);
+        if(activeRenderer!=null) activeRenderer.setPaused(halt);
+        if(mainLoopTimer!=null){
+            if(halt) mainLoopTimer.stop();
+            else if(!mainLoopTimer.isRunning()){ lastFrame = System.currentTimeMillis(); mainLoopTimer.start(); }
+        }
+        if(gamePanel!=null && !suspended){ lastPainted.markFull(); gamePanel.repaint(); }
+    }
 
     private void initGame() {
-        createBosses();
+        List<BossEntity> bosses = GameSimulation.createBosses();
+        instruments = GameSimulation.createInstruments();
+        input = new InputScheduler(instruments.size());
+        long simSeed = System.nanoTime(), effectsSeed = simSeed * 0x9E3779B97F4A7C15L;
+        AttackEffects.seedRandom(effectsSeed);
+        sim = new GameSimulation(bosses, instruments, () -> simTimeMs, simSeed);
         double[] maxHealths = bosses.stream().mapToDouble(BossEntity::getMaxHealth).toArray();
         SaveManager.SaveData loaded = SaveManager.load(bosses.size(), maxHealths);
-        if (loaded != null) { this.saveData = loaded; currentBossIndex = loaded.currentBossIndex; bpmMax = loaded.bpmMax; }
-        boss = bosses.get(currentBossIndex);
-        if (loaded != null && loaded.bossHealths != null && currentBossIndex < loaded.bossHealths.length) {
-            boss.setHealth((int)loaded.bossHealths[currentBossIndex]);
-            totalScore = loaded.totalScore; audioEngine.setBpm(Math.min(loaded.bpm, bpmMax)); audioEngine.setVolume(loaded.volume);
-            skillCharge = loaded.skillCharge; comboCount = loaded.comboCount;
-            if (loaded.ultimateComboRemainMs > 0) { ultimateComboBoost = true; ultimateComboEnd = System.currentTimeMillis() + loaded.ultimateComboRemainMs; }
+        if (loaded != null) {
+            this.saveData = loaded; bpmMax = loaded.bpmMax;
+            sim.restore(loaded);
+            if (loaded.bossHealths != null && loaded.currentBossIndex < loaded.bossHealths.length) { audioEngine.setBpm(Math.min(loaded.bpm, bpmMax)); audioEngine.setVolume(loaded.volume); }
+        }
+        sim.setAudioSink(new GameSimulation.AudioSink(){
+            @Override public void hitNote(Instrument inst){ int ch = inst.getChannel() & 15; long key = hitKeyNanos[ch]; hitKeyNanos[ch] = 0; audioEngine.playHitNote(inst, key); }
+            @Override public void pattern(Instrument inst){ audioEngine.playPattern(inst); }
+            @Override public void ultimate(){ audioEngine.playUltimateSequence(); }
+        });
+        if(RECORD_INPUT){
+            recording = new InputRecording();
+            recording.simSeed = simSeed; recording.effectsSeed = effectsSeed;
+            recording.viewW = recordedW = viewW; recording.viewH = recordedH = viewH;
+            sim.fillSave(recording.initial);
         }
-        instruments = new LinkedHashMap<>();
-        instruments.put(0, new Instrument("循环鼓 (A)", 10000, "鼓", 9, 0, Instrument.EffectType.RIPPLE));
-        instruments.put(1, new Instrument("函数琴 (S)", 16000, "钢琴", 0, 0, Instrument.EffectType.FIREWORK));
-        instruments.put(2, new Instrument("变量提琴 (D)", 20000, "小提琴", 1, 40, Instrument.EffectType.RIPPLE));
-        instruments.put(3, new Instrument("递归号 (F)", 24000, "萨克斯", 2, 65, Instrument.EffectType.FIREWORK));
-        instruments.put(4, new Instrument("并发贝斯 (G)", 30000, "贝斯", 3, 33, Instrument.EffectType.RIPPLE));
+        sim.setEffectsSink(effectsBridge);
+        sim.setListener(new GameSimulation.Listener(){
+            @Override public void journal(int type, int a, long value){ CodeSymphonyGame.this.journal(type, a, value); }
+            @Override public void bossDefeated(int defeatedIndex, boolean allDefeated){ onBossDefeated(defeatedIndex, allDefeated); }
+        });
         audioEngine.startBackgroundMelody();
         initFonts();
         buildMenu();
@@ -236,29 +271,30 @@ public class CodeSymphonyGame extends JFrame {
         panel.add(volLabel); panel.add(vol);
         panel.add(bpmLabel); panel.add(bpmSlider);
         JButton apply = new JButton("应用");
-        apply.addActionListener(ev->{ audioEngine.setVolume(vol.getValue()); bpmMax = bpmSlider.getValue(); if(audioEngine.getBpm()>bpmMax) audioEngine.setBpm(bpmMax); saveProgress(); dlg.dispose(); });
+        apply.addActionListener(ev->{ int v = vol.getValue(), max = bpmSlider.getValue(); onSim(() -> { audioEngine.setVolume(v); bpmMax = max; if(audioEngine.getBpm()>bpmMax){ audioEngine.setBpm(bpmMax); journal(SaveJournal.BPM, bpmMax, 0); } journal(SaveJournal.SETTINGS, audioEngine.getVolume(), bpmMax); }); dlg.dispose(); });
         panel.add(new JLabel()); panel.add(apply);
         dlg.add(panel, BorderLayout.CENTER);
         dlg.pack(); dlg.setLocationRelativeTo(this); dlg.setVisible(true);
     }
 
-    private void createBosses(){
-        bosses.clear();
-        bosses.add(new BugBoss(12_000_000, "code"));
-        bosses.add(new MatrixBoss(18_000_000, "matrix"));
-        bosses.add(new NeuralCoreBoss(25_000_000, "core"));
-    }
-
     private void initUI() {
         rootPanel = new JPanel(new BorderLayout());
         gamePanel = new GamePanel();
+        if(ACTIVE_RENDER && !embedded){
+            GamePanel gp = (GamePanel) gamePanel;
+            activeRenderer = new ActiveRenderer((g, w, h) -> { g.setColor(Color.BLACK); g.fillRect(0,0,w,h); gp.renderFrame(g, frames.acquire()); });
+            gamePanel.setLayout(new BorderLayout());
+            gamePanel.add(activeRenderer.getCanvas(), BorderLayout.CENTER);
+            // 重量级 Canvas 会盖住轻量级弹出菜单
+            for(int i=0;i<getJMenuBar().getMenuCount();i++) getJMenuBar().getMenu(i).getPopupMenu().setLightWeightPopupEnabled(false);
+        }
         rootPanel.add(gamePanel, BorderLayout.CENTER);
         int extra = 1; // 暂停按钮
         JPanel controlPanel = new JPanel(new GridLayout(1, instruments.size()+extra));
         for (int i = 0; i < instruments.size(); i++) {
             final int idx = i;
             JButton button = new JButton(instruments.get(i).getName());
-            button.addActionListener(e -> triggerInstrument(idx));
+            button.addActionListener(e -> onSim(() -> triggerInstrument(idx)));
             controlPanel.add(button);
         }
         JButton pauseBtn = new JButton("暂停(P)");
@@ -274,22 +310,23 @@ public class CodeSymphonyGame extends JFrame {
             final int idx = i;
             char key = keys[i];
             // 按下（触发 + 启动长按计时器）
-            addKeyBinding(gamePanel, KeyStroke.getKeyStroke(key, 0, false), "PRESS_"+key, () -> handlePress(idx));
-            addKeyBinding(gamePanel, KeyStroke.getKeyStroke(Character.toLowerCase(key), 0, false), "PRESS_LOW_"+key, () -> handlePress(idx));
+            addPressBinding(gamePanel, KeyStroke.getKeyStroke(key, 0, false), "PRESS_"+key, idx);
+            addPressBinding(gamePanel, KeyStroke.getKeyStroke(Character.toLowerCase(key), 0, false), "PRESS_LOW_"+key, idx);
             // 释放（停止长按）
             addKeyBinding(gamePanel, KeyStroke.getKeyStroke(KeyEvent.getExtendedKeyCodeForChar(key), 0, true), "RELEASE_"+key, () -> handleRelease(idx));
             addKeyBinding(gamePanel, KeyStroke.getKeyStroke(KeyEvent.getExtendedKeyCodeForChar(Character.toLowerCase(key)), 0, true), "RELEASE_LOW_"+key, () -> handleRelease(idx));
         }
         // 超级技能 Q
-        addKeyBinding(gamePanel, KeyStroke.getKeyStroke('Q'), "SUPER_Q", this::triggerSuperSkill);
-        addKeyBinding(gamePanel, KeyStroke.getKeyStroke('q'), "SUPER_q", this::triggerSuperSkill);
+        addKeyBinding(gamePanel, KeyStroke.getKeyStroke('Q'), "SUPER_Q", () -> onSim(this::triggerSuperSkill));
+        addKeyBinding(gamePanel, KeyStroke.getKeyStroke('q'), "SUPER_q", () -> onSim(this::triggerSuperSkill));
         // 反击格挡 SPACE
-        addKeyBinding(gamePanel, KeyStroke.getKeyStroke(KeyEvent.VK_SPACE,0), "COUNTER_SPACE", this::attemptCounterResolve);
+        addKeyBinding(gamePanel, KeyStroke.getKeyStroke(KeyEvent.VK_SPACE,0), "COUNTER_SPACE", () -> onSim(this::attemptCounterResolve));
         // BPM 调整 上下键
-        addKeyBinding(gamePanel, KeyStroke.getKeyStroke(KeyEvent.VK_UP,0), "BPM_UP", () -> changeBpm(4));
-        addKeyBinding(gamePanel, KeyStroke.getKeyStroke(KeyEvent.VK_DOWN,0), "BPM_DOWN", () -> changeBpm(-4));
+        addKeyBinding(gamePanel, KeyStroke.getKeyStroke(KeyEvent.VK_UP,0), "BPM_UP", () -> onSim(() -> changeBpm(4)));
+        addKeyBinding(gamePanel, KeyStroke.getKeyStroke(KeyEvent.VK_DOWN,0), "BPM_DOWN", () -> onSim(() -> changeBpm(-4)));
         // F3 切换性能 HUD
         addKeyBinding(gamePanel, KeyStroke.getKeyStroke(KeyEvent.VK_F3,0), "TOGGLE_DEBUG_HUD", () -> { showDebugHud = !showDebugHud; });
+        addKeyBinding(gamePanel, KeyStroke.getKeyStroke(KeyEvent.VK_F3,InputEvent.SHIFT_DOWN_MASK), "EXPORT_PERF_CSV", this::exportPerfCsv);
         // 添加暂停键 P
         addKeyBinding(gamePanel, KeyStroke.getKeyStroke('P'), "PAUSE_P", this::togglePause);
         addKeyBinding(gamePanel, KeyStroke.getKeyStroke('p'), "PAUSE_p", this::togglePause);
@@ -298,6 +335,9 @@ public class CodeSymphonyGame extends JFrame {
         gamePanel.requestFocusInWindow();
     }
 
+    // EDT 上的输入只投递命令，由模拟线程在下一次循环开头执行
+    private void onSim(Runnable command){ simLoop.post(command); }
+
     private void addKeyBinding(JComponent comp, KeyStroke ks, String id, Runnable run){
         InputMap im = comp.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
         ActionMap am = comp.getActionMap();
@@ -307,231 +347,322 @@ public class CodeSymphonyGame extends JFrame {
         });
     }
 
-    // 动态重复间隔（减速时更长）
+    // 乐器键：记下按键事件时刻（KeyEvent.getWhen 只有毫秒精度，换算到 nanoTime 时间基，含 EDT 排队时间）
+    private void addPressBinding(JComponent comp, KeyStroke ks, String id, int idx){
+        InputMap im = comp.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        ActionMap am = comp.getActionMap();
+        im.put(ks, id);
+        am.put(id, new AbstractAction(){
+            @Override public void actionPerformed(ActionEvent e){
+                long queuedMs = e.getWhen() > 0 ? Math.max(0, System.currentTimeMillis() - e.getWhen()) : 0;
+                handlePress(idx, System.nanoTime() - queuedMs * 1_000_000L);
+            }
+        });
+    }
+
+    // 动态重复间隔（减速时更长；模拟线程）
     private int computeRepeatIntervalMs(){
         double base = 160;
+        double slowFactor = sim.getSlowFactor();
         if (slowFactor < 1.0) return (int)(base / slowFactor);
         return (int)base;
     }
 
-    private void handlePress(int idx){
-        keyHolding.put(idx, true);
-        triggerInstrument(idx);
-        javax.swing.Timer t = new javax.swing.Timer(computeRepeatIntervalMs(), e -> {
-            if(Boolean.TRUE.equals(keyHolding.get(idx))) {
-                triggerInstrument(idx);
-            }
+    // 按键只投递状态变化，触发由 InputScheduler 轮询决定；按下后立即轮询一次，首次击打不必等到下一个 tick
+    private void handlePress(int idx, long keyNanos){
+        onSim(() -> {
+            record(InputRecording.PRESS, idx); input.press(idx, simTimeMs, keyNanos);
+            int due = input.poll(simTimeMs, computeRepeatIntervalMs());
+            if(due != 0) triggerInstruments(due);
         });
-        t.setInitialDelay((int)(computeRepeatIntervalMs()*1.6));
-        t.start();
-        holdTimers.put(idx, t);
     }
 
     private void handleRelease(int idx){
-        keyHolding.put(idx, false);
-        javax.swing.Timer t = holdTimers.remove(idx);
-        if (t != null) t.stop();
-    }
-
-    private void attemptCounterResolve(){
-        if (counterActive && !counterResolved) {
-            counterResolved = true; // 成功格挡
-            skillCharge = Math.min(SKILL_THRESHOLD, skillCharge + 25);
-            shakeIntensity = Math.min(1.0, shakeIntensity + 0.3);
-            telegraphSatisfied = true;
-        }
-        if (pendingTelegraph != null) pendingTelegraph.alive=false;
-    }
-
-    private void updateBossPhaseIfNeeded(){
-        double hpPct = (double)boss.getHealth()/boss.getMaxHealth();
-        int phase = hpPct > 0.7 ? 0 : hpPct > 0.4 ? 1 : hpPct > 0.15 ? 2 : 3;
-        if (phase != bossPhase) {
-            bossPhase = phase;
-            launchCounterAttack();
-        }
-    }
-
-    private void launchCounterAttack(){
-        counterActive = true; counterResolved = false; counterEndTime = System.currentTimeMillis() + COUNTER_WINDOW_MS;
-        activeEffects.add(new AttackEffects.ShockwaveEffect(getWidth(), getHeight()));
-        // 中央显示格挡提示 telegraph
-        int cx = getWidth()/2; int cy = getHeight()/3;
-        activeEffects.add(new AttackEffects.CircleTelegraphEffect(cx, cy, 300, COUNTER_WINDOW_MS, "SPACE"));
-    }
-
-    private void finishCounterIfTimeout(){
-        if (counterActive && System.currentTimeMillis() > counterEndTime) {
-            counterActive = false;
-            if (!counterResolved) {
-                // 未格挡惩罚：清空部分连击与技能能量
-                comboCount = 0;
-                comboMultiplier = 1.0;
-                skillCharge = Math.max(0, skillCharge - 30);
-                shakeIntensity = Math.min(1.0, shakeIntensity + 0.2);
-                // 反击失败附加：减速4秒 + 暗化
-                slowFactor = 0.5;
-                slowEndTime = System.currentTimeMillis() + 4000;
-                darkAlpha = 0.65f;
-            }
-        }
-        if (counterActive && counterResolved) {
-            // 成功后立即结束窗口
-            counterActive = false;
-        }
+        onSim(() -> { record(InputRecording.RELEASE, idx); input.release(idx, simTimeMs); });
     }
 
     private void changeBpm(int delta){
         int newBpm = Math.max(60, Math.min(bpmMax, audioEngine.getBpm() + delta));
-        audioEngine.setBpm(newBpm); saveProgress();
-    }
-
-    private void triggerSuperSkill() {
-        if (!skillReady) return; skillReady = false; skillCharge = 0;
-        // 记录并强制高质量
-        if(!qualityForced){ qualityBeforeUltimate = quality; qualityForced = true; }
-        quality = QualityLevel.HIGH;
-        Instrument last = instruments.get(lastUsedInstrumentIndex >=0 ? lastUsedInstrumentIndex : 1);
-        activeEffects.add(new AttackEffects.UltimateOverlayEffect(last.getColor(), 5000));
-        activeEffects.add(new AttackEffects.HackOverlayEffect());
-        audioEngine.playUltimateSequence();
-        ultimateActive = true; ultimateEnd = System.currentTimeMillis() + 5000;
-        ultimateComboBoost = true; ultimateComboEnd = System.currentTimeMillis() + 10000;
-        AttackEffect eff = (last.getEffectType()== Instrument.EffectType.FIREWORK)
-                ? new AttackEffects.SuperFireworkEffect(getWidth(), getHeight(), last.getColor(), getEffectDensity())
-                : new AttackEffects.FullScreenRippleEffect(getWidth(), getHeight(), last.getColor());
-        activeEffects.add(eff);
-        int bonusDmg = (int)(boss.getMaxHealth() * 0.03 + comboCount * 800);
-        applyBossDamage(bonusDmg);
-        shakeIntensity = Math.min(1.0, shakeIntensity + 0.7);
-    }
-
-    private void scheduleNextBossSkill(){
-        long now = System.currentTimeMillis();
-        // 每 8~14 秒之间触发一次（取随机+放松体验）
-        nextSkillTime = now + 8000 + new Random().nextInt(6000);
+        audioEngine.setBpm(newBpm); journal(SaveJournal.BPM, newBpm, 0);
     }
 
-    // 移除 v2 临时方法：将逻辑合并为正式方法 (保留当前这一份)
-    private void maybeActivateBossSkill(){
-        long now = System.currentTimeMillis();
-        if (now < nextSkillTime || bossSkill != BossSkillType.NONE || counterActive) return;
-        if (boss instanceof BugBoss) {
-            bossSkill = BossSkillType.ABSORB; bossSkillEnd = now + 3000; absorbAccum = 0;
-            spawnTelegraph("", 1500);
-        } else if (boss instanceof MatrixBoss) {
-            bossSkill = BossSkillType.REFLECT; bossSkillEnd = now + 2500; reflectActive = true; spawnTelegraph("", 1600);
-        } else if (boss instanceof NeuralCoreBoss) {
-            bossSkill = BossSkillType.CORE_PULSE; bossSkillEnd = now + 3200; activeEffects.add(new AttackEffects.CorePulseEffect(getWidth(), getHeight(), new Color(120,200,255))); // 不再提示 SPACE
-            spawnTelegraph("", 2000);
+    // 终极技能期间强制高画质，结束后在模拟步里恢复
+    private final SimulationEffects effectsBridge = new SimulationEffects(activeEffects){
+        @Override public void ultimate(Instrument last){
+            if(!qualityForced){ qualityBeforeUltimate = quality; qualityForced = true; }
+            quality = QualityLevel.HIGH; setDensity(getEffectDensity());
+            super.ultimate(last);
         }
+    };
+
+    // 记录一条输入命令（模拟线程；命令在第 simTicks 步之前执行）
+    private void record(int type, int arg){ if(recording != null) recording.add(simTicks, type, arg); }
+
+    private void writeRecording(){
+        if(recording == null) return;
+        recording.setTotalTicks(simTicks);
+        Path file = Paths.get(System.getProperty("user.home"), "codesymphony-input-" + System.currentTimeMillis() + ".csir");
+        try { recording.write(file); LOGGER.info("输入录制已写入 " + file + "（" + recording.size() + " 条，" + simTicks + " tick）"); }
+        catch (IOException e){ LOGGER.log(Level.WARNING, "写入输入录制失败", e); }
     }
 
-    // Telegraph 辅助
-    private void spawnTelegraph(String key, long duration){
-        telegraphKey = key; telegraphSatisfied = false; pendingTelegraph = null;
-        int cx = getWidth()/2; int cy = getHeight()/3; if(cx==0) {cx=WIDTH/2; cy=HEIGHT/3;}
-        Color c = boss instanceof BugBoss? new Color(255,140,80): boss instanceof MatrixBoss? new Color(255,230,90): new Color(140,210,255);
-        activeEffects.add(new AttackEffects.BlurTelegraphEffect(cx, cy, 260, duration, c.brighter(), true));
-        if(key != null && !key.isEmpty()) activeEffects.add(new AttackEffects.CircleTelegraphEffect(cx, cy, 240, duration, key));
+    // 记录一条预写日志；累计到阈值时生成快照
+    private void journal(int type, int a, long value){
+        journal.append(type, a, value);
+        if(journal.needsSnapshot()) saveProgress();
     }
 
-    // 统一保存方法 (仅此一份)
+    // 统一快照方法 (仅此一份)
     private void saveProgress() {
         SaveManager.SaveData d = new SaveManager.SaveData();
-        d.currentBossIndex = currentBossIndex;
-        d.totalScore = totalScore;
+        d.journalSeq = journal.currentSeq(); journal.markSnapshot();
+        sim.fillSave(d);
         d.bpm = audioEngine.getBpm();
-        d.skillCharge = skillCharge;
-        d.comboCount = comboCount;
-        d.ultimateComboRemainMs = ultimateComboBoost?Math.max(0, ultimateComboEnd-System.currentTimeMillis()):0;
-        d.bossHealths = bosses.stream().mapToDouble(BossEntity::getHealth).toArray();
         d.volume = audioEngine.getVolume();
         d.bpmMax = bpmMax;
-        SaveManager.save(d);
+        saveWriter.submit(d);
         this.saveData=d;
     }
 
     private void adaptiveQuality(long now){
-        if(qualityForced && ultimateActive) return;
+        if(qualityForced && sim.isUltimateActive()) return;
+        if(recording != null) return; // 录制期间固定 HIGH：特效密度决定随机数消耗与粒子数量，回放按同一密度才能复现
         if(now - perfLastAdjust < 1500) return;
         perfLastAdjust = now;
+        double avgFrameMs = frameMs();
         if(avgFrameMs > 28 && quality != QualityLevel.LOW){ quality = QualityLevel.LOW; trimEffectsForLow(); }
         else if(avgFrameMs > 20 && avgFrameMs <=28 && quality==QualityLevel.HIGH){ quality = QualityLevel.MED; }
         else if(avgFrameMs < 14 && quality!=QualityLevel.HIGH){ quality = QualityLevel.HIGH; }
     }
+    // 平滑帧时间：主动渲染取渲染线程的实测值，否则取 EDT 重绘间隔
+    private double frameMs(){ return activeRenderer!=null ? activeRenderer.getAvgFrameMs() : avgFrameMs; }
+
     private void trimEffectsForLow(){
         if(activeEffects.size()>12){ int excess = activeEffects.size()-12; for(int i=0;i<excess;i++){ activeEffects.remove(0); } }
-        for(Projectile p: projectiles){ while(p.trail.size()>5) p.trail.removeLast(); }
+        sim.getProjectiles().trimTrails(5);
     }
 
     private void updateEffects(long dt) {
-        int skipMod = (quality==QualityLevel.LOW?2:1);
-        // 原地更新 + 逆序移除
+        ParticleSystem.global().update(dt);
+        // 原地更新 + 逆序移除（粒子已并行推进，LOW 不再隔帧跳过特效）
         for(int i=activeEffects.size()-1;i>=0;i--){
             AttackEffect ef = activeEffects.get(i);
-            if(skipMod>1 && (i % skipMod)==1) { continue; }
             ef.update(dt);
             if(!ef.isAlive()) activeEffects.remove(i);
         }
     }
 
     private void startAnimationLoop() {
-        scheduleNextBossSkill();
+        simLoop = new SimulationLoop(new SimulationLoop.World(){
+            @Override public void step(long dtMs){ stepSimulation(dtMs); }
+            @Override public void publish(long tickNanos){ publishFrame(tickNanos); }
+        }, worldLock);
+        synchronized (worldLock){ publishFrame(System.nanoTime()); } // 首帧即有完整 HUD 数据
+        simLoop.start();
+        simLoop.post(() -> PerfMetrics.global().registerThread(Thread.currentThread()));
+        SwingUtilities.invokeLater(() -> PerfMetrics.global().registerThread(Thread.currentThread()));
+        if(activeRenderer!=null){ activeRenderer.start(); PerfMetrics.global().registerThread(activeRenderer.getThread()); return; } // 主动渲染自行按刷新率出帧
+        // EDT 计时器只负责重绘；质量等级只影响渲染节奏，不再影响逻辑步进
         mainLoopTimer = new javax.swing.Timer(16, e -> {
-            long now = System.currentTimeMillis(); long dt = now - lastUpdate; lastUpdate = now; if(dt<=0) dt=1;
-            if(paused){ gamePanel.repaint(); return; }
+            long now = System.currentTimeMillis(); long dt = now - lastFrame; lastFrame = now; if(dt<=0) dt=1;
+            if(paused || suspended) return; // 计时器此时已停，只会遇到停之前已排队的事件
             // 平滑帧时间
             avgFrameMs = avgFrameMs + (dt - avgFrameMs)*PERF_SMOOTH;
-            adaptiveQuality(now);
-            updateEffects(dt);
-            // 投射物逻辑低质量隔帧
-            if(quality==QualityLevel.LOW){ projectileUpdateToggle = !projectileUpdateToggle; if(!projectileUpdateToggle) updateProjectiles(dt); }
-            else updateProjectiles(dt);
-            shakeIntensity *= 0.90; if(shakeIntensity < 0.001) shakeIntensity = 0;
-            bassPulseAmp *= 0.92; bassPulsePhase += dt / 1000.0 * 2 * Math.PI * 1.2;
-            boss.update(dt);
-            updateBossPhaseIfNeeded(); finishCounterIfTimeout(); updateBossSkillState();
-            if (slowFactor < 1.0 && System.currentTimeMillis() > slowEndTime) slowFactor = 1.0;
-            if (darkAlpha > 0f) darkAlpha *= 0.92f;
-            if (ultimateActive && now > ultimateEnd) { ultimateActive = false; if(qualityForced){ quality = qualityBeforeUltimate; qualityForced=false; } }
+            PerfMetrics.global().record(PerfMetrics.Metric.FRAME, dt * 1_000_000L);
             if(quality==QualityLevel.LOW){ frameSkipToggle = !frameSkipToggle; if(frameSkipToggle) return; }
-            frameCounter++; gamePanel.repaint();
+            frameCounter++; repaintDirty(frames.acquire());
         });
         mainLoopTimer.start();
     }
 
-    private void triggerInstrument(int instrumentIndex) {
-        if(paused) return; // 暂停时不触发
-        Instrument instrument = instruments.get(instrumentIndex); if (instrument == null) return;
-        if (slowFactor < 1.0 && System.currentTimeMillis() > slowEndTime) slowFactor = 1.0;
-        audioEngine.playHitNote(instrument); // 即时反馈
-        maybeActivateBossSkill();
+    // 只重绘本帧与上一帧绘制过的区域；屏幕抖动、暗化、全屏特效或覆盖面积过大时整屏重绘（EDT）
+    private void repaintDirty(FrameSnapshot f){
+        paintFrame = f;
+        int w = gamePanel.getWidth(), h = gamePanel.getHeight();
+        DirtyRegions cur = hudDirty;
+        cur.copyFrom(f.dirty);
+        if(!DIRTY_REPAINT || f.quality != lastPaintedQuality || showDebugHud != lastDebugHud) cur.markFull();
+        lastPaintedQuality = f.quality; lastDebugHud = showDebugHud;
+        addViewDirty(cur, f, w, h);
+        repaintRegions.copyFrom(cur);
+        repaintRegions.addAll(lastPainted);
+        lastPainted.copyFrom(cur);
+        if(repaintRegions.isMarkedFull() || repaintRegions.totalArea() * 10 > (long)w * h * 6){ gamePanel.repaint(); return; }
+        // 一次重绘外接矩形：每次绘制都要走完整的 drawFrame（仅裁剪不同），分块逐个绘制反而是 N 帧的开销
+        repaintRegions.bounds(repaintBounds);
+        gamePanel.repaint(repaintBounds);
+    }
+
+    // 与视图尺寸和 HUD 数值相关的区域：扫描线、脉冲圈、光晕、拍点条持续变化，其余 HUD 只在数值变化时重绘
+    private void addViewDirty(DirtyRegions d, FrameSnapshot f, int w, int h){
+        if(f.quality != QualityLevel.LOW){
+            int scanY = (int)((System.currentTimeMillis()/12) % (h+90)) - 90;
+            d.add(0, scanY - 8, w, 90 + 16); // 扫描线，多留几像素覆盖绘制前的时间差
+            d.addCircle(w/2.0, h/3.0, Math.min(w,h)*0.22*1.05*1.35); // 中央脉冲圈
+        }
+        if(f.bassPulseAmp > 0.02) d.addCircle(w/2.0, h/2.0, Math.min(w,h)*0.6);
+        addBox(d, w/2 - HudLayout.BEAT_W/2, HudLayout.BEAT_Y, HudLayout.BEAT_W, HudLayout.BEAT_H); // 拍点条
+        if(showDebugHud) d.add(0, 0, w, HudLayout.debugBaseline(HudLayout.DEBUG_LINES - 1) + gamePanel.getFontMetrics(fontMono12).getDescent() + 1); // F3 调试信息逐帧刷新
+        String subtitle = bossSubtitle(f.bossSkill);
+        if(!subtitle.isEmpty()){ // 技能字幕持续闪烁
+            FontMetrics fm = gamePanel.getFontMetrics(fontMono16); int sw = fm.stringWidth(subtitle), y = h/3 - HudLayout.SUBTITLE_DY;
+            d.add(w/2 - sw/2 - HudLayout.SUBTITLE_PAD_X, y - fm.getAscent() - HudLayout.SUBTITLE_PAD_Y, sw + HudLayout.SUBTITLE_PAD_X*2, fm.getHeight() + HudLayout.SUBTITLE_PAD_Y*2);
+        }
+        if(f.bossHealth != hudBossHealth || f.bossIndex != hudBossIndex || (f.slowFactor < 1.0) != hudSlow){
+            hudBossHealth = f.bossHealth; hudBossIndex = f.bossIndex; hudSlow = f.slowFactor < 1.0;
+            int barX = w/2 - HudLayout.HP_W/2, textY = HudLayout.HP_Y + HudLayout.HP_TEXT_DY;
+            addBox(d, barX, HudLayout.HP_Y, HudLayout.HP_W, HudLayout.HP_H); // 血条
+            addText(d, fontMono16, hpText(f), barX + HudLayout.HP_TEXT_DX, textY); // Boss 名称（可能超出血条）
+            addText(d, fontMono16, HudLayout.SLOW_TEXT, w/2 + HudLayout.SLOW_DX, textY); // 减速提示
+        }
+        if(f.bossSkill != hudBossSkill || f.reflectActive != hudReflect || f.ultimateComboBoost != hudUltimate){
+            hudBossSkill = f.bossSkill; hudReflect = f.reflectActive; hudUltimate = f.ultimateComboBoost;
+            addText(d, fontMono12, bossSkillText(f.bossSkill), w - HudLayout.BOSS_SKILL_RIGHT, HudLayout.BOSS_SKILL_Y);
+            addBox(d, HudLayout.REFLECT_X, HudLayout.REFLECT_Y, HudLayout.REFLECT_SIZE, HudLayout.REFLECT_SIZE);
+            addText(d, fontMono12, HudLayout.ULTIMATE_TEXT, HudLayout.SCORE_X, HudLayout.ULTIMATE_Y);
+        }
+        if(f.totalScore != hudScore || f.comboCount != hudCombo || f.comboMultiplier != hudComboMul){
+            hudScore = f.totalScore; hudCombo = f.comboCount; hudComboMul = f.comboMultiplier;
+            addText(d, fontMono22Bold, comboText(f), HudLayout.SCORE_X, h - HudLayout.COMBO_BOTTOM); // 连击
+            addText(d, fontMono16, scoreText(f), HudLayout.SCORE_X, h - HudLayout.SCORE_BOTTOM); // 总分
+        }
+        int bpm = audioEngine.getBpm();
+        if((int)f.skillCharge != hudSkill || f.skillReady != hudSkillReady || f.counterActive || f.counterActive != hudCounter || bpm != hudBpm){
+            hudSkill = (int)f.skillCharge; hudSkillReady = f.skillReady; hudCounter = f.counterActive; hudBpm = bpm;
+            int skillX = w - HudLayout.SKILL_W - HudLayout.SKILL_RIGHT, skillY = h - HudLayout.SKILL_BOTTOM;
+            addBox(d, skillX, skillY, HudLayout.SKILL_W, HudLayout.SKILL_H); // 技能条（文字在条内）
+            addText(d, fontMono12, counterText(f), skillX, skillY - HudLayout.COUNTER_DY); // 格挡提示
+            addText(d, fontMono12, bpmText(bpm), w - HudLayout.BPM_RIGHT, h - HudLayout.BPM_BOTTOM);
+        }
+    }
+
+    // 带描边的矩形所占区域（描边各向外 1 像素）
+    private static void addBox(DirtyRegions d, int x, int y, int w, int h){ d.add(x - 1, y - 1, w + 2, h + 2); }
+
+    // 以 (x, baseline) 绘制的文字所占区域，字体与绘制时相同
+    private void addText(DirtyRegions d, Font font, String text, int x, int baseline){
+        if(text.isEmpty()) return;
+        FontMetrics fm = gamePanel.getFontMetrics(font);
+        d.add(x - 1, baseline - fm.getAscent() - 1, fm.stringWidth(text) + 2, fm.getAscent() + fm.getDescent() + 2);
+    }
+
+    // HUD 文字：绘制与脏区域计算共用
+    private static String hpText(FrameSnapshot f){ return "BOSS(" + (f.bossIndex+1) + "/" + f.bossCount + ") " + f.bossName + " HP: " + f.bossHealth + " / " + f.bossMaxHealth; }
+    private static String scoreText(FrameSnapshot f){ return "TOTAL: " + f.totalScore; }
+    private static String comboText(FrameSnapshot f){ return f.comboCount + " COMBO x" + String.format("%.2f", f.comboMultiplier); }
+    private static String counterText(FrameSnapshot f){ return f.counterResolved ? "已格挡" : "SPACE 格挡攻击:" + f.counterRemainMs + "ms"; }
+    private static String bpmText(int bpm){ return "BPM:" + bpm + " ↑↓调整"; }
+    private static String bossSkillText(GameSimulation.BossSkill skill){
+        return switch(skill){ case ABSORB -> "Boss吸收中"; case REFLECT -> "Boss反射中"; case CORE_PULSE -> "核心脉冲充能"; default -> ""; };
+    }
+    private static String bossSubtitle(GameSimulation.BossSkill skill){
+        return switch(skill){ case ABSORB -> "能量聚合"; case REFLECT -> "反射屏障"; case CORE_PULSE -> "核心脉冲充能"; default -> ""; };
+    }
+
+    // 导出最近的性能窗口到用户目录（Shift+F3）
+    private void exportPerfCsv(){
+        Path file = Paths.get(System.getProperty("user.home"), "codesymphony-perf-" + new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new java.util.Date()) + ".csv");
+        try { PerfMetrics.global().exportCsv(file); LOGGER.info("性能数据已导出: " + file); }
+        catch (IOException e){ LOGGER.log(Level.WARNING, "导出性能数据失败", e); }
+    }
+
+    // 固定步长推进一次逻辑（模拟线程，持有 worldLock）
+    private void stepSimulation(long dt){
         long now = System.currentTimeMillis();
-        if (now - lastTriggerTime <= COMBO_WINDOW_MS) comboCount++; else comboCount = 1;
-        lastTriggerTime = now;
-        double comboBase = 1.0 + Math.min(1.5, comboCount * 0.05);
-        if (ultimateComboBoost && System.currentTimeMillis()<ultimateComboEnd) comboMultiplier = comboBase * 2.0; else { comboMultiplier = comboBase; if (ultimateComboBoost && System.currentTimeMillis()>=ultimateComboEnd) ultimateComboBoost=false; }
-        audioEngine.playPattern(instrument);
-        int baseDamage = instrument.getDamage(); int projectedDamage = (int)Math.round(baseDamage * comboMultiplier * slowFactor);
-        // 低质量模式下跳过一半投射物创建以降低 CPU / 绘制负载，仍然直接应用伤害
-        if(quality==QualityLevel.LOW && (lowQualityProjectileSkipCounter++ % 2)==1){
-            applyBossDamage(projectedDamage);
-            double gain = SKILL_GAIN_PER_HIT + comboCount * SKILL_COMBO_BONUS; skillCharge = Math.min(SKILL_THRESHOLD, skillCharge + gain * 0.4);
-            if (skillCharge >= SKILL_THRESHOLD) skillReady = true;
-            lastUsedInstrumentIndex = instrumentIndex; saveProgress(); return;
+        PerfMetrics perf = PerfMetrics.global();
+        long t0 = System.nanoTime();
+        int due = input.poll(simTimeMs, computeRepeatIntervalMs()); // 先于本步结算，与回放中“第 simTicks 步之前”的命令对齐
+        if(due != 0) triggerInstruments(due);
+        adaptiveQuality(now);
+        updateEffects(dt);
+        long t1 = System.nanoTime(); perf.record(PerfMetrics.Metric.EFFECTS, t1 - t0);
+        int w = viewW, h = viewH;
+        if(recording != null && (w != recordedW || h != recordedH)){ recording.addResize(simTicks, w, h); recordedW = w; recordedH = h; }
+        sim.setViewSize(w, h); effectsBridge.setViewSize(w, h); effectsBridge.setDensity(getEffectDensity());
+        sim.setTrailLimit(quality==QualityLevel.LOW?5:(quality==QualityLevel.MED?9:12));
+        sim.stepProjectiles(dt);
+        long t2 = System.nanoTime(); perf.record(PerfMetrics.Metric.PROJECTILES, t2 - t1);
+        sim.stepBoss(dt);
+        long t3 = System.nanoTime(); perf.record(PerfMetrics.Metric.BOSS, t3 - t2);
+        sim.stepRules(dt);
+        simTimeMs += dt; simTicks++;
+        if (qualityForced && !sim.isUltimateActive()) { quality = qualityBeforeUltimate; qualityForced = false; }
+        long t4 = System.nanoTime(); perf.record(PerfMetrics.Metric.SKILL, t4 - t3); perf.record(PerfMetrics.Metric.TICK, t4 - t0);
+    }
+
+    // 世界元素本帧的绘制范围（模拟线程，持有 worldLock）
+    private void collectWorldDirty(FrameSnapshot f){
+        DirtyRegions d = f.dirty;
+        d.clear();
+        if(f.shakeIntensity > 0 || f.darkAlpha > 0.02f){ d.markFull(); return; }
+        int cx = viewW/2, cy = viewH/3;
+        sim.getBoss().addDirtyBounds(d, cx, cy);
+        d.add(cx - 240, cy + 30, 480, 185); // 触手
+        for(AttackEffect ef: activeEffects){ if(!ef.addDirtyBounds(d)){ d.markFull(); return; } }
+        ParticleSystem.global().addDirtyBounds(d);
+        f.projectiles.addDirtyBounds(d);
+    }
+
+    // 把本批步进后的状态写入快照并发布（模拟线程，持有 worldLock）
+    private void publishFrame(long tickNanos){
+        FrameSnapshot f = frames.back();
+        f.tickNanos = tickNanos; f.quality = quality;
+        BossEntity boss = sim.getBoss();
+        f.shakeIntensity = sim.getShakeIntensity(); f.bassPulseAmp = sim.getBassPulseAmp(); f.bassPulsePhase = sim.getBassPulsePhase();
+        f.slowFactor = sim.getSlowFactor(); f.darkAlpha = sim.getDarkAlpha(); f.totalScore = sim.getTotalScore();
+        f.bossHealth = boss.getHealth(); f.bossMaxHealth = boss.getMaxHealth(); f.bossName = boss.getName();
+        f.bossIndex = sim.getCurrentBossIndex(); f.bossCount = sim.getBosses().size();
+        f.comboCount = sim.getComboCount(); f.comboMultiplier = sim.getComboMultiplier(); f.skillCharge = sim.getSkillCharge(); f.skillReady = sim.isSkillReady();
+        f.counterActive = sim.isCounterActive(); f.counterResolved = sim.isCounterResolved(); f.counterRemainMs = sim.getCounterRemainMs();
+        f.bossSkill = sim.getBossSkill(); f.reflectActive = sim.isReflectActive(); f.ultimateComboBoost = sim.isUltimateComboBoost();
+        f.projectiles.copyFrom(sim.getProjectiles());
+        PerfMetrics.global().setCounts(activeEffects.size(), ParticleSystem.global().getAlive(), sim.getProjectiles().size());
+        PerfMetrics.global().maybeRoll(tickNanos);
+        collectWorldDirty(f);
+        frames.publish();
+    }
+
+    private void triggerInstrument(int instrumentIndex){ triggerInstruments(1 << instrumentIndex); }
+
+    private void triggerInstruments(int mask){
+        if(paused || suspended) return; // 暂停/挂起时不触发
+        for(int bits = mask; bits != 0; bits &= bits - 1){
+            int k = Integer.numberOfTrailingZeros(bits); record(InputRecording.TRIGGER, k);
+            long key = input.takePressNanos(k); Instrument inst = instruments.get(k);
+            if(key != 0 && inst != null) hitKeyNanos[inst.getChannel() & 15] = key;
         }
-        spawnProjectile(instrument, projectedDamage);
-        double gain = SKILL_GAIN_PER_HIT + comboCount * SKILL_COMBO_BONUS; skillCharge = Math.min(SKILL_THRESHOLD, skillCharge + gain * 0.4);
-        if (skillCharge >= SKILL_THRESHOLD) skillReady = true;
-        lastUsedInstrumentIndex = instrumentIndex;
-        saveProgress();
+        sim.triggerInstruments(mask);
+        Arrays.fill(hitKeyNanos, 0); // 被规则核心过滤掉的触发不留给后续重复
     }
 
+    private void triggerSuperSkill(){ record(InputRecording.SUPER, 0); sim.triggerSuperSkill(); }
+
+    private void attemptCounterResolve(){ record(InputRecording.COUNTER, 0); sim.attemptCounterResolve(); }
+
     private class GamePanel extends JPanel {
-        public GamePanel(){ setBackground(Color.BLACK); setDoubleBuffered(true); }
+        // 低频光晕按满脉冲预渲染，绘制时用透明度缩放
+        private final BufferedImage bassGlow = SpriteAtlas.radial(new float[]{0f,0.6f,1f},
+                new Color[]{new Color(120,40,180,120), new Color(80,0,100,60), new Color(30,0,50,0)});
+        private BufferedImage bgLayer; private int bgW, bgH; private double bgScale; private boolean bgLow, bgStars; // 静态背景缓存
+        public GamePanel(){
+            setBackground(Color.BLACK); setDoubleBuffered(true);
+            addComponentListener(new java.awt.event.ComponentAdapter(){
+                @Override public void componentResized(java.awt.event.ComponentEvent e){ if(getWidth()>0 && getHeight()>0){ viewW = getWidth(); viewH = getHeight(); } }
+            });
+        }
         @Override protected void paintComponent(Graphics g){
             super.paintComponent(g);
+            if(activeRenderer==null) renderFrame(g, paintFrame!=null ? paintFrame : frames.acquire()); // 主动渲染时由 Canvas 覆盖，此处不再绘制
+        }
+
+        // 绘制一帧（被动模式在 EDT 上调用，主动模式在渲染线程上调用）
+        void renderFrame(Graphics g, FrameSnapshot f){
+            long start = System.nanoTime();
+            drawFrame(g, f);
+            PerfMetrics.global().record(PerfMetrics.Metric.PAINT, System.nanoTime() - start);
+        }
+
+        private void drawFrame(Graphics g, FrameSnapshot f){
             // 新增暂停界面绘制
             if(paused){
                 Graphics2D g2 = (Graphics2D)g;
@@ -547,92 +678,89 @@ public class CodeSymphonyGame extends JFrame {
             Graphics2D g2d=(Graphics2D)g; g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             if(uiFont!=null) g2d.setFont(uiFont);
             // 新科技感背景
-            if(quality==QualityLevel.LOW){
-                g2d.setColor(new Color(10,12,22)); g2d.fillRect(0,0,getWidth(),getHeight());
-            } else {
-                drawTechBackground(g2d); // 现在方法已在本内部类中定义
-            }
-            // 星点保留（叠加少量深空点）
-            if(starX!=null && quality!=QualityLevel.LOW){ g2d.setColor(new Color(255,255,255,25)); for(int i=0;i<starX.length;i+=2){ g2d.fillRect(starX[i], starY[i], 2,2);} }
+            // 静态层（渐变/网格/星点）缓存为一张图，每帧只贴图后叠加动态部分
+            boolean low = f.quality==QualityLevel.LOW;
+            g2d.drawImage(backgroundLayer(getWidth(), getHeight(), g2d.getTransform().getScaleX(), low), 0, 0, getWidth(), getHeight(), null);
+            if(!low) drawTechOverlay(g2d, f);
             // 低频光晕
-            if (bassPulseAmp > 0.02) {
-                Paint oldGlow = g2d.getPaint();
-                float pulse = (float)(bassPulseAmp * (0.6 + 0.4 * Math.sin(bassPulsePhase)));
+            if (f.bassPulseAmp > 0.02) {
+                float pulse = (float)(f.bassPulseAmp * (0.6 + 0.4 * Math.sin(f.bassPulsePhase)));
                 int radius = (int)(Math.min(getWidth(), getHeight()) * (0.45 + 0.15 * pulse));
-                RadialGradientPaint glow = new RadialGradientPaint(new Point(getWidth()/2, getHeight()/2), radius,
-                        new float[]{0f,0.6f,1f}, new Color[]{
-                                new Color(120,40,180,(int)(120*pulse)),
-                                new Color(80,0,100,(int)(60*pulse)),
-                                new Color(30,0,50,0)});
-                g2d.setPaint(glow);
-                g2d.fillOval(getWidth()/2 - radius, getHeight()/2 - radius, radius*2, radius*2);
-                g2d.setPaint(oldGlow);
+                Composite oldGlow = g2d.getComposite();
+                g2d.setComposite(SpriteAtlas.alpha(pulse));
+                SpriteAtlas.drawScaled(g2d, bassGlow, getWidth()/2, getHeight()/2, radius);
+                g2d.setComposite(oldGlow);
             }
             // 抖动
             int shakeX = 0, shakeY = 0;
-            if (shakeIntensity > 0) {
-                double mag = shakeIntensity * 12.0;
+            if (f.shakeIntensity > 0) {
+                double mag = f.shakeIntensity * 12.0;
                 shakeX = (int)((randFX.nextDouble()-0.5)*mag*2);
                 shakeY = (int)((randFX.nextDouble()-0.5)*mag*2);
             }
             g2d.translate(shakeX, shakeY);
-            boss.draw(g2d, getWidth()/2, getHeight()/3);
+            synchronized (worldLock){ sim.getBoss().draw(g2d, getWidth()/2, getHeight()/3); }
             drawBossTentacles(g2d, getWidth()/2, getHeight()/3, (int)System.currentTimeMillis());
-            // 投射物 + 拖尾
-            for(Projectile p: projectiles){
-                int i=0; for(Point pt: p.trail){ float a = 1f - i/12f; g2d.setColor(new Color(p.color.getRed(), p.color.getGreen(), p.color.getBlue(), (int)(a*160))); g2d.fillOval(pt.x-4, pt.y-4,8,8); i++; }
-                g2d.setColor(p.color); g2d.fillOval((int)p.x-6,(int)p.y-6,12,12);
+            // 投射物 + 拖尾：在上一 tick 与当前 tick 之间按时间插值
+            float lerp = (float)Math.min(1.0, Math.max(0.0, (System.nanoTime() - f.tickNanos) / (double)SimulationLoop.TICK_NANOS));
+            Composite oldTrail = g2d.getComposite();
+            ProjectileStore ps = f.projectiles;
+            for(int p=0;p<ps.size();p++){
+                int rgb = ps.color(p).getRGB();
+                BufferedImage trailDot = SpriteAtlas.dot(rgb, 8);
+                for(int i=0;i<ps.trailLen(p);i++){ g2d.setComposite(SpriteAtlas.alpha((1f - i/12f) * 160/255f)); g2d.drawImage(trailDot, ps.trailX(p,i)-4, ps.trailY(p,i)-4, null); }
+                int px = (int)(ps.prevX(p) + (ps.x(p)-ps.prevX(p))*lerp), py = (int)(ps.prevY(p) + (ps.y(p)-ps.prevY(p))*lerp);
+                g2d.setComposite(oldTrail); g2d.drawImage(SpriteAtlas.dot(rgb, 12), px-6, py-6, null);
             }
+            g2d.setComposite(oldTrail);
             g2d.translate(-shakeX, -shakeY);
             // 血条
-            int barW = 500; int barX = getWidth()/2 - barW/2; int barY = 40; double hpPct = (double)boss.getHealth()/boss.getMaxHealth();
-            g2d.setColor(new Color(70,0,90)); g2d.fillRoundRect(barX, barY, barW, 24, 12,12);
-            g2d.setColor(new Color(180,40,220)); g2d.fillRoundRect(barX, barY, (int)(barW*hpPct), 24, 12,12);
-            g2d.setColor(Color.WHITE); g2d.drawRoundRect(barX, barY, barW, 24, 12,12);
+            int barW = HudLayout.HP_W, barH = HudLayout.HP_H; int barX = getWidth()/2 - barW/2; int barY = HudLayout.HP_Y; double hpPct = (double)f.bossHealth/f.bossMaxHealth;
+            g2d.setColor(new Color(70,0,90)); g2d.fillRoundRect(barX, barY, barW, barH, 12,12);
+            g2d.setColor(new Color(180,40,220)); g2d.fillRoundRect(barX, barY, (int)(barW*hpPct), barH, 12,12);
+            g2d.setColor(Color.WHITE); g2d.drawRoundRect(barX, barY, barW, barH, 12,12);
             g2d.setFont(fontMono16);
-            g2d.drawString("BOSS(" + (currentBossIndex+1) + "/" + bosses.size() + ") " + boss.getName() + " HP: " + boss.getHealth() + " / " + boss.getMaxHealth(), barX+10, barY+17);
-            if (slowFactor < 1.0) { g2d.setColor(new Color(255,200,120)); g2d.drawString("减速中", getWidth()/2 + 180, barY+17); }
-            g2d.setColor(Color.WHITE); g2d.drawString("TOTAL: " + totalScore, 20, getHeight()-50);
-            if (darkAlpha > 0.02f) { g2d.setColor(new Color(0,0,0, Math.min(200, (int)(darkAlpha*255)))); g2d.fillRect(0,0,getWidth(),getHeight()); }
+            g2d.drawString(hpText(f), barX + HudLayout.HP_TEXT_DX, barY + HudLayout.HP_TEXT_DY);
+            if (f.slowFactor < 1.0) { g2d.setColor(new Color(255,200,120)); g2d.drawString(HudLayout.SLOW_TEXT, getWidth()/2 + HudLayout.SLOW_DX, barY + HudLayout.HP_TEXT_DY); }
+            g2d.setColor(Color.WHITE); g2d.drawString(scoreText(f), HudLayout.SCORE_X, getHeight() - HudLayout.SCORE_BOTTOM);
+            if (f.darkAlpha > 0.02f) { g2d.setColor(new Color(0,0,0, Math.min(200, (int)(f.darkAlpha*255)))); g2d.fillRect(0,0,getWidth(),getHeight()); }
             // 连击
-            if (comboCount > 1) { g2d.setFont(fontMono22Bold); String comboStr = comboCount + " COMBO x" + String.format("%.2f", comboMultiplier); g2d.setColor(new Color(255, 220, 120, (int)(Math.min(1.0, 0.3 + comboCount/30.0) * 255))); g2d.drawString(comboStr, 20, getHeight()-60); }
+            if (f.comboCount > 1) { g2d.setFont(fontMono22Bold); g2d.setColor(new Color(255, 220, 120, (int)(Math.min(1.0, 0.3 + f.comboCount/30.0) * 255))); g2d.drawString(comboText(f), HudLayout.SCORE_X, getHeight() - HudLayout.COMBO_BOTTOM); }
             // 技能条
-            int skillBarW = 260; int skillBarH = 16; int skillX = getWidth()-skillBarW-30; int skillY = getHeight()-60; double scPct = skillCharge / SKILL_THRESHOLD;
+            int skillBarW = HudLayout.SKILL_W; int skillBarH = HudLayout.SKILL_H; int skillX = getWidth() - skillBarW - HudLayout.SKILL_RIGHT; int skillY = getHeight() - HudLayout.SKILL_BOTTOM; double scPct = f.skillCharge / GameSimulation.SKILL_THRESHOLD;
             g2d.setColor(new Color(40,40,60)); g2d.fillRoundRect(skillX, skillY, skillBarW, skillBarH, 10,10);
-            g2d.setColor(skillReady ? new Color(255,200,60) : new Color(120,140,255)); g2d.fillRoundRect(skillX, skillY, (int)(skillBarW*scPct), skillBarH, 10,10);
+            g2d.setColor(f.skillReady ? new Color(255,200,60) : new Color(120,140,255)); g2d.fillRoundRect(skillX, skillY, (int)(skillBarW*scPct), skillBarH, 10,10);
             g2d.setColor(Color.WHITE); g2d.drawRoundRect(skillX, skillY, skillBarW, skillBarH, 10,10);
-            g2d.setFont(fontMono12); g2d.drawString(skillReady?"Q 释放超级技能":"技能: "+(int)skillCharge+"%", skillX+10, skillY+12);
+            g2d.setFont(fontMono12); g2d.drawString(f.skillReady?"Q 释放超级技能":"技能: "+(int)f.skillCharge+"%", skillX+10, skillY+12);
             // 反击提示
-            if (counterActive) { long remain = Math.max(0, counterEndTime - System.currentTimeMillis()); String txt = counterResolved?"已格挡":"SPACE 格挡攻击:" + remain + "ms"; g2d.setColor(counterResolved?new Color(120,255,160):new Color(255,120,120)); g2d.drawString(txt, skillX, skillY - 20); }
+            if (f.counterActive) { g2d.setColor(f.counterResolved?new Color(120,255,160):new Color(255,120,120)); g2d.drawString(counterText(f), skillX, skillY - HudLayout.COUNTER_DY); }
             // 拍点条
-            double beatProg = audioEngine.progressToNextBeat(); int beatBarW = 160; int beatBarH = 6; int beatX = getWidth()/2 - beatBarW/2; int beatY = 12;
+            double beatProg = audioEngine.progressToNextBeat(); int beatBarW = HudLayout.BEAT_W; int beatBarH = HudLayout.BEAT_H; int beatX = getWidth()/2 - beatBarW/2; int beatY = HudLayout.BEAT_Y;
             g2d.setColor(new Color(50,50,70)); g2d.fillRoundRect(beatX, beatY, beatBarW, beatBarH, 8,8);
             g2d.setColor(new Color(200,220,255)); g2d.fillRoundRect(beatX, beatY, (int)(beatBarW * beatProg), beatBarH, 8,8);
             g2d.setColor(Color.WHITE); g2d.drawRoundRect(beatX, beatY, beatBarW, beatBarH, 8,8);
             // 特效
-            for (AttackEffect ef : activeEffects) ef.draw(g2d);
+            synchronized (worldLock){ ParticleSystem.global().draw(g2d); for (AttackEffect ef : activeEffects) ef.draw(g2d); }
             // Boss技能状态
-            if (bossSkill != BossSkillType.NONE) { String skillTxt = bossSkill==BossSkillType.ABSORB?"Boss吸收中": bossSkill==BossSkillType.REFLECT?"Boss反射中": "核心脉冲充能"; g2d.setColor(new Color(255,240,180)); g2d.drawString(skillTxt, getWidth()-180, 30); }
+            GameSimulation.BossSkill bossSkill = f.bossSkill;
+            g2d.setFont(fontMono12); // 特效可能改过字体，与脏区域计算保持一致
+            if (bossSkill != GameSimulation.BossSkill.NONE) { g2d.setColor(new Color(255,240,180)); g2d.drawString(bossSkillText(bossSkill), getWidth() - HudLayout.BOSS_SKILL_RIGHT, HudLayout.BOSS_SKILL_Y); }
             // BPM 显示
-            g2d.setColor(Color.WHITE); g2d.drawString("BPM:"+audioEngine.getBpm()+" ↑↓调整", getWidth()-170, getHeight()-30);
+            g2d.setColor(Color.WHITE); g2d.drawString(bpmText(audioEngine.getBpm()), getWidth() - HudLayout.BPM_RIGHT, getHeight() - HudLayout.BPM_BOTTOM);
             // 反射HUD
-            if(reflectActive && bossSkill==BossSkillType.REFLECT){ g2d.setColor(new Color(255,255,120,180)); int size=28; int x=8,y=8; g2d.fillRoundRect(x,y,size,size,8,8); g2d.setColor(Color.DARK_GRAY); g2d.drawRoundRect(x,y,size,size,8,8); g2d.setColor(Color.BLACK); g2d.setFont(fontMono12); g2d.drawString("R", x+9, y+18); }
-            if (ultimateComboBoost){ g2d.setColor(new Color(255,240,90)); g2d.drawString("终极连击 x2", 20, 70); }
+            if(f.reflectActive && bossSkill==GameSimulation.BossSkill.REFLECT){ g2d.setColor(new Color(255,255,120,180)); int size=HudLayout.REFLECT_SIZE; int x=HudLayout.REFLECT_X,y=HudLayout.REFLECT_Y; g2d.fillRoundRect(x,y,size,size,8,8); g2d.setColor(Color.DARK_GRAY); g2d.drawRoundRect(x,y,size,size,8,8); g2d.setColor(Color.BLACK); g2d.setFont(fontMono12); g2d.drawString("R", x+9, y+18); }
+            if (f.ultimateComboBoost){ g2d.setFont(fontMono12); g2d.setColor(new Color(255,240,90)); g2d.drawString(HudLayout.ULTIMATE_TEXT, HudLayout.SCORE_X, HudLayout.ULTIMATE_Y); }
             // 在原绘制逻辑末尾添加 Boss 技能柔和字幕
-            if(bossSkill != BossSkillType.NONE){
-                String subt = switch(bossSkill){
-                    case ABSORB -> "能量聚合";
-                    case REFLECT -> "反射屏障";
-                    case CORE_PULSE -> "核心脉冲充能";
-                    default -> ""; };
+            if(bossSkill != GameSimulation.BossSkill.NONE){
+                String subt = bossSubtitle(bossSkill);
                 if(!subt.isEmpty()){
                     g2d.setFont(fontMono16);
                     Composite oldComp = g2d.getComposite(); // 避免与上方 old 重名
                     float alpha = 0.55f + 0.45f*(float)Math.sin(System.currentTimeMillis()/400.0);
                     g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, Math.min(1f,Math.max(0f,alpha))));
                     FontMetrics fm = g2d.getFontMetrics(); int sw = fm.stringWidth(subt);
-                    int x = getWidth()/2 - sw/2; int y = getHeight()/3 - 70;
-                    g2d.setColor(new Color(0,0,0,120)); g2d.fillRoundRect(x-14,y-fm.getAscent()-4, sw+28, fm.getHeight()+8, 18,18);
+                    int x = getWidth()/2 - sw/2; int y = getHeight()/3 - HudLayout.SUBTITLE_DY; int padX = HudLayout.SUBTITLE_PAD_X, padY = HudLayout.SUBTITLE_PAD_Y;
+                    g2d.setColor(new Color(0,0,0,120)); g2d.fillRoundRect(x-padX,y-fm.getAscent()-padY, sw+padX*2, fm.getHeight()+padY*2, 18,18);
                     g2d.setColor(new Color(255,230,200)); g2d.drawString(subt,x,y);
                     g2d.setComposite(oldComp);
                 }
@@ -641,37 +769,65 @@ public class CodeSymphonyGame extends JFrame {
             if(showDebugHud){
                 g2d.setFont(fontMono12);
                 g2d.setColor(new Color(200,200,200,160));
-                g2d.drawString("Q:"+quality+" FPSms:"+String.format("%.1f",avgFrameMs), 10, 18);
+                g2d.drawString("Q:"+f.quality+" FPSms:"+String.format("%.1f",frameMs())+" sim:"+simLoop.getSteps()+" drop:"+simLoop.getDroppedSteps(), HudLayout.DEBUG_X, HudLayout.debugBaseline(0));
+                g2d.drawString("PTC:"+ParticleSystem.global().getAlive()+"/"+ParticleSystem.global().getCapacity()+" drop:"+ParticleSystem.global().getDropped(), HudLayout.DEBUG_X, HudLayout.debugBaseline(3));
+                PerfMetrics perf = PerfMetrics.global();
+                g2d.drawString("FRM p50:"+String.format("%.1f",perf.lastWindowMs(PerfMetrics.Metric.FRAME,0.5))+" p95:"+String.format("%.1f",perf.lastWindowMs(PerfMetrics.Metric.FRAME,0.95))+" p99:"+String.format("%.1f",perf.lastWindowMs(PerfMetrics.Metric.FRAME,0.99))+"ms paint p95:"+String.format("%.2f",perf.lastWindowMs(PerfMetrics.Metric.PAINT,0.95))+(activeRenderer!=null?" lost:"+activeRenderer.getContentLosses():""), HudLayout.DEBUG_X, HudLayout.debugBaseline(2));
+                g2d.drawString("TICK p95:"+String.format("%.2f",perf.lastWindowMs(PerfMetrics.Metric.TICK,0.95))+" eff:"+String.format("%.2f",perf.lastWindowMs(PerfMetrics.Metric.EFFECTS,0.95))+" prj:"+String.format("%.2f",perf.lastWindowMs(PerfMetrics.Metric.PROJECTILES,0.95))+" boss:"+String.format("%.2f",perf.lastWindowMs(PerfMetrics.Metric.BOSS,0.95))+" skill:"+String.format("%.2f",perf.lastWindowMs(PerfMetrics.Metric.SKILL,0.95))+"ms alloc:"+String.format("%.1f",perf.getAllocMBps())+"MB/s", HudLayout.DEBUG_X, HudLayout.debugBaseline(4));
+                g2d.drawString("FX:"+perf.getEffects()+" PRJ:"+perf.getProjectiles()+" MIDI lag p50:"+String.format("%.2f",perf.lastWindowMs(PerfMetrics.Metric.AUDIO_LAG,0.5))+" p99:"+String.format("%.2f",perf.lastWindowMs(PerfMetrics.Metric.AUDIO_LAG,0.99))+"ms  Shift+F3 导出CSV", HudLayout.DEBUG_X, HudLayout.debugBaseline(5));
+                g2d.drawString("KEY→note p50:"+String.format("%.2f",perf.lastWindowMs(PerfMetrics.Metric.KEY_TO_NOTE,0.5))+" p99:"+String.format("%.2f",perf.lastWindowMs(PerfMetrics.Metric.KEY_TO_NOTE,0.99))+"ms →render "+(audioEngine.getRenderBus()!=null ? "p50:"+String.format("%.1f",perf.lastWindowMs(PerfMetrics.Metric.KEY_TO_RENDER,0.5))+" p99:"+String.format("%.1f",perf.lastWindowMs(PerfMetrics.Metric.KEY_TO_RENDER,0.99))+"ms" : "n/a(实时合成器)")+" prog skip:"+(audioEngine.getScheduler()!=null?audioEngine.getScheduler().getSkippedProgramChanges():0), HudLayout.DEBUG_X, HudLayout.debugBaseline(6));
+                AudioRenderBus bus = audioEngine.getRenderBus();
+                if(bus!=null) g2d.drawString("AUD lat:"+String.format("%.1f",bus.getLatencyMs())+"ms buf:"+bus.getBufferFrames()+" xrun:"+bus.getUnderruns()+" drop:"+bus.getDroppedEvents(), HudLayout.DEBUG_X, HudLayout.debugBaseline(1));
             }
         }
 
         // === 新增：科技感背景绘制，修复缺失方法导致的编译错误 ===
-        private void drawTechBackground(Graphics2D g2d){
-            int w = getWidth(); int h = getHeight();
+        // 静态背景层：仅在尺寸、HiDPI 缩放、质量档位或星点初始化状态变化时重建；按设备像素分配，贴图不模糊
+        private BufferedImage backgroundLayer(int w, int h, double scale, boolean low){
+            boolean stars = starX!=null;
+            w = Math.max(1, w); h = Math.max(1, h);
+            if(bgLayer!=null && bgW==w && bgH==h && bgScale==scale && bgLow==low && bgStars==stars) return bgLayer;
+            int pw = (int)Math.ceil(w*scale), ph = (int)Math.ceil(h*scale);
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            bgLayer = gc!=null ? gc.createCompatibleImage(pw, ph, Transparency.OPAQUE) : new BufferedImage(pw, ph, BufferedImage.TYPE_INT_RGB);
+            bgW = w; bgH = h; bgScale = scale; bgLow = low; bgStars = stars;
+            Graphics2D g2d = bgLayer.createGraphics();
+            g2d.scale(scale, scale);
+            if(low){
+                g2d.setColor(new Color(10,12,22)); g2d.fillRect(0,0,w,h);
+                g2d.dispose(); return bgLayer;
+            }
             // 背景渐变
-            Paint old = g2d.getPaint();
-            GradientPaint gp = new GradientPaint(0,0,new Color(8,10,25), 0,h,new Color(18,22,40));
-            g2d.setPaint(gp); g2d.fillRect(0,0,w,h);
-            g2d.setPaint(old);
+            g2d.setPaint(new GradientPaint(0,0,new Color(8,10,25), 0,h,new Color(18,22,40))); g2d.fillRect(0,0,w,h);
             // 轻微网格
             g2d.setColor(new Color(70,80,120,25));
             int grid = 40; for(int x=0;x<w;x+=grid){ g2d.drawLine(x,0,x,h);} for(int y=0;y<h;y+=grid){ g2d.drawLine(0,y,w,y);}
+            if(stars){
+                // 轻微噪点星屑 + 深空点（两层叠加）
+                g2d.setColor(new Color(255,255,255,18));
+                for(int i=0;i<starX.length;i+=3){ int sx=starX[i]; int sy=starY[i]; if(sx<w && sy<h) g2d.fillRect(sx,sy,2,2);}
+                g2d.setColor(new Color(255,255,255,25)); for(int i=0;i<starX.length;i+=2){ g2d.fillRect(starX[i], starY[i], 2,2);}
+            }
+            g2d.dispose();
+            return bgLayer;
+        }
+
+        // 动态部分：扫描线与脉冲圈
+        private void drawTechOverlay(Graphics2D g2d, FrameSnapshot f){
+            int w = getWidth(); int h = getHeight();
+            Paint old = g2d.getPaint();
             // 动态扫描线
             int scanH = 90; int yOff = (int)((System.currentTimeMillis()/12)% (h+scanH)) - scanH;
             GradientPaint scan = new GradientPaint(0,yOff,new Color(120,160,255,0), 0,yOff+scanH/2,new Color(120,160,255,55), true);
             g2d.setPaint(scan); g2d.fillRect(0,yOff,w,scanH); g2d.setPaint(old);
             // 中央脉冲圈 (随 bpm 或低频脉冲)
-            float pulse = (float)(0.5 + 0.5*Math.sin(bassPulsePhase));
+            float pulse = (float)(0.5 + 0.5*Math.sin(f.bassPulsePhase));
             int r = (int)(Math.min(w,h)*0.22 * (1+0.05*pulse));
             g2d.setStroke(new BasicStroke(2f));
             g2d.setColor(new Color(140,120,255,70));
             g2d.drawOval(w/2 - r, h/3 - r, r*2, r*2);
             g2d.setColor(new Color(90,200,255,40));
             g2d.drawOval(w/2 - (int)(r*1.35), h/3 - (int)(r*1.35), (int)(r*2.7), (int)(r*2.7));
-            // 轻微噪点星屑（复用 starX 如果已初始化）
-            if(starX==null) return; // 等待 addNotify 初始化
-            g2d.setColor(new Color(255,255,255,18));
-            for(int i=0;i<starX.length;i+=3){ int sx=starX[i]; int sy=starY[i]; if(sx<w && sy<h) g2d.fillRect(sx,sy,2,2);}
         }
     }
 
@@ -693,139 +849,57 @@ public class CodeSymphonyGame extends JFrame {
 
     @Override
     public void dispose() {
+        if(activeRenderer!=null) activeRenderer.shutdown();
+        if(simLoop!=null) simLoop.shutdown(); // 先停模拟线程，再在 EDT 上生成最后一份快照
+        writeRecording();
         saveProgress();
+        saveWriter.close(); // 落盘最后一份快照
+        SaveManager.close();
         if(mainLoopTimer!=null) mainLoopTimer.stop();
         super.dispose();
         audioEngine.shutdown();
     }
 
-    // ====== 重新补回缺失的核心方法（被之前编辑覆盖） ======
-    private void applyBossDamage(int dmg){
-        if(bossSwitching) return; // 正在切换不再处理伤害
-        if (bossSkill == BossSkillType.ABSORB){
-            absorbAccum += dmg;
-            shakeIntensity = Math.min(1.0, shakeIntensity + dmg / (double)boss.getMaxHealth());
+    // 规则核心回调（模拟线程）：按被击败的 Boss 决定弹窗或直接进入下一关
+    private void onBossDefeated(int defeatedIndex, boolean allDefeated){
+        if(allDefeated){
+            // 全部击败
+            askOnEdt("所有 Boss 已被击败! 总分: "+ sim.getTotalScore() +"\n是否重新开始?", "胜利", JOptionPane.INFORMATION_MESSAGE,
+                    new Object[]{"重新开始","退出"}, opt -> { if(opt==0) restartGame(); else exitGame(); });
             return;
         }
-        if (bossSkill == BossSkillType.REFLECT && reflectActive){
-            comboCount = Math.max(0, comboCount - 5);
-            damageFlashEdge();
+        // 打败第一个 / 第二个 Boss 提示
+        if(defeatedIndex==0 || defeatedIndex==1){
+            String msg = defeatedIndex==0 ? "已击败第一个Boss，是否继续挑战下一个?" : "已击败第二个Boss，是否继续挑战最终Boss?";
+            askOnEdt(msg, "进度", JOptionPane.QUESTION_MESSAGE, new Object[]{"继续", "退出"}, opt -> { if(opt==0) advanceToNextBoss(); else exitGame(); });
             return;
         }
-        boss.takeDamage(dmg);
-        if(boss.getHealth() < 0) boss.setHealth(0); // clamp
-        score += dmg; totalScore += dmg;
-        if (boss.getHealth() <= 0 && !bossSwitching){
-            bossSwitching = true;
-            onBossDefeated();
-        }
-    }
-
-    private void spawnProjectile(Instrument inst, int dmg){
-        if(quality==QualityLevel.LOW){
-            // 限制最大投射物数量
-            if(projectiles.size() > 14) return; // 直接丢弃新投射物
-        }
-        int w = getWidth()>0?getWidth():WIDTH; int h=getHeight()>0?getHeight():HEIGHT;
-        double startX = 50 + Math.random()*(w-100);
-        double startY = h + 20;
-        double targetX = w/2.0 + (Math.random()-0.5)*120;
-        double targetY = h/3.0 - 40;
-        double speed = 600;
-        projectiles.add(new Projectile(startX,startY,targetX,targetY,speed,dmg, inst.getColor(), inst));
-    }
-
-    private void updateProjectiles(long dt){
-        if(projectiles.isEmpty()) return;
-        double dtSec = dt/1000.0;
-        for(Projectile p: projectiles){
-            if(p.hit) continue;
-            double dx = p.tx - p.x; double dy = p.ty - p.y; double dist = Math.sqrt(dx*dx+dy*dy);
-            double step = p.speed * dtSec;
-            if(step >= dist){
-                p.x = p.tx; p.y = p.ty; p.hit = true; onProjectileHit(p);
-            } else {
-                p.x += dx/dist * step; p.y += dy/dist * step;
-            }
-            // 拖尾长度根据质量等级
-            int maxTrail = (quality==QualityLevel.LOW?5: quality==QualityLevel.MED?9:12);
-            p.trail.addFirst(new Point((int)p.x,(int)p.y));
-            while(p.trail.size()>maxTrail) p.trail.removeLast();
-        }
-        projectiles.removeIf(pr -> pr.hit);
+        simLoop.post(this::advanceToNextBoss); // 与对话框选择一样在步进之间执行，录制的 tick 才能在回放时对齐
     }
 
-    private void onProjectileHit(Projectile p){
-        activeEffects.add(new AttackEffects.SuperFireworkEffect(getWidth(), getHeight()/2, p.color, getEffectDensity()));
-        double remainGain = (SKILL_GAIN_PER_HIT + comboCount * SKILL_COMBO_BONUS) * 0.6;
-        skillCharge = Math.min(SKILL_THRESHOLD, skillCharge + remainGain);
-        if(skillCharge >= SKILL_THRESHOLD) skillReady = true;
-        applyBossDamage(p.damage);
-        saveProgress();
+    // 模态对话框只能在 EDT 上弹出：期间模拟暂停，选择结果再投递回模拟线程
+    private void askOnEdt(String msg, String title, int type, Object[] options, java.util.function.IntConsumer onAnswer){
+        dialogOpen = true; simLoop.setHalted(true);
+        SwingUtilities.invokeLater(() -> {
+            int opt = JOptionPane.showOptionDialog(this, msg, title, JOptionPane.YES_NO_OPTION, type, null, options, options[0]);
+            simLoop.post(() -> onAnswer.accept(opt));
+            dialogOpen = false; applyRunState();
+        });
     }
 
-    private void updateBossSkillState(){
-        long now = System.currentTimeMillis();
-        if (bossSkill != BossSkillType.NONE && now > bossSkillEnd){
-            if (bossSkill == BossSkillType.ABSORB && absorbAccum > 0){
-                activeEffects.add(new AttackEffects.HealingBurstEffect(getWidth(), getHeight(), new Color(255,140,90), 0.35, 1200));
-                activeEffects.add(new AttackEffects.HealingBurstEffect(getWidth(), getHeight(), new Color(255,200,140), 0.5, 900));
-                activeEffects.add(new AttackEffects.HealingBurstEffect(getWidth(), getHeight(), new Color(255,255,200), 0.7, 700));
-                boss.takeDamage(-(int)Math.min(boss.getMaxHealth()*0.01, absorbAccum*0.5));
-            }
-            if (bossSkill == BossSkillType.REFLECT) reflectActive = false;
-            bossSkill = BossSkillType.NONE;
-            scheduleNextBossSkill();
-            saveProgress();
-        }
+    private void exitGame(){
+        SwingUtilities.invokeLater(() -> { dispose(); if(!embedded) System.exit(0); });
     }
 
-    // 修正注释：重新补回缺失的核心方法
-    private void damageFlashEdge(){ darkAlpha = 0.4f; }
-
-
-    private void onBossDefeated(){
-        int defeatedIndex = currentBossIndex; // 当前被打败的索引
-        currentBossIndex++;
-        // 打败第一个 Boss (index 0) 提示
-        if(defeatedIndex==0 && currentBossIndex < bosses.size()){
-            int opt = JOptionPane.showOptionDialog(this, "已击败第一个Boss，是否继续挑战下一个?", "进度",
-                    JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, null,
-                    new Object[]{"继续", "退出"}, "继续");
-            if(opt!=0){ dispose(); if(!embedded) System.exit(0); return; }
-        }
-        // 第二到第三前提示 (打败第二个: defeatedIndex==1)
-        if(defeatedIndex==1 && currentBossIndex < bosses.size()){
-            int opt = JOptionPane.showOptionDialog(this, "已击败第二个Boss，是否继续挑战最终Boss?", "进度",
-                    JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, null,
-                    new Object[]{"继续", "退出"}, "继续");
-            if(opt!=0){ dispose(); if(!embedded) System.exit(0); return; }
-        }
-        if(currentBossIndex >= bosses.size()){
-            // 全部击败
-            int opt = JOptionPane.showOptionDialog(this, "所有 Boss 已被击败! 总分: "+ totalScore +"\n是否重新开始?", "胜利",
-                    JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE, null,
-                    new Object[]{"重新开始","退出"}, "重新开始");
-            if(opt==0){ restartGame(); return; }
-            dispose(); if(!embedded) System.exit(0); return;
-        }
-        boss = bosses.get(currentBossIndex);
-        comboCount = 0; comboMultiplier = 1.0; skillCharge = 0; skillReady = false;
-        ultimateActive = false; ultimateComboBoost = false; qualityForced = false;
-        reflectActive = false; bossSkill = BossSkillType.NONE; absorbAccum = 0; counterActive = false;
-        darkAlpha = 0f; slowFactor = 1.0; shakeIntensity = 0; bassPulseAmp = 0;
-        bossSwitching = false; // 切换完毕
-        scheduleNextBossSkill();
-        saveProgress();
+    private void advanceToNextBoss(){
+        record(InputRecording.ADVANCE, 0);
+        sim.advanceToNextBoss();
+        saveProgress(); // 击败 Boss 时生成快照
     }
     private void restartGame(){
-        for(BossEntity b: bosses){ b.setHealth((int)b.getMaxHealth()); }
-        currentBossIndex = 0; boss = bosses.get(0);
-        totalScore = 0; score = 0; comboCount = 0; comboMultiplier = 1.0; skillCharge = 0; skillReady = false;
-        ultimateActive=false; ultimateComboBoost=false; qualityForced=false; reflectActive=false; bossSkill=BossSkillType.NONE; absorbAccum=0; counterActive=false;
-        darkAlpha=0f; slowFactor=1.0; shakeIntensity=0; bassPulseAmp=0; projectiles.clear(); activeEffects.clear();
-        bossSwitching = false; // 重置标志
-        scheduleNextBossSkill(); saveProgress();
+        record(InputRecording.RESTART, 0);
+        sim.restart(); activeEffects.clear(); ParticleSystem.global().clear();
+        saveProgress();
     }
 
     private double getEffectDensity(){
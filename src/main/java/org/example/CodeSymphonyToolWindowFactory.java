@@ -1,11 +1,18 @@
 package org.example;
 
+import com.intellij.ide.PowerSaveMode;
+import com.intellij.openapi.application.ApplicationActivationListener;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.IdeFrame;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
+import com.intellij.util.messages.MessageBusConnection;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
@@ -22,9 +29,30 @@ public class CodeSymphonyToolWindowFactory implements ToolWindowFactory, DumbAwa
         ContentFactory cf = ContentFactory.getInstance();
         Content content = cf.createContent(panel, "Game", false);
         toolWindow.getContentManager().addContent(content);
+        watchLifecycle(project, toolWindow, embeddedInstance);
+    }
+
+    /** 工具窗口隐藏、IDE 失去焦点或开启省电模式时挂起游戏，条件全部解除后恢复；订阅随工具窗口释放 */
+    private static void watchLifecycle(Project project, ToolWindow toolWindow, CodeSymphonyGame game) {
+        Runnable update = () -> SwingUtilities.invokeLater(() -> {
+            if (project.isDisposed() || toolWindow.isDisposed()) return;
+            boolean visible = toolWindow.isVisible() && ApplicationManager.getApplication().isActive() && !PowerSaveMode.isEnabled();
+            if (visible) game.resume(); else game.suspend();
+        });
+        project.getMessageBus().connect(toolWindow.getDisposable()).subscribe(ToolWindowManagerListener.TOPIC, new ToolWindowManagerListener() {
+            @Override public void stateChanged(@NotNull ToolWindowManager toolWindowManager) { update.run(); }
+        });
+        MessageBusConnection app = ApplicationManager.getApplication().getMessageBus().connect(toolWindow.getDisposable());
+        app.subscribe(ApplicationActivationListener.TOPIC, new ApplicationActivationListener() {
+            @Override public void applicationActivated(@NotNull IdeFrame ideFrame) { update.run(); }
+            @Override public void applicationDeactivated(@NotNull IdeFrame ideFrame) { update.run(); }
+        });
+        app.subscribe(PowerSaveMode.TOPIC, new PowerSaveMode.Listener() {
+            @Override public void powerSaveStateChanged() { update.run(); }
+        });
+        update.run();
     }
 
     @Override
     public boolean shouldBeAvailable(@NotNull Project project) { return true; }
 }
-
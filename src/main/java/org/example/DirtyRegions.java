@@ -0,0 +1,106 @@
+package org.example;
+
+import java.awt.Rectangle;
+
+/**
+ * 脏矩形集合：新矩形与已有矩形合并后面积不超过二者之和时直接合并，
+ * 数量达到上限时合并面积增量最小的一对；矩形对象预分配复用，不产生每帧垃圾。
+ */
+public class DirtyRegions {
+    private final Rectangle[] rects;
+    private int count = 0;
+    private boolean full = false;
+
+    public DirtyRegions(int maxRects){
+        rects = new Rectangle[maxRects + 1]; // 多一个槽位用于溢出后再合并
+        for(int i=0;i<rects.length;i++) rects[i] = new Rectangle();
+    }
+
+    public void clear(){ count = 0; full = false; }
+    /** 标记整屏重绘（屏幕抖动、全屏特效、依赖裁剪区域尺寸的特效等） */
+    public void markFull(){ full = true; }
+    public boolean isMarkedFull(){ return full; }
+
+    public void add(int x, int y, int w, int h){
+        if(full || w <= 0 || h <= 0) return;
+        Rectangle n = rects[count];
+        n.setBounds(x, y, w, h);
+        count++;
+        coalesce(count - 1);
+        if(count == rects.length) mergeCheapestPair();
+    }
+
+    public void add(Rectangle r){ add(r.x, r.y, r.width, r.height); }
+
+    /** 以 (cx, cy) 为圆心、半径 r 的圆的外接矩形，外扩几个像素覆盖描边与抗锯齿 */
+    public void addCircle(double cx, double cy, double r){
+        int x0 = (int)Math.floor(cx - r) - 3, y0 = (int)Math.floor(cy - r) - 3;
+        add(x0, y0, (int)Math.ceil(cx + r) + 4 - x0, (int)Math.ceil(cy + r) + 4 - y0);
+    }
+
+    public void addAll(DirtyRegions other){
+        if(other.full){ full = true; return; }
+        for(int i=0;i<other.count;i++) add(other.rects[i]);
+    }
+
+    public void copyFrom(DirtyRegions other){
+        clear();
+        full = other.full;
+        for(int i=0;i<other.count;i++) add(other.rects[i]);
+    }
+
+    public int size(){ return count; }
+    public Rectangle get(int i){ return rects[i]; }
+
+    public long totalArea(){ long a = 0; for(int i=0;i<count;i++) a += area(rects[i]); return a; }
+
+    /** 所有矩形的外接矩形写入 out */
+    public void bounds(Rectangle out){
+        out.setBounds(0, 0, -1, -1);
+        for(int i=0;i<count;i++){ Rectangle r = rects[i]; out.add(r.x, r.y); out.add(r.x + r.width, r.y + r.height); }
+    }
+
+    // 新加入的矩形与已有矩形合并，合并结果可能继续吞并其他矩形
+    private void coalesce(int idx){
+        boolean merged = true;
+        while(merged){
+            merged = false;
+            Rectangle a = rects[idx];
+            for(int i=0;i<count;i++){
+                if(i == idx) continue;
+                Rectangle b = rects[i];
+                if(unionArea(a, b) <= area(a) + area(b)){
+                    b.add(a);
+                    removeAt(idx);
+                    idx = i < idx ? i : i - 1;
+                    merged = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void mergeCheapestPair(){
+        int bi = 0, bj = 1; long best = Long.MAX_VALUE;
+        for(int i=0;i<count;i++) for(int j=i+1;j<count;j++){
+            long growth = unionArea(rects[i], rects[j]) - area(rects[i]) - area(rects[j]);
+            if(growth < best){ best = growth; bi = i; bj = j; }
+        }
+        rects[bi].add(rects[bj]);
+        removeAt(bj);
+        coalesce(bi < bj ? bi : bi - 1);
+    }
+
+    private void removeAt(int i){
+        Rectangle r = rects[i];
+        System.arraycopy(rects, i + 1, rects, i, count - i - 1);
+        rects[--count] = r; // 保留对象供下次复用
+    }
+
+    private static long area(Rectangle r){ return (long)r.width * r.height; }
+    private static long unionArea(Rectangle a, Rectangle b){
+        long x0 = Math.min(a.x, b.x), y0 = Math.min(a.y, b.y);
+        long x1 = Math.max((long)a.x + a.width, (long)b.x + b.width), y1 = Math.max((long)a.y + a.height, (long)b.y + b.height);
+        return (x1 - x0) * (y1 - y0);
+    }
+}
@@ -0,0 +1,430 @@
+package org.example;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 游戏规则核心：Boss 血量与切换、连击倍率、技能蓄力、阶段反击、Boss 技能、终极技能与投射物飞行。
+ * 不依赖 Swing / MIDI：时间取自可注入的 GameClock，声音与特效经 AudioSink / EffectsSink 输出，
+ * 存档日志与 Boss 击败经 Listener 通知；可在 java.awt.headless=true 下按任意步长快于实时运行。
+ * 非线程安全：游戏中只在模拟线程（持有 worldLock）上访问。
+ */
+public class GameSimulation {
+    public enum BossSkill { NONE, ABSORB, REFLECT, CORE_PULSE }
+
+    /** 时间源（毫秒） */
+    public interface GameClock {
+        long currentTimeMillis();
+        GameClock SYSTEM = System::currentTimeMillis;
+    }
+
+    /** 声音输出 */
+    public interface AudioSink {
+        void hitNote(Instrument inst);
+        void pattern(Instrument inst);
+        void ultimate();
+        AudioSink NONE = new AudioSink(){
+            @Override public void hitNote(Instrument inst){}
+            @Override public void pattern(Instrument inst){}
+            @Override public void ultimate(){}
+        };
+    }
+
+    /** 视觉特效输出：规则只决定何时出现，位置、尺寸与密度由渲染端决定 */
+    public interface EffectsSink {
+        default void projectileHit(Color color){}
+        default void counterAttack(long windowMs){}
+        default void bossSkill(BossSkill skill, Color telegraph, long telegraphMs){}
+        default void absorbReleased(){}
+        default void ultimate(Instrument last){}
+        EffectsSink NONE = new EffectsSink(){};
+    }
+
+    /** 规则事件：预写日志记录与 Boss 击败 */
+    public interface Listener {
+        default void journal(int type, int a, long value){}
+        /** Boss 血量归零；此后伤害被忽略，直到调用 advanceToNextBoss() 或 restart() */
+        default void bossDefeated(int defeatedIndex, boolean allDefeated){}
+        Listener NONE = new Listener(){};
+    }
+
+    public static final long COMBO_WINDOW_MS = 800; // 连击时间窗口
+    public static final double SKILL_THRESHOLD = 300.0; // 三倍蓄力
+    private static final double SKILL_GAIN_PER_HIT = 6.5; // 基础获得不变但阈值提高意味着更久
+    private static final double SKILL_COMBO_BONUS = 0.25; // 补回每连击额外百分比
+    public static final long COUNTER_WINDOW_MS = 1500; // 格挡时间
+
+    private final List<BossEntity> bosses;
+    private final Map<Integer, Instrument> instruments;
+    private final GameClock clock;
+    private final Random rand;
+    private AudioSink audio = AudioSink.NONE;
+    private EffectsSink effects = EffectsSink.NONE;
+    private Listener listener = Listener.NONE;
+
+    private BossEntity boss;
+    private int currentBossIndex = 0;
+    private long totalScore = 0; // 汇总分数
+    private int score = 0; // 当前Boss内得分
+    private boolean bossSwitching = false; // Boss 切换保护，防止同帧多次判定
+
+    // 连击
+    private int comboCount = 0;
+    private long lastTriggerTime = 0;
+    private double comboMultiplier = 1.0;
+    private int lastUsedInstrumentIndex = -1;
+
+    // 技能条 & 超级技能
+    private double skillCharge = 0;
+    private boolean skillReady = false;
+
+    // Boss 阶段反击
+    private int bossPhase = 0; // 0..3
+    private boolean counterActive = false;
+    private long counterEndTime = 0;
+    private boolean counterResolved = false;
+
+    // 减速 & 暗化 & 抖动
+    private double slowFactor = 1.0; // <1 表示减速（延长触发间隔）
+    private long slowEndTime = 0;
+    private float darkAlpha = 0f;
+    private double shakeIntensity = 0; // 0~1
+    private double bassPulseAmp = 0, bassPulsePhase = 0;
+
+    // Boss专属技能
+    private BossSkill bossSkill = BossSkill.NONE;
+    private long bossSkillEnd = 0;
+    private boolean reflectActive = false;
+    private double absorbAccum = 0; // 吸收期间累计伤害
+    private long nextSkillTime = 0;
+
+    // 终极技能
+    private boolean ultimateActive = false;
+    private long ultimateEnd = 0;
+    private boolean ultimateComboBoost = false;
+    private long ultimateComboEnd = 0;
+
+    // 投射物
+    private int viewW = 900, viewH = 700;
+    private final ProjectileStore projectiles = new ProjectileStore(ProjectileStore.DEFAULT_CAPACITY);
+    private final ChunkedUpdate projectileUpdate = new ChunkedUpdate(256, 64); // 默认容量 256 满载时分 4 块
+    private final ChunkedUpdate.RangeBody moveProjectilesBody = this::moveProjectiles;
+    private float projectileDt;
+    private boolean sampleTrail;
+    private int maxTrail = ProjectileStore.MAX_TRAIL;
+    private long tick = 0;
+
+    public GameSimulation(List<BossEntity> bosses, Map<Integer, Instrument> instruments, GameClock clock, long seed){
+        this.bosses = bosses; this.instruments = instruments; this.clock = clock; this.rand = new Random(seed);
+        this.boss = bosses.get(0);
+        scheduleNextBossSkill();
+    }
+
+    public static List<BossEntity> createBosses(){
+        List<BossEntity> list = new ArrayList<>();
+        list.add(new BugBoss(12_000_000, "code"));
+        list.add(new MatrixBoss(18_000_000, "matrix"));
+        list.add(new NeuralCoreBoss(25_000_000, "core"));
+        return list;
+    }
+
+    public static Map<Integer, Instrument> createInstruments(){
+        Map<Integer, Instrument> map = new LinkedHashMap<>();
+        map.put(0, new Instrument("循环鼓 (A)", 10000, "鼓", 9, 0, Instrument.EffectType.RIPPLE));
+        map.put(1, new Instrument("函数琴 (S)", 16000, "钢琴", 0, 0, Instrument.EffectType.FIREWORK));
+        map.put(2, new Instrument("变量提琴 (D)", 20000, "小提琴", 1, 40, Instrument.EffectType.RIPPLE));
+        map.put(3, new Instrument("递归号 (F)", 24000, "萨克斯", 2, 65, Instrument.EffectType.FIREWORK));
+        map.put(4, new Instrument("并发贝斯 (G)", 30000, "贝斯", 3, 33, Instrument.EffectType.RIPPLE));
+        return map;
+    }
+
+    public void setAudioSink(AudioSink audio){ this.audio = audio; }
+    public void setEffectsSink(EffectsSink effects){ this.effects = effects; }
+    public void setListener(Listener listener){ this.listener = listener; }
+    /** 投射物起点与目标按视图尺寸计算 */
+    public void setViewSize(int w, int h){ viewW = w; viewH = h; }
+    /** 拖尾最大采样数（随画质变化） */
+    public void setTrailLimit(int max){ maxTrail = Math.min(max, ProjectileStore.MAX_TRAIL); }
+
+    /** 从存档恢复进度 */
+    public void restore(SaveManager.SaveData loaded){
+        currentBossIndex = Math.min(loaded.currentBossIndex, bosses.size() - 1);
+        boss = bosses.get(currentBossIndex);
+        if (loaded.bossHealths != null && currentBossIndex < loaded.bossHealths.length) {
+            boss.setHealth((int)loaded.bossHealths[currentBossIndex]);
+            totalScore = loaded.totalScore;
+            skillCharge = loaded.skillCharge; comboCount = loaded.comboCount;
+            if (loaded.ultimateComboRemainMs > 0) { ultimateComboBoost = true; ultimateComboEnd = clock.currentTimeMillis() + loaded.ultimateComboRemainMs; }
+        }
+    }
+
+    /** 把进度写入存档数据（BPM、音量等设置由调用方填写） */
+    public void fillSave(SaveManager.SaveData d){
+        d.currentBossIndex = currentBossIndex;
+        d.totalScore = totalScore;
+        d.skillCharge = skillCharge;
+        d.comboCount = comboCount;
+        d.ultimateComboRemainMs = ultimateComboBoost?Math.max(0, ultimateComboEnd-clock.currentTimeMillis()):0;
+        d.bossHealths = bosses.stream().mapToDouble(BossEntity::getHealth).toArray();
+    }
+
+    // ====== 输入 ======
+
+    public void triggerInstrument(int instrumentIndex){ triggerInstruments(1 << instrumentIndex); }
+
+    /** 同一 tick 到期的多个乐器合并成一次调用（bit i = 乐器 i）：时钟、减速与 Boss 技能检查只做一次，随后按索引顺序逐个结算 */
+    public void triggerInstruments(int mask){
+        for(int bits = mask; bits != 0; bits &= bits - 1){ int i = Integer.numberOfTrailingZeros(bits); if(instruments.get(i) == null) mask &= ~(1 << i); }
+        if(mask == 0) return;
+        long now = clock.currentTimeMillis();
+        if (slowFactor < 1.0 && now > slowEndTime) slowFactor = 1.0;
+        maybeActivateBossSkill();
+        for(int bits = mask; bits != 0; bits &= bits - 1) fireInstrument(Integer.numberOfTrailingZeros(bits), now);
+    }
+
+    private void fireInstrument(int instrumentIndex, long now){
+        Instrument instrument = instruments.get(instrumentIndex);
+        audio.hitNote(instrument); // 即时反馈
+        if (now - lastTriggerTime <= COMBO_WINDOW_MS) comboCount++; else comboCount = 1;
+        lastTriggerTime = now;
+        double comboBase = 1.0 + Math.min(1.5, comboCount * 0.05);
+        if (ultimateComboBoost && now<ultimateComboEnd) comboMultiplier = comboBase * 2.0; else { comboMultiplier = comboBase; if (ultimateComboBoost && now>=ultimateComboEnd) ultimateComboBoost=false; }
+        audio.pattern(instrument);
+        int baseDamage = instrument.getDamage(); int projectedDamage = (int)Math.round(baseDamage * comboMultiplier * slowFactor);
+        spawnProjectile(instrument, projectedDamage);
+        double gain = SKILL_GAIN_PER_HIT + comboCount * SKILL_COMBO_BONUS; skillCharge = Math.min(SKILL_THRESHOLD, skillCharge + gain * 0.4);
+        if (skillCharge >= SKILL_THRESHOLD) skillReady = true;
+        lastUsedInstrumentIndex = instrumentIndex;
+    }
+
+    public void triggerSuperSkill() {
+        if (!skillReady) return; skillReady = false; skillCharge = 0;
+        long now = clock.currentTimeMillis();
+        Instrument last = instruments.get(lastUsedInstrumentIndex >=0 ? lastUsedInstrumentIndex : 1);
+        effects.ultimate(last);
+        audio.ultimate();
+        ultimateActive = true; ultimateEnd = now + 5000;
+        ultimateComboBoost = true; ultimateComboEnd = now + 10000;
+        int bonusDmg = (int)(boss.getMaxHealth() * 0.03 + comboCount * 800);
+        applyBossDamage(bonusDmg);
+        shakeIntensity = Math.min(1.0, shakeIntensity + 0.7);
+    }
+
+    public void attemptCounterResolve(){
+        if (counterActive && !counterResolved) {
+            counterResolved = true; // 成功格挡
+            skillCharge = Math.min(SKILL_THRESHOLD, skillCharge + 25);
+            shakeIntensity = Math.min(1.0, shakeIntensity + 0.3);
+        }
+    }
+
+    // ====== 步进 ======
+
+    /** 推进一个固定步长：投射物、Boss 动画、规则状态 */
+    public void step(long dt){
+        stepProjectiles(dt);
+        stepBoss(dt);
+        stepRules(dt);
+    }
+
+    /** 投射物移动与命中结算 */
+    public void stepProjectiles(long dt){
+        tick++;
+        if(projectiles.isEmpty()) return;
+        projectileDt = dt / 1000f;
+        sampleTrail = (tick & 1) == 0; // 拖尾按约 60Hz 采样，保持与原帧率下相同的拖尾长度
+        // 移动与拖尾互不相关，可分块并行；命中结算会改动全局状态，随后按列表顺序串行执行
+        projectileUpdate.run(projectiles.size(), moveProjectilesBody);
+        for(int i=0;i<projectiles.size();i++){ if(projectiles.isHit(i)) onProjectileHit(projectiles.color(i), projectiles.damage(i)); }
+        projectiles.removeHits();
+    }
+
+    /** 屏幕抖动/低频光晕衰减与 Boss 动画 */
+    public void stepBoss(long dt){
+        double frames60 = dt / 16.0; // 衰减系数按 60Hz 帧标定，换算为与步长无关
+        shakeIntensity *= Math.pow(0.90, frames60); if(shakeIntensity < 0.001) shakeIntensity = 0;
+        bassPulseAmp *= Math.pow(0.92, frames60); bassPulsePhase += dt / 1000.0 * 2 * Math.PI * 1.2;
+        boss.update(dt);
+    }
+
+    /** 阶段反击、Boss 技能、减速/暗化、终极技能到期 */
+    public void stepRules(long dt){
+        long now = clock.currentTimeMillis();
+        updateBossPhaseIfNeeded(); finishCounterIfTimeout(); updateBossSkillState();
+        if (slowFactor < 1.0 && now > slowEndTime) slowFactor = 1.0;
+        if (darkAlpha > 0f) darkAlpha *= (float)Math.pow(0.92, dt / 16.0);
+        if (ultimateActive && now > ultimateEnd) ultimateActive = false;
+    }
+
+    private void moveProjectiles(int from, int to){ projectiles.move(from, to, projectileDt, sampleTrail, maxTrail); }
+
+    private void spawnProjectile(Instrument inst, int dmg){
+        int w = viewW; int h = viewH;
+        double startX = 50 + rand.nextDouble()*(w-100);
+        double startY = h + 20;
+        double targetX = w/2.0 + (rand.nextDouble()-0.5)*120;
+        double targetY = h/3.0 - 40;
+        double speed = 600;
+        if(!projectiles.spawn((float)startX,(float)startY,(float)targetX,(float)targetY,(float)speed,dmg, inst.getColor())) applyBossDamage(dmg); // 池满时直接结算伤害
+    }
+
+    private void onProjectileHit(Color color, int damage){
+        effects.projectileHit(color);
+        double remainGain = (SKILL_GAIN_PER_HIT + comboCount * SKILL_COMBO_BONUS) * 0.6;
+        skillCharge = Math.min(SKILL_THRESHOLD, skillCharge + remainGain);
+        if(skillCharge >= SKILL_THRESHOLD) skillReady = true;
+        applyBossDamage(damage);
+    }
+
+    private void applyBossDamage(int dmg){
+        if(bossSwitching) return; // 正在切换不再处理伤害
+        if (bossSkill == BossSkill.ABSORB){
+            absorbAccum += dmg;
+            shakeIntensity = Math.min(1.0, shakeIntensity + dmg / (double)boss.getMaxHealth());
+            return;
+        }
+        if (bossSkill == BossSkill.REFLECT && reflectActive){
+            comboCount = Math.max(0, comboCount - 5);
+            darkAlpha = 0.4f; // 边缘闪暗
+            return;
+        }
+        boss.takeDamage(dmg);
+        if(boss.getHealth() < 0) boss.setHealth(0); // clamp
+        score += dmg; totalScore += dmg;
+        listener.journal(SaveJournal.DAMAGE, currentBossIndex, dmg);
+        if (boss.getHealth() <= 0 && !bossSwitching){
+            bossSwitching = true;
+            int defeatedIndex = currentBossIndex;
+            currentBossIndex++;
+            listener.bossDefeated(defeatedIndex, currentBossIndex >= bosses.size());
+        }
+    }
+
+    private void updateBossPhaseIfNeeded(){
+        double hpPct = (double)boss.getHealth()/boss.getMaxHealth();
+        int phase = hpPct > 0.7 ? 0 : hpPct > 0.4 ? 1 : hpPct > 0.15 ? 2 : 3;
+        if (phase != bossPhase) {
+            bossPhase = phase;
+            counterActive = true; counterResolved = false; counterEndTime = clock.currentTimeMillis() + COUNTER_WINDOW_MS;
+            effects.counterAttack(COUNTER_WINDOW_MS);
+        }
+    }
+
+    private void finishCounterIfTimeout(){
+        long now = clock.currentTimeMillis();
+        if (counterActive && now > counterEndTime) {
+            counterActive = false;
+            if (!counterResolved) {
+                // 未格挡惩罚：清空部分连击与技能能量
+                comboCount = 0;
+                comboMultiplier = 1.0;
+                skillCharge = Math.max(0, skillCharge - 30);
+                shakeIntensity = Math.min(1.0, shakeIntensity + 0.2);
+                // 反击失败附加：减速4秒 + 暗化
+                slowFactor = 0.5;
+                slowEndTime = now + 4000;
+                darkAlpha = 0.65f;
+            }
+        }
+        if (counterActive && counterResolved) {
+            // 成功后立即结束窗口
+            counterActive = false;
+        }
+    }
+
+    private void scheduleNextBossSkill(){
+        // 每 8~14 秒之间触发一次（取随机+放松体验）
+        nextSkillTime = clock.currentTimeMillis() + 8000 + rand.nextInt(6000);
+    }
+
+    private void maybeActivateBossSkill(){
+        long now = clock.currentTimeMillis();
+        if (now < nextSkillTime || bossSkill != BossSkill.NONE || counterActive) return;
+        if (boss instanceof BugBoss) {
+            bossSkill = BossSkill.ABSORB; bossSkillEnd = now + 3000; absorbAccum = 0;
+            effects.bossSkill(bossSkill, new Color(255,140,80), 1500);
+        } else if (boss instanceof MatrixBoss) {
+            bossSkill = BossSkill.REFLECT; bossSkillEnd = now + 2500; reflectActive = true;
+            effects.bossSkill(bossSkill, new Color(255,230,90), 1600);
+        } else if (boss instanceof NeuralCoreBoss) {
+            bossSkill = BossSkill.CORE_PULSE; bossSkillEnd = now + 3200;
+            effects.bossSkill(bossSkill, new Color(140,210,255), 2000);
+        }
+    }
+
+    private void updateBossSkillState(){
+        long now = clock.currentTimeMillis();
+        if (bossSkill != BossSkill.NONE && now > bossSkillEnd){
+            if (bossSkill == BossSkill.ABSORB && absorbAccum > 0){
+                effects.absorbReleased();
+                int heal = (int)Math.min(boss.getMaxHealth()*0.01, absorbAccum*0.5);
+                boss.takeDamage(-heal);
+                listener.journal(SaveJournal.HEAL, currentBossIndex, heal);
+            }
+            if (bossSkill == BossSkill.REFLECT) reflectActive = false;
+            bossSkill = BossSkill.NONE;
+            scheduleNextBossSkill();
+        }
+    }
+
+    // ====== Boss 切换 ======
+
+    /** 击败后切换到下一个 Boss（bossDefeated 回调之后调用） */
+    public void advanceToNextBoss(){
+        if(currentBossIndex >= bosses.size()) return;
+        boss = bosses.get(currentBossIndex);
+        resetTransientState();
+        scheduleNextBossSkill();
+        listener.journal(SaveJournal.BOSS_SWITCH, currentBossIndex, 0);
+    }
+
+    /** 全部 Boss 恢复满血，从第一个重新开始 */
+    public void restart(){
+        for(BossEntity b: bosses){ b.setHealth((int)b.getMaxHealth()); }
+        currentBossIndex = 0; boss = bosses.get(0);
+        totalScore = 0; score = 0;
+        resetTransientState();
+        projectiles.clear();
+        scheduleNextBossSkill();
+    }
+
+    private void resetTransientState(){
+        comboCount = 0; comboMultiplier = 1.0; skillCharge = 0; skillReady = false;
+        ultimateActive = false; ultimateComboBoost = false;
+        reflectActive = false; bossSkill = BossSkill.NONE; absorbAccum = 0; counterActive = false;
+        darkAlpha = 0f; slowFactor = 1.0; shakeIntensity = 0; bassPulseAmp = 0;
+        bossSwitching = false; // 切换完毕
+    }
+
+    // ====== 状态读取 ======
+
+    public BossEntity getBoss(){ return boss; }
+    public List<BossEntity> getBosses(){ return bosses; }
+    public int getCurrentBossIndex(){ return currentBossIndex; }
+    public boolean isBossSwitching(){ return bossSwitching; }
+    public long getTotalScore(){ return totalScore; }
+    public int getScore(){ return score; }
+    public int getComboCount(){ return comboCount; }
+    public double getComboMultiplier(){ return comboMultiplier; }
+    public double getSkillCharge(){ return skillCharge; }
+    public boolean isSkillReady(){ return skillReady; }
+    public boolean isCounterActive(){ return counterActive; }
+    public boolean isCounterResolved(){ return counterResolved; }
+    public long getCounterRemainMs(){ return Math.max(0, counterEndTime - clock.currentTimeMillis()); }
+    public double getSlowFactor(){ return slowFactor; }
+    public float getDarkAlpha(){ return darkAlpha; }
+    public double getShakeIntensity(){ return shakeIntensity; }
+    public double getBassPulseAmp(){ return bassPulseAmp; }
+    public double getBassPulsePhase(){ return bassPulsePhase; }
+    public BossSkill getBossSkill(){ return bossSkill; }
+    public boolean isReflectActive(){ return reflectActive; }
+    public boolean isUltimateActive(){ return ultimateActive; }
+    public boolean isUltimateComboBoost(){ return ultimateComboBoost; }
+    public int getLastUsedInstrumentIndex(){ return lastUsedInstrumentIndex; }
+    public Map<Integer, Instrument> getInstruments(){ return instruments; }
+    public ProjectileStore getProjectiles(){ return projectiles; }
+}
@@ -0,0 +1,59 @@
+package org.example;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * 字形图集：把一组字符按固定字体、颜色和若干透明度档位预先光栅化到一张图上（行 = 透明度档位，列 = 字符），
+ * 绘制时按区域 drawImage 贴图，代替逐格的 String 构造、Color 分配与文本排版。
+ * 首次绘制时在绘制线程上懒加载生成，之后不再分配。
+ */
+public final class GlyphAtlas {
+    private final Font font;
+    private final char[] glyphs;
+    private final int rgb, tintLevels;
+    private BufferedImage atlas;
+    private int cellW, cellH, ascent;
+
+    public GlyphAtlas(Font font, char[] glyphs, int rgb, int tintLevels){
+        this.font = font; this.glyphs = glyphs.clone(); this.rgb = rgb & 0xFFFFFF; this.tintLevels = Math.max(1, tintLevels);
+    }
+
+    public int size(){ return glyphs.length; }
+
+    /** 以 (x, baselineY) 为基线起点绘制第 index 个字符，alpha 量化到最近的档位 */
+    public void draw(Graphics2D g, int index, float alpha, int x, int baselineY){
+        if(atlas == null) build();
+        int level = Math.round(Math.min(1f, Math.max(0f, alpha)) * (tintLevels - 1));
+        if(level <= 0 && alpha <= 0f) return;
+        int sx = index * cellW, sy = level * cellH, dy = baselineY - ascent;
+        g.drawImage(atlas, x, dy, x + cellW, dy + cellH, sx, sy, sx + cellW, sy + cellH, null);
+    }
+
+    private void build(){
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D pg = probe.createGraphics();
+        FontMetrics fm = pg.getFontMetrics(font);
+        int w = 1; for(char c: glyphs) w = Math.max(w, fm.charWidth(c));
+        cellW = w + 2; cellH = fm.getAscent() + fm.getDescent() + 2; ascent = fm.getAscent() + 1;
+        pg.dispose();
+        BufferedImage img = create(cellW * glyphs.length, cellH * tintLevels);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(font);
+        char[] one = new char[1];
+        for(int level=0; level<tintLevels; level++){
+            int a = tintLevels == 1 ? 255 : Math.round(255f * level / (tintLevels - 1));
+            g.setColor(new Color((a << 24) | rgb, true));
+            for(int i=0;i<glyphs.length;i++){ one[0] = glyphs[i]; g.drawChars(one, 0, 1, i * cellW + 1, level * cellH + ascent); }
+        }
+        g.dispose();
+        atlas = img;
+    }
+
+    private static BufferedImage create(int w, int h){
+        if(GraphicsEnvironment.isHeadless()) return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+    }
+}
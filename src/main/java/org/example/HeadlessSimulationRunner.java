@@ -0,0 +1,76 @@
+package org.example;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * 无界面批量模拟：用手动推进的时钟驱动 GameSimulation，按脚本随机按键，不打开音频与窗口，
+ * 以远快于实时的速度跑完整局游戏，用于构建机上的压测。
+ * 用法：java -Djava.awt.headless=true org.example.HeadlessSimulationRunner [局数] [种子]
+ */
+public class HeadlessSimulationRunner {
+    private static final Logger LOGGER = Logger.getLogger(HeadlessSimulationRunner.class.getName());
+    private static final long MAX_SESSION_MS = Long.getLong("codesymphony.headless.maxSessionMs", 30 * 60_000L); // 单局模拟时长上限
+    private static final int PRESS_INTERVAL_MS = Integer.getInteger("codesymphony.headless.pressMs", 120); // 平均按键间隔
+
+    /** 手动时钟：只在 step 之间推进 */
+    static final class ManualClock implements GameSimulation.GameClock {
+        long now;
+        ManualClock(long start){ now = start; }
+        @Override public long currentTimeMillis(){ return now; }
+        void advance(long ms){ now += ms; }
+    }
+
+    /** 一局的结果 */
+    static final class SessionResult {
+        long steps, gameMs, totalScore; int bossesDefeated; boolean cleared;
+    }
+
+    public static void main(String[] args){
+        System.setProperty("java.awt.headless", "true");
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("codesymphony.headless.sessions", 100);
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        long start = System.nanoTime(), steps = 0, gameMs = 0; int cleared = 0;
+        for(int i=0;i<sessions;i++){
+            SessionResult r = runSession(seed + i);
+            steps += r.steps; gameMs += r.gameMs; if(r.cleared) cleared++;
+        }
+        double sec = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format(Locale.ROOT, "sessions=%d cleared=%d wall=%.2fs sessions/min=%.0f steps/s=%.0f speedup=%.0fx",
+                sessions, cleared, sec, sessions / sec * 60, steps / sec, gameMs / 1000.0 / sec));
+    }
+
+    /** 跑完一局（全部 Boss 被击败或达到时长上限） */
+    static SessionResult runSession(long seed){
+        ManualClock clock = new ManualClock(0);
+        GameSimulation sim = new GameSimulation(GameSimulation.createBosses(), GameSimulation.createInstruments(), clock, seed);
+        SessionResult r = new SessionResult();
+        int[] pendingAdvance = {0}; // 0 无，1 下一个 Boss，2 通关
+        sim.setListener(new GameSimulation.Listener(){
+            @Override public void bossDefeated(int defeatedIndex, boolean allDefeated){ r.bossesDefeated++; pendingAdvance[0] = allDefeated ? 2 : 1; }
+        });
+        Random input = new Random(seed ^ 0x5DEECE66DL);
+        int instrumentCount = sim.getInstruments().size();
+        long nextPress = 0, counterReactAt = -1, dt = SimulationLoop.TICK_MS;
+        while(clock.now < MAX_SESSION_MS){
+            if(clock.now >= nextPress){
+                sim.triggerInstrument(input.nextInt(instrumentCount));
+                nextPress = clock.now + PRESS_INTERVAL_MS / 2 + input.nextInt(PRESS_INTERVAL_MS);
+            }
+            if(sim.isSkillReady() && input.nextInt(50) == 0) sim.triggerSuperSkill();
+            // 反击窗口：随机反应时间后按 SPACE，部分情况故意错过
+            if(sim.isCounterActive() && !sim.isCounterResolved()){
+                if(counterReactAt < 0) counterReactAt = clock.now + 150 + input.nextInt((int)GameSimulation.COUNTER_WINDOW_MS);
+                else if(clock.now >= counterReactAt){ sim.attemptCounterResolve(); counterReactAt = -1; }
+            } else counterReactAt = -1;
+            sim.step(dt);
+            clock.advance(dt); r.steps++;
+            if(pendingAdvance[0] == 2){ r.cleared = true; break; }
+            if(pendingAdvance[0] == 1){ pendingAdvance[0] = 0; sim.advanceToNextBoss(); }
+        }
+        r.gameMs = clock.now; r.totalScore = sim.getTotalScore();
+        if(!r.cleared) LOGGER.fine(() -> "session " + seed + " hit time limit after " + r.bossesDefeated + " bosses");
+        return r;
+    }
+}
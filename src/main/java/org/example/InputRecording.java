@@ -0,0 +1,127 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 输入录制：模拟线程实际执行的输入命令，按模拟 tick 序号（单调，每 tick 固定 8ms）打时间戳，
+ * 连同规则核心与特效的随机种子、画布尺寸和开局进度一起保存，回放时在相同 tick 重新投递即可复现整局。
+ * 录制期间自适应画质关闭（固定 HIGH），特效密度不随帧时间变化。
+ * <pre>
+ * 头部: magic(int) version(short) tickMs(short) simSeed(long) effectsSeed(long) viewW(short) viewH(short)
+ *       开局进度: bossIndex(byte) totalScore(long) skillCharge(double) comboCount(int) ultimateComboRemainMs(long) bossCount(byte) bossHealths(double * n)
+ * 记录: tick 增量(varint) 命令(byte: 高 4 位类型，低 4 位参数)，RESIZE 之后另跟 viewW(short) viewH(short)
+ * 结尾: END 记录，其 tick 为录制的总 tick 数
+ * </pre>
+ */
+public class InputRecording {
+    static final int MAGIC = 0x43534952; // "CSIR"
+    static final short VERSION = 1;
+
+    // 命令类型
+    public static final int PRESS = 1;     // 参数=乐器索引（按下，长按重复由 TRIGGER 记录）
+    public static final int RELEASE = 2;   // 参数=乐器索引
+    public static final int TRIGGER = 3;   // 参数=乐器索引（一次实际触发）
+    public static final int SUPER = 4;     // Q 超级技能
+    public static final int COUNTER = 5;   // SPACE 格挡
+    public static final int ADVANCE = 6;   // 进入下一个 Boss（对话框选择）
+    public static final int RESTART = 7;   // 重新开始
+    public static final int RESIZE = 8;    // 画布尺寸变化（投射物目标点随之变化）
+    static final int END = 15;
+
+    public long simSeed, effectsSeed;
+    public int tickMs = (int)SimulationLoop.TICK_MS, viewW = 900, viewH = 700;
+    public final SaveManager.SaveData initial = new SaveManager.SaveData(); // 开局进度
+    private long[] ticks = new long[256];
+    private byte[] commands = new byte[256];
+    private int[] payloads = new int[256]; // RESIZE: viewW << 16 | viewH
+    private int size = 0;
+    private long totalTicks;
+
+    /** 追加一条命令（tick 不得小于上一条） */
+    public void add(long tick, int type, int arg){ add(tick, type, arg, 0); }
+
+    public void addResize(long tick, int w, int h){ add(tick, RESIZE, 0, (w & 0xFFFF) << 16 | (h & 0xFFFF)); }
+
+    private void add(long tick, int type, int arg, int payload){
+        if(size > 0 && tick < ticks[size - 1]) throw new IllegalArgumentException("tick 倒退: " + tick);
+        if(size == ticks.length){ ticks = Arrays.copyOf(ticks, size * 2); commands = Arrays.copyOf(commands, size * 2); payloads = Arrays.copyOf(payloads, size * 2); }
+        ticks[size] = tick; commands[size] = (byte)((type << 4) | (arg & 0x0F)); payloads[size] = payload; size++;
+        totalTicks = Math.max(totalTicks, tick);
+    }
+
+    /** 录制结束时的 tick 数（回放跑到这里为止） */
+    public void setTotalTicks(long ticks){ totalTicks = Math.max(totalTicks, ticks); }
+    public long getTotalTicks(){ return totalTicks; }
+
+    public int size(){ return size; }
+    public long tick(int i){ return ticks[i]; }
+    public int type(int i){ return (commands[i] >> 4) & 0x0F; }
+    public int arg(int i){ return commands[i] & 0x0F; }
+    public int resizeWidth(int i){ return payloads[i] >>> 16; }
+    public int resizeHeight(int i){ return payloads[i] & 0xFFFF; }
+
+    public void write(Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + size * 2);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC); out.writeShort(VERSION); out.writeShort(tickMs);
+        out.writeLong(simSeed); out.writeLong(effectsSeed); out.writeShort(viewW); out.writeShort(viewH);
+        double[] healths = initial.bossHealths != null ? initial.bossHealths : new double[0];
+        out.writeByte(initial.currentBossIndex); out.writeLong(initial.totalScore); out.writeDouble(initial.skillCharge);
+        out.writeInt(initial.comboCount); out.writeLong(initial.ultimateComboRemainMs);
+        out.writeByte(healths.length); for(double h: healths) out.writeDouble(h);
+        long last = 0;
+        for(int i=0;i<size;i++){
+            writeVarLong(out, ticks[i] - last); out.writeByte(commands[i]); last = ticks[i];
+            if(type(i) == RESIZE){ out.writeShort(resizeWidth(i)); out.writeShort(resizeHeight(i)); }
+        }
+        writeVarLong(out, totalTicks - last); out.writeByte(END << 4);
+        out.flush();
+        Files.write(file, bytes.toByteArray());
+    }
+
+    public static InputRecording read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != MAGIC) throw new IOException("不是输入录制文件: " + file);
+            int version = in.readShort();
+            if(version != VERSION) throw new IOException("不支持的录制版本: " + version);
+            InputRecording r = new InputRecording();
+            r.tickMs = in.readShort(); r.simSeed = in.readLong(); r.effectsSeed = in.readLong(); r.viewW = in.readUnsignedShort(); r.viewH = in.readUnsignedShort();
+            SaveManager.SaveData d = r.initial;
+            d.currentBossIndex = in.readByte(); d.totalScore = in.readLong(); d.skillCharge = in.readDouble();
+            d.comboCount = in.readInt(); d.ultimateComboRemainMs = in.readLong();
+            d.bossHealths = new double[in.readUnsignedByte()];
+            for(int i=0;i<d.bossHealths.length;i++) d.bossHealths[i] = in.readDouble();
+            long tick = 0;
+            while(true){
+                tick += readVarLong(in);
+                int cmd = in.readUnsignedByte();
+                if((cmd >> 4) == END){ r.setTotalTicks(tick); break; }
+                if((cmd >> 4) == RESIZE) r.addResize(tick, in.readUnsignedShort(), in.readUnsignedShort());
+                else r.add(tick, cmd >> 4, cmd & 0x0F);
+            }
+            return r;
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while((v & ~0x7FL) != 0){ out.writeByte((int)((v & 0x7F) | 0x80)); v >>>= 7; }
+        out.writeByte((int)v);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long v = 0; int shift = 0, b;
+        do {
+            b = in.read();
+            if(b < 0) throw new IOException("录制文件被截断");
+            v |= (long)(b & 0x7F) << shift; shift += 7;
+        } while((b & 0x80) != 0);
+        return v;
+    }
+}
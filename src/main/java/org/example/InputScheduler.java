@@ -0,0 +1,74 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * 乐器键输入调度：每个键一组原始类型状态（是否按下、下次触发时刻、上次触发时刻、本次长按已触发次数），
+ * 由模拟线程每 tick 轮询一次，长按按当前间隔自动重复；同一 tick 到期的键合并成一个位掩码（bit i = 键 i）。
+ * 系统键盘自动重复产生的重复 PRESS（以及 X11 下紧贴的 RELEASE/PRESS 对）按去抖处理，不会叠加触发；
+ * 每个键的触发间隔不低于 1000 / maxRate 毫秒。只在模拟线程访问，时间为模拟时间（毫秒）。
+ */
+public class InputScheduler {
+    public static final int MAX_RATE = Integer.getInteger("codesymphony.input.maxRate", 12); // 每键每秒最多触发次数
+    private static final long DEBOUNCE_MS = Long.getLong("codesymphony.input.debounceMs", 10); // 释放后这么快再按下视为自动重复（X11 的 RELEASE/PRESS 对几乎同时到达）
+    private static final double FIRST_REPEAT_FACTOR = 1.6; // 首次重复延迟 = 间隔 * 1.6
+    private static final long NEVER = Long.MIN_VALUE / 4;
+
+    private final int keys;
+    private final boolean[] down;
+    private final long[] nextFireAt, lastFireAt, releasedAt;
+    private final long[] pressNanos; // 按键事件时刻（nanoTime），首次触发时取走，用于测量按键到发声延迟
+    private final int[] fires; // 本次长按已触发次数（0 表示首次触发尚未发生）
+    private final long minGapMs;
+    private long debounced = 0, capped = 0;
+
+    public InputScheduler(int keys){
+        if(keys > 31) throw new IllegalArgumentException("最多 31 个键: " + keys);
+        this.keys = keys;
+        down = new boolean[keys]; nextFireAt = new long[keys]; lastFireAt = new long[keys]; releasedAt = new long[keys]; fires = new int[keys]; pressNanos = new long[keys];
+        Arrays.fill(lastFireAt, NEVER); Arrays.fill(releasedAt, NEVER);
+        minGapMs = 1000 / Math.max(1, MAX_RATE);
+    }
+
+    public void press(int key, long now){ press(key, now, 0); }
+
+    /** 按下：已按下时的重复 PRESS、或刚释放就再次按下，视为系统自动重复，只恢复按下状态；eventNanos 为按键事件时刻（0 表示未知） */
+    public void press(int key, long now, long eventNanos){
+        if(key < 0 || key >= keys) return;
+        if(down[key]){ debounced++; return; }
+        down[key] = true;
+        if(now - releasedAt[key] <= DEBOUNCE_MS){ debounced++; return; } // 保留原有的重复节奏
+        fires[key] = 0; nextFireAt[key] = now; pressNanos[key] = eventNanos; // 首次触发在下一次轮询
+    }
+
+    /** 取走该键本次按下的事件时刻（只有首次触发带有按键事件；长按重复返回 0） */
+    public long takePressNanos(int key){
+        if(key < 0 || key >= keys) return 0;
+        long t = pressNanos[key]; pressNanos[key] = 0; return t;
+    }
+
+    public void release(int key, long now){
+        if(key < 0 || key >= keys || !down[key]) return;
+        down[key] = false; releasedAt[key] = now;
+    }
+
+    /** 全部键抬起（失去焦点、暂停时） */
+    public void releaseAll(long now){ for(int k=0;k<keys;k++) release(k, now); }
+
+    /** 返回本 tick 到期的键；repeatMs 为当前长按重复间隔 */
+    public int poll(long now, long repeatMs){
+        int mask = 0;
+        for(int k=0;k<keys;k++){
+            if(!down[k] || now < nextFireAt[k]) continue;
+            if(now - lastFireAt[k] < minGapMs){ capped++; nextFireAt[k] = lastFireAt[k] + minGapMs; continue; } // 超过频率上限：推迟，不排队
+            mask |= 1 << k;
+            lastFireAt[k] = now;
+            nextFireAt[k] = now + (fires[k]++ == 0 ? (long)(repeatMs * FIRST_REPEAT_FACTOR) : repeatMs);
+        }
+        return mask;
+    }
+
+    public boolean isDown(int key){ return key >= 0 && key < keys && down[key]; }
+    public long getDebounced(){ return debounced; }
+    public long getCapped(){ return capped; }
+}
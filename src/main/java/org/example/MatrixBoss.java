@@ -1,7 +1,7 @@
 package org.example;
 
 import java.awt.*;
-import java.util.Random;
+import java.awt.image.BufferedImage;
 
 /** 第二个Boss：矩阵代码幽影（不同视觉风格） */
 public class MatrixBoss implements BossEntity {
@@ -9,8 +9,13 @@ public class MatrixBoss implements BossEntity {
     private final int maxHealth;
     private final String name;
     private long timeMs = 0;
-    private final Random rand = new Random();
-    private final char[] glyphs = "01<>[]{};=+*/#$%^|".toCharArray();
+    private static final char[] GLYPHS = "01<>[]{};=+*/#$%^|".toCharArray();
+    private static final GlyphAtlas RAIN = new GlyphAtlas(new Font("Monospaced", Font.BOLD, 18), GLYPHS, 0x00FF8C, 32);
+    private static final Font EYE_FONT = new Font("Monospaced", Font.BOLD, 30);
+    private static final BasicStroke OUTLINE_STROKE = new BasicStroke(3f);
+    private static final Color OUTLINE = new Color(0,200,120,200), HEAD_RING = new Color(0,255,160,180), EYE = new Color(180,255,200);
+    private GradientPaint bodyPaint; private int paintCx, paintTopY;
+    private BufferedImage headGlow;
 
     public MatrixBoss(int hp, String name){
         this.health = hp; this.maxHealth = hp; this.name = name;
@@ -22,6 +27,7 @@ public class MatrixBoss implements BossEntity {
     public int getHealth(){ return health; }
     public int getMaxHealth(){ return maxHealth; }
     public String getName(){ return name; }
+    @Override public void addDirtyBounds(DirtyRegions dirty, int cx, int cy){ dirty.add(cx - 160, cy - 220, 320, 400); }
 
     public void draw(Graphics2D g2d, int cx, int cy){
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -30,51 +36,58 @@ public class MatrixBoss implements BossEntity {
         int bodyH = 340;
         int topY = cy - bodyH/2;
 
-        // 轮廓背景（绿黑渐变）
-        GradientPaint gp = new GradientPaint(cx - bodyW/2f, topY, new Color(0,30,0,180), cx + bodyW/2f, topY+bodyH, new Color(0,90,40,160));
-        g2d.setPaint(gp);
+        // 轮廓背景（绿黑渐变），位置不变时复用同一个 Paint
+        if(bodyPaint == null || cx != paintCx || topY != paintTopY){
+            bodyPaint = new GradientPaint(cx - bodyW/2f, topY, new Color(0,30,0,180), cx + bodyW/2f, topY+bodyH, new Color(0,90,40,160));
+            paintCx = cx; paintTopY = topY;
+        }
+        g2d.setPaint(bodyPaint);
         g2d.fillRoundRect(cx - bodyW/2, topY, bodyW, bodyH, 30,30);
-        g2d.setColor(new Color(0,200,120,200));
-        g2d.setStroke(new BasicStroke(3f));
+        g2d.setColor(OUTLINE);
+        g2d.setStroke(OUTLINE_STROKE);
         g2d.drawRoundRect(cx - bodyW/2, topY, bodyW, bodyH, 30,30);
 
-        // 代码雨列 - 使用行列随机字符形成身体内部闪动
+        // 代码雨列 - 从字形图集贴图，空洞由逐帧哈希决定
         int cols = 14;
         int rows = 16;
-        g2d.setFont(new Font("Monospaced", Font.BOLD, 18));
+        int holeThreshold = (int)((0.08 + (1-hpPct)*0.25) * 65536); // 低血量时空洞更多，形成腐蚀感
+        int frame = (int)(timeMs/50);
+        int glyphStep = (int)(timeMs/90);
         for (int c=0;c<cols;c++){
             for (int r=0;r<rows;r++){
-                double relY = r/(double)rows;
                 int x = cx - bodyW/2 + 15 + c * (bodyW-30)/cols;
                 int y = topY + 40 + r * (bodyH-80)/rows;
-                // 根据hpPct使低血量时更多闪烁与偏移
-                if (rand.nextDouble() < (0.08 + (1-hpPct)*0.25)) continue; // 空洞形成腐蚀感
-                char ch = glyphs[(c*31 + r*17 + (int)(timeMs/90)) % glyphs.length];
+                if ((hash(c, r, frame) & 0xFFFF) < holeThreshold) continue;
+                int idx = (c*31 + r*17 + glyphStep) % RAIN.size();
                 float alpha = (float)(0.55 + 0.45*Math.sin((timeMs/400.0)+c*0.8 + r*0.3));
                 alpha = Math.min(1f, Math.max(0.15f, alpha - (float)((1-hpPct)*0.2))); // 低血更暗
-                g2d.setColor(new Color(0,255,140,(int)(alpha*255)));
-                g2d.drawString(String.valueOf(ch), x, y);
+                RAIN.draw(g2d, idx, alpha, x, y);
             }
         }
 
-        // 头部数字能量球
+        // 头部数字能量球（预渲染光晕按脉动透明度贴图）
         int headR = 100;
         int headY = topY - headR/2 + 10;
-        float glowPulse = (float)(0.6 + 0.25*Math.sin(timeMs/170.0) + (1-hpPct)*0.3);
-        RadialGradientPaint rgp = new RadialGradientPaint(new Point(cx, headY+headR/2), headR/2f,
-                new float[]{0f,0.5f,1f}, new Color[]{
-                new Color(200,255,200,(int)(255*glowPulse)),
-                new Color(0,200,120,(int)(200*glowPulse)),
-                new Color(0,60,20,0)});
-        g2d.setPaint(rgp);
-        g2d.fillOval(cx - headR/2, headY, headR, headR);
-        g2d.setColor(new Color(0,255,160,(int)(180*glowPulse)));
+        float glowPulse = Math.min(1f, (float)(0.6 + 0.25*Math.sin(timeMs/170.0) + (1-hpPct)*0.3));
+        if(headGlow == null) headGlow = SpriteAtlas.radial(new float[]{0f,0.5f,1f}, new Color[]{ new Color(200,255,200,255), new Color(0,200,120,200), new Color(0,60,20,0)});
+        Composite old = g2d.getComposite();
+        g2d.setComposite(SpriteAtlas.alpha(glowPulse));
+        SpriteAtlas.drawScaled(g2d, headGlow, cx, headY + headR/2, headR/2);
+        g2d.setColor(HEAD_RING);
         g2d.drawOval(cx - headR/2, headY, headR, headR);
 
         // 眼睛 (两个发光括号)
-        g2d.setFont(new Font("Monospaced", Font.BOLD, 30));
-        int eyeAlpha = (int)(220 + 30 * Math.sin(timeMs/110.0));
-        g2d.setColor(new Color(180,255,200, eyeAlpha));
+        g2d.setComposite(SpriteAtlas.alpha((float)((220 + 30 * Math.sin(timeMs/110.0)) / 255.0)));
+        g2d.setFont(EYE_FONT);
+        g2d.setColor(EYE);
         g2d.drawString("< >", cx - 30, headY + headR/2 + 12);
+        g2d.setComposite(old);
+    }
+
+    // 格子坐标与帧号的整数哈希（代替逐格 Random，结果只取低 16 位比较）
+    private static int hash(int c, int r, int frame){
+        int h = c * 0x27d4eb2d ^ r * 0x165667b1 ^ frame * 0x9e3779b9;
+        h ^= h >>> 15; h *= 0x85ebca6b; h ^= h >>> 13;
+        return h;
     }
 }
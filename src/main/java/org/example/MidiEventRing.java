@@ -0,0 +1,66 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** 无锁有界环形队列（多生产者 / 单消费者）：存放打包后的短 MIDI 消息及其微秒时间戳 */
+public class MidiEventRing {
+    private final int mask;
+    private final AtomicLongArray sequence; // 每个槽位的序号，用于生产者/消费者交接
+    private final int[] messages; // status | data1<<8 | data2<<16
+    private final long[] timeStamps;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0; // 仅消费者线程访问
+    private final AtomicLong dropped = new AtomicLong();
+
+    public MidiEventRing(int capacityPow2){
+        int cap = Integer.highestOneBit(Math.max(2, capacityPow2 - 1) << 1);
+        mask = cap - 1;
+        sequence = new AtomicLongArray(cap);
+        for(int i=0;i<cap;i++) sequence.set(i, i);
+        messages = new int[cap];
+        timeStamps = new long[cap];
+    }
+
+    public static int pack(int status, int d1, int d2){ return (status & 0xFF) | (d1 & 0x7F) << 8 | (d2 & 0x7F) << 16; }
+    public static int status(int packed){ return packed & 0xFF; }
+    public static int data1(int packed){ return (packed >>> 8) & 0x7F; }
+    public static int data2(int packed){ return (packed >>> 16) & 0x7F; }
+
+    /** 入队；队列满时丢弃并计数 */
+    public boolean offer(int packed, long timeStamp){
+        while(true){
+            long pos = tail.get();
+            int idx = (int)(pos & mask);
+            long dif = sequence.get(idx) - pos;
+            if(dif == 0){
+                if(tail.compareAndSet(pos, pos + 1)){
+                    messages[idx] = packed; timeStamps[idx] = timeStamp;
+                    sequence.lazySet(idx, pos + 1); // 发布
+                    return true;
+                }
+            } else if(dif < 0){
+                dropped.incrementAndGet();
+                return false;
+            }
+            // dif > 0：其他生产者已占用该位置，重试
+        }
+    }
+
+    /** 出队交给 sink；返回处理条数（仅消费者线程调用） */
+    public int drain(Sink sink){
+        int n = 0;
+        while(true){
+            int idx = (int)(head & mask);
+            if(sequence.get(idx) != head + 1) return n;
+            int msg = messages[idx]; long ts = timeStamps[idx];
+            sequence.lazySet(idx, head + mask + 1); // 归还槽位
+            head++; n++;
+            sink.accept(msg, ts);
+        }
+    }
+
+    public long getDropped(){ return dropped.get(); }
+
+    public interface Sink { void accept(int packed, long timeStamp); }
+}
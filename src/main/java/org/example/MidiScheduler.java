@@ -0,0 +1,210 @@
+package org.example;
+
+import javax.sound.midi.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** MIDI 时间线调度器：按 nanoTime 时间戳排序的事件队列，由单个高精度分发线程统一发送到合成器 Receiver */
+public class MidiScheduler {
+    private static final Logger LOGGER = Logger.getLogger(MidiScheduler.class.getName());
+    private static final int CALLBACK = -1; // 生成器回调（在分发线程执行）
+    private static final int GATE_OFF = -2; // 与起音绑定的释放：只释放 arg 对应的那次起音
+    private static final long SPIN_NANOS = 1_000_000L; // 不支持时间戳时最后 1ms 自旋等待，避免 wait 唤醒误差
+    private static final long LOOKAHEAD_NANOS = 4_000_000L; // 支持时间戳时提前投递，由合成器按微秒时间戳精确起音
+    private static final int DEFAULT_CAPACITY = 4096; // 待分发事件上限，超出后丢弃新的 noteOn
+    private static final int PERCUSSION_CHANNEL = 9;
+    private static final long PERCUSSION_GATE_NANOS = 150_000_000L;
+    private static final int DEFAULT_POLYPHONY = Integer.getInteger("codesymphony.audio.maxPolyphony", 48);
+
+    private static final class Event implements Comparable<Event> {
+        long dueNanos; long seq; long arg; int command, channel, data1, data2; Runnable callback; // arg: NOTE_ON 为门限时长，GATE_OFF 为起音序号
+        @Override public int compareTo(Event o){
+            int c = Long.compare(dueNanos, o.dueNanos);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    private final int capacity;
+    private final ArrayDeque<Event> pool = new ArrayDeque<>(); // 事件对象复用
+    private final Object lock = new Object();
+    private volatile Receiver receiver; // 合成器重新打开后由 reconnect 替换
+    private final VoiceAllocator voices; // 所有发送路径共用，保证 noteOn/noteOff 成对
+    private final Synthesizer synthesizer; // 用于读取微秒位置；为 null 时立即发送
+    private final boolean timestamped;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    private long seqCounter = 0;
+    private final int[] programs = new int[16]; // 各通道最近发出的音色（-1 未知），在 voices 临界区内读写
+    private volatile long skippedProgramChanges = 0;
+
+    // 抖动统计：分发线程实际唤醒时刻相对目标时刻的延迟
+    private volatile long maxLatenessNanos = 0;
+    private volatile long dispatchedCount = 0;
+    private volatile long droppedCount = 0;
+    private long latenessSumNanos = 0;
+
+    public MidiScheduler(Synthesizer synthesizer, Receiver receiver){ this(synthesizer, receiver, DEFAULT_CAPACITY, new VoiceAllocator(DEFAULT_POLYPHONY, VoiceAllocator.StealPolicy.OLDEST)); }
+    public MidiScheduler(Synthesizer synthesizer, Receiver receiver, int capacity, VoiceAllocator voices){
+        this.capacity = capacity;
+        this.voices = voices;
+        this.synthesizer = synthesizer;
+        this.receiver = receiver;
+        this.timestamped = synthesizer != null && synthesizer.getMicrosecondPosition() >= 0;
+        Arrays.fill(programs, -1);
+        dispatcher = new Thread(this::dispatchLoop, "MIDI-Scheduler");
+        dispatcher.setDaemon(true);
+        dispatcher.setPriority(Thread.MAX_PRIORITY);
+        dispatcher.start();
+    }
+
+    /** 打击乐通道的起音在实际发出时自动预约释放，且只释放这一次起音（同音在门限内重击不会被前一次的释放截断） */
+    public void noteOn(long dueNanos, int channel, int note, int velocity){ schedule(dueNanos, ShortMessage.NOTE_ON, channel, note, velocity, null); }
+    /** 起音并在 gateNanos 后释放；释放与这次起音绑定，期间同音被重击（玩家击打或其他模式）时不会截断新的一次 */
+    public void note(long dueNanos, int channel, int note, int velocity, long gateNanos){ schedule(dueNanos, ShortMessage.NOTE_ON, channel, note, velocity, null, gateNanos); }
+    /** 不区分起音的释放：该音此刻无论由谁起音都会停下 */
+    public void noteOff(long dueNanos, int channel, int note){ schedule(dueNanos, ShortMessage.NOTE_OFF, channel, note, 0, null); }
+    public void programChange(long dueNanos, int channel, int program){ schedule(dueNanos, ShortMessage.PROGRAM_CHANGE, channel, program, 0, null); }
+    /** 在 dueNanos 时刻于分发线程执行回调，用于逐拍生成后续事件 */
+    public void call(long dueNanos, Runnable generator){ schedule(dueNanos, CALLBACK, 0, 0, 0, generator); }
+
+    private void schedule(long dueNanos, int command, int channel, int d1, int d2, Runnable cb){ schedule(dueNanos, command, channel, d1, d2, cb, 0); }
+
+    private void schedule(long dueNanos, int command, int channel, int d1, int d2, Runnable cb, long arg){
+        if(!running) return;
+        synchronized (lock){
+            // 饱和时只丢弃新起音；noteOff/回调始终接受，保证不会留下悬挂音
+            if(command == ShortMessage.NOTE_ON && queue.size() >= capacity){ droppedCount++; return; }
+            Event ev = pool.pollFirst(); if(ev==null) ev = new Event();
+            ev.dueNanos = dueNanos; ev.seq = seqCounter++; ev.command = command; ev.channel = channel; ev.data1 = d1; ev.data2 = d2; ev.callback = cb; ev.arg = arg;
+            Event head = queue.peek();
+            queue.add(ev);
+            if(head == null || ev.compareTo(head) < 0) lock.notifyAll(); // 更早的事件需要重新计算等待
+        }
+    }
+
+    /** 立即发送（调用线程内完成，不经过队列） */
+    public void sendNow(int command, int channel, int d1, int d2){ send(command, channel, d1, d2, -1); }
+
+    /**
+     * 玩家击打快速路径：在调用线程上立即发送，不进入事件队列，也就不排在背景/模式事件之后；
+     * 音色切换（仅在与通道当前音色不同时）与起音在同一临界区内完成。program 为 -1 时不切换音色（打击乐）。
+     * gateNanos 大于 0 时预约与这次起音绑定的释放（同 note），为 0 时只有打击乐按默认门限释放。
+     */
+    public void sendHit(int channel, int program, int note, int velocity){ sendHit(channel, program, note, velocity, 0); }
+
+    public void sendHit(int channel, int program, int note, int velocity, long gateNanos){
+        synchronized (voices){
+            if(program >= 0) send(ShortMessage.PROGRAM_CHANGE, channel, program, 0, -1);
+            send(ShortMessage.NOTE_ON, channel, note, velocity, -1, System.nanoTime(), gateNanos);
+        }
+    }
+
+    /** 丢弃所有尚未分发的事件 */
+    public void clear(){
+        synchronized (lock){ Event ev; while((ev = queue.poll()) != null) recycle(ev); }
+    }
+
+    /** 静音：撤销尚未分发的音符事件（保留生成器回调），并为所有发声中的音补发 noteOff */
+    public void silence(){
+        synchronized (lock){ queue.removeIf(ev -> { if(ev.command == CALLBACK) return false; recycle(ev); return true; }); }
+        synchronized (voices){ voices.releaseAll((ch, note) -> emit(ShortMessage.NOTE_OFF, ch, note, 0, -1)); }
+    }
+
+    /** 合成器关闭后重新打开：改发往新的 Receiver；新合成器各通道音色已复位，音色记录一并清空 */
+    public void reconnect(Receiver receiver){
+        synchronized (voices){ this.receiver = receiver; Arrays.fill(programs, -1); }
+    }
+
+    public VoiceAllocator getVoices(){ return voices; }
+    public int pendingCount(){ synchronized (lock){ return queue.size(); } }
+    /** 还能容纳 events 个事件时返回 true，供调用方在生成整段模式前做背压判断 */
+    public boolean hasCapacity(int events){ synchronized (lock){ return queue.size() + events <= capacity; } }
+    public long getDroppedCount(){ return droppedCount; }
+    public long getMaxLatenessMicros(){ return maxLatenessNanos / 1000; }
+    public double getMeanLatenessMicros(){ long n = dispatchedCount; synchronized (lock){ return n==0 ? 0 : latenessSumNanos / 1000.0 / n; } }
+    public long getDispatchedCount(){ return dispatchedCount; }
+    public long getSkippedProgramChanges(){ return skippedProgramChanges; }
+    public void resetStats(){ synchronized (lock){ latenessSumNanos = 0; } maxLatenessNanos = 0; dispatchedCount = 0; }
+
+    public void shutdown(){
+        running = false;
+        silence();
+        clear();
+        dispatcher.interrupt();
+    }
+
+    private void dispatchLoop(){
+        long lead = timestamped ? LOOKAHEAD_NANOS : 0;
+        long spin = timestamped ? 0 : SPIN_NANOS; // 带时间戳时 send 按剩余时间推迟时间戳，唤醒误差由合成器吸收，直接等到截止时刻
+        while(running){
+            Event ev; long spinUntil = 0;
+            try {
+                synchronized (lock){
+                    Event head = queue.peek();
+                    if(head == null){ lock.wait(); continue; }
+                    long remain = head.dueNanos - lead - System.nanoTime();
+                    if(remain > spin){ TimeUnit.NANOSECONDS.timedWait(lock, remain - spin); continue; }
+                    if(remain > 0){ ev = null; spinUntil = head.dueNanos - lead; }
+                    else ev = queue.poll();
+                }
+            } catch (InterruptedException e){ break; }
+            if(ev == null){ while(System.nanoTime() - spinUntil < 0) Thread.onSpinWait(); continue; } // 在锁外自旋，不反复抢锁
+            long now = System.nanoTime();
+            long late = now - (ev.dueNanos - lead);
+            if(ev.command == CALLBACK){
+                try { ev.callback.run(); } catch (RuntimeException e){ LOGGER.log(Level.WARNING, "MIDI 生成器回调异常", e); }
+            } else {
+                long ts = -1;
+                if(timestamped){ long micros = synthesizer.getMicrosecondPosition(); if(micros >= 0) ts = micros + Math.max(0, ev.dueNanos - now) / 1000; }
+                send(ev.command, ev.channel, ev.data1, ev.data2, ts, ev.dueNanos, ev.arg);
+            }
+            synchronized (lock){
+                latenessSumNanos += late;
+                recycle(ev);
+            }
+            if(late > maxLatenessNanos) maxLatenessNanos = late;
+            PerfMetrics.global().record(PerfMetrics.Metric.AUDIO_LAG, late);
+            dispatchedCount++;
+        }
+    }
+
+    private void recycle(Event ev){ ev.callback = null; pool.offerFirst(ev); }
+
+    private void send(int command, int channel, int d1, int d2, long timeStamp){ send(command, channel, d1, d2, timeStamp, System.nanoTime(), 0); }
+
+    // dueNanos 为该事件的目标时刻（绑定的释放由此起算）；arg 对 NOTE_ON 为门限时长，对 GATE_OFF 为对应起音的序号
+    private void send(int command, int channel, int d1, int d2, long timeStamp, long dueNanos, long arg){
+        synchronized (voices){ // 登记与发送在同一临界区，避免跨线程的起音/释放乱序
+            if(command == ShortMessage.PROGRAM_CHANGE && channel >= 0 && channel < programs.length){
+                if(programs[channel] == d1){ skippedProgramChanges++; return; } // 音色未变，省掉一次合成器调用
+                programs[channel] = d1;
+            } else if(command == ShortMessage.NOTE_ON && d2 > 0){
+                int stolen = voices.noteOn(channel, d1, d2);
+                if(stolen >= 0) emit(ShortMessage.NOTE_OFF, stolen >> 7, stolen & 127, 0, timeStamp);
+                long gate = arg > 0 ? arg : channel == PERCUSSION_CHANNEL ? PERCUSSION_GATE_NANOS : 0;
+                if(gate > 0) schedule(dueNanos + gate, GATE_OFF, channel, d1, 0, null, voices.startSeq(channel, d1));
+            } else if(command == GATE_OFF){
+                if(!voices.noteOff(channel, d1, arg)) return; // 已被重击、抢占或释放
+                command = ShortMessage.NOTE_OFF;
+            } else if(command == ShortMessage.NOTE_OFF || command == ShortMessage.NOTE_ON){
+                if(!voices.noteOff(channel, d1)) return; // 已被抢占或重复释放
+                command = ShortMessage.NOTE_OFF; d2 = 0;
+            }
+            emit(command, channel, d1, d2, timeStamp);
+        }
+    }
+
+    private void emit(int command, int channel, int d1, int d2, long timeStamp){
+        if(receiver == null) return;
+        try {
+            receiver.send(new ShortMessage(command, channel, d1, d2), timeStamp);
+        } catch (InvalidMidiDataException e){
+            LOGGER.log(Level.FINE, "无效 MIDI 事件", e);
+        } catch (IllegalStateException ignored){} // 合成器已关闭
+    }
+}
@@ -1,10 +1,15 @@
 package org.example;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.util.Random;
 
 public class NeuralCoreBoss implements BossEntity {
     private int health; private final int maxHealth; private final String name; private long t=0; private final Random r=new Random();
+    private static final Font NAME_FONT = new Font("Monospaced", Font.BOLD, 22);
+    private static final BasicStroke RING_STROKE = new BasicStroke(3f);
+    private static final Color GRID = new Color(180,240,255,150);
+    private static BufferedImage coreGlow; // 核心光晕内容固定，预渲染一次
     public NeuralCoreBoss(int hp,String name){ this.health=hp; this.maxHealth=hp; this.name=name; }
     public void update(long dt){ t+=dt; }
     public void takeDamage(int dmg){ health=Math.max(0, health-dmg); }
@@ -12,26 +17,25 @@ public class NeuralCoreBoss implements BossEntity {
     public int getHealth(){ return health; }
     public int getMaxHealth(){ return maxHealth; }
     public String getName(){ return name; }
+    @Override public void addDirtyBounds(DirtyRegions dirty, int cx, int cy){ dirty.addCircle(cx, cy, 185); } // 外层脉冲环最大 1.2 倍半径
     public void draw(Graphics2D g,int cx,int cy){
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         double hpPct = health/(double)maxHealth;
         int radius = 150;
         // 外层脉冲环
+        g.setStroke(RING_STROKE);
         for(int layer=0; layer<5; layer++){
             double phase = (t/400.0 + layer*0.6)%1.0;
             int alpha = (int)(120*(1-phase));
             int rr = (int)(radius * (0.4 + phase*0.8));
             g.setColor(new Color(120, (int)(200*hpPct), 255, alpha));
-            g.setStroke(new BasicStroke(3f));
             g.drawOval(cx-rr, cy-rr, rr*2, rr*2);
         }
         // 核心发光
-        RadialGradientPaint rg = new RadialGradientPaint(new Point(cx,cy), radius/2f,
-                new float[]{0f,0.5f,1f}, new Color[]{ new Color(255,255,255,220), new Color(100,200,255,160), new Color(10,30,50,0)});
-        g.setPaint(rg);
-        g.fillOval(cx-radius/2, cy-radius/2, radius, radius);
+        if(coreGlow == null) coreGlow = SpriteAtlas.radial(new float[]{0f,0.5f,1f}, new Color[]{ new Color(255,255,255,220), new Color(100,200,255,160), new Color(10,30,50,0)});
+        SpriteAtlas.drawScaled(g, coreGlow, cx, cy, radius/2);
         // 网格神经线路
-        g.setColor(new Color(180,240,255,150));
+        g.setColor(GRID);
         int grid = 8;
         for(int i=-grid;i<=grid;i++){
             int x = cx + i*15;
@@ -48,7 +52,7 @@ public class NeuralCoreBoss implements BossEntity {
         }
         // 名称
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Monospaced", Font.BOLD, 22));
+        g.setFont(NAME_FONT);
         g.drawString("NEURAL CORE", cx-90, cy - radius/2 - 20);
     }
 }
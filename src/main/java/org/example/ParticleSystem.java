@@ -0,0 +1,104 @@
+package org.example;
+
+import java.awt.*;
+
+/**
+ * 全局粒子系统：结构数组（float[] 位置/速度/寿命/尺寸 + 打包 ARGB），空闲槽位用栈管理。
+ * 发射器只写入槽位，一个紧凑循环统一推进全部粒子，绘制走 SpriteAtlas 贴图；预算固定，稳定运行后每帧零分配。
+ * 只在模拟线程（持有 worldLock）上更新，渲染端在同一把锁下绘制。
+ */
+public class ParticleSystem {
+    public static final int DEFAULT_BUDGET = Integer.getInteger("codesymphony.particles.max", 8192);
+    private static final float GRAVITY = 40f; // 像素/秒²
+    private static final ParticleSystem GLOBAL = new ParticleSystem(DEFAULT_BUDGET);
+
+    private final int capacity;
+    private final float[] x, y, vx, vy, life, maxLife, size;
+    private final int[] argb;
+    private final int[] freeStack; // 空闲槽位（high 以下被回收的下标）
+    private int freeTop = 0;
+    private int high = 0; // 使用过的最高下标 + 1；更新与绘制只扫描 [0, high)
+    private int alive = 0;
+    private long dropped = 0;
+    private final ChunkedUpdate parallel = new ChunkedUpdate(ChunkedUpdate.DEFAULT_THRESHOLD);
+    private final ChunkedUpdate.RangeBody advanceBody = this::advance;
+    private float stepDt; // 本次 update 的步长（毫秒），供并行区间读取
+    private float minX, minY, maxX, maxY; // 存活粒子的包围盒（回收时顺带统计）
+
+    public ParticleSystem(int capacity){
+        this.capacity = capacity;
+        x = new float[capacity]; y = new float[capacity]; vx = new float[capacity]; vy = new float[capacity];
+        life = new float[capacity]; maxLife = new float[capacity]; size = new float[capacity];
+        argb = new int[capacity]; freeStack = new int[capacity];
+    }
+
+    public static ParticleSystem global(){ return GLOBAL; }
+
+    /** 发射一个粒子；超出预算时丢弃并返回 false */
+    public boolean emit(float px, float py, float pvx, float pvy, float lifeMs, float psize, int color){
+        int i;
+        if(freeTop > 0) i = freeStack[--freeTop];
+        else if(high < capacity) i = high++;
+        else { dropped++; return false; }
+        x[i] = px; y[i] = py; vx[i] = pvx; vy[i] = pvy; life[i] = 0; maxLife[i] = lifeMs; size[i] = psize; argb[i] = color;
+        if(alive++ == 0){ minX = maxX = px; minY = maxY = py; }
+        else { minX = Math.min(minX, px); maxX = Math.max(maxX, px); minY = Math.min(minY, py); maxY = Math.max(maxY, py); }
+        return true;
+    }
+
+    /** 推进全部粒子（数量超过阈值时分块并行），随后串行回收到期的槽位 */
+    public void update(long dt){
+        if(alive == 0) return;
+        stepDt = dt;
+        parallel.run(high, advanceBody);
+        float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+        for(int i=0;i<high;i++){
+            if(maxLife[i] <= 0) continue;
+            if(life[i] > maxLife[i]){ maxLife[i] = 0; freeStack[freeTop++] = i; alive--; continue; }
+            float px = x[i], py = y[i];
+            if(px < x0) x0 = px; if(px > x1) x1 = px; if(py < y0) y0 = py; if(py > y1) y1 = py;
+        }
+        minX = x0; minY = y0; maxX = x1; maxY = y1;
+        if(alive == 0){ high = 0; freeTop = 0; } // 全部消亡时整体复位，下一轮扫描范围最小
+    }
+
+    // 并行区间体：只写 [from, to) 内的粒子
+    private void advance(int from, int to){
+        float dtf = stepDt, dts = dtf / 1000f;
+        for(int i=from;i<to;i++){
+            if(maxLife[i] <= 0) continue;
+            life[i] += dtf; x[i] += vx[i] * dts; y[i] += vy[i] * dts; vy[i] += GRAVITY * dts;
+        }
+    }
+
+    /** 用预光栅化圆点贴图批量绘制；透明度按量化档位切换，只在档位变化时设置 Composite */
+    public void draw(Graphics2D g){
+        if(alive == 0) return;
+        Composite old = g.getComposite(), last = null;
+        for(int i=0;i<high;i++){
+            float ml = maxLife[i];
+            if(ml <= 0) continue;
+            AlphaComposite ac = SpriteAtlas.alpha(1f - life[i] / ml);
+            if(ac.getAlpha() <= 0f) continue;
+            if(ac != last){ g.setComposite(ac); last = ac; }
+            float s = size[i];
+            g.drawImage(SpriteAtlas.dot(argb[i], (int)s), (int)(x[i] - s/2), (int)(y[i] - s/2), null);
+        }
+        g.setComposite(old);
+    }
+
+    /** 存活粒子的包围盒并入脏区域（外扩最大粒子尺寸） */
+    public void addDirtyBounds(DirtyRegions dirty){
+        if(alive == 0 || maxX < minX) return;
+        dirty.add((int)minX - 10, (int)minY - 10, (int)(maxX - minX) + 21, (int)(maxY - minY) + 21);
+    }
+
+    public void clear(){
+        for(int i=0;i<high;i++) maxLife[i] = 0;
+        high = 0; freeTop = 0; alive = 0;
+    }
+
+    public int getAlive(){ return alive; }
+    public int getCapacity(){ return capacity; }
+    public long getDropped(){ return dropped; }
+}
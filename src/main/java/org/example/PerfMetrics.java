@@ -0,0 +1,172 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内性能记录：各阶段耗时写入对数分桶直方图（HDR 风格，约 3% 精度，零分配），每秒滚动一个窗口，
+ * 窗口结束时计算 p50/p95/p99/max 并保存到定长历史，供 F3 HUD 显示与 CSV 导出。
+ * 记录端（模拟线程、绘制线程、MIDI 分发线程）各自只做原子自增；滚动与读取在同一把锁下进行。
+ */
+public final class PerfMetrics {
+    /** 计时指标；KEY_TO_NOTE 为按键事件到击打 noteOn 发出，KEY_TO_RENDER 为按键事件到合成器渲染出该音（仅预渲染模式可测） */
+    public enum Metric { FRAME, PAINT, TICK, EFFECTS, PROJECTILES, BOSS, SKILL, AUDIO_LAG, KEY_TO_NOTE, KEY_TO_RENDER }
+
+    public static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final int HISTORY = Integer.getInteger("codesymphony.perf.history", 300); // 保留的窗口数（秒）
+    private static final int SUB_BUCKETS = 32, HALF = SUB_BUCKETS / 2, BUCKETS = 400;
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+    private static final int COLS = 4; // 每个指标：p50、p95、p99、max（毫秒）
+    private static final PerfMetrics GLOBAL = new PerfMetrics();
+
+    /** 对数分桶直方图：微秒值小于 32 时逐一计数，之后每翻一倍分 16 档 */
+    static final class Histogram {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+        private final long[] window = new long[BUCKETS];
+        private long windowMax, windowCount;
+
+        void record(long nanos){
+            long micros = Math.max(0, nanos / 1000);
+            counts.incrementAndGet(index(micros));
+            if(micros > max.get()) max.accumulateAndGet(micros, Math::max);
+        }
+
+        // 取走当前计数作为一个完整窗口
+        void roll(){
+            windowCount = 0;
+            for(int i=0;i<BUCKETS;i++){ long c = counts.getAndSet(i, 0); window[i] = c; windowCount += c; }
+            windowMax = max.getAndSet(0);
+        }
+
+        double percentileMs(double q){
+            if(windowCount == 0) return 0;
+            long target = Math.max(1, (long)Math.ceil(q * windowCount)), seen = 0;
+            for(int i=0;i<BUCKETS;i++){ seen += window[i]; if(seen >= target) return Math.min(windowMax, midpoint(i)) / 1000.0; }
+            return windowMax / 1000.0;
+        }
+
+        static int index(long micros){
+            if(micros < SUB_BUCKETS) return (int)micros;
+            int shift = 63 - Long.numberOfLeadingZeros(micros) - 4; // 右移后落在 [HALF, SUB_BUCKETS)
+            int idx = SUB_BUCKETS + (shift - 1) * HALF + (int)(micros >>> shift) - HALF;
+            return Math.min(BUCKETS - 1, idx);
+        }
+
+        static long midpoint(int idx){
+            if(idx < SUB_BUCKETS) return idx;
+            int shift = (idx - SUB_BUCKETS) / HALF + 1;
+            long sub = (idx - SUB_BUCKETS) % HALF + HALF;
+            return (sub << shift) + (1L << shift) / 2;
+        }
+    }
+
+    private final Histogram[] histograms = new Histogram[Metric.values().length];
+    private volatile int effects, particles, projectiles;
+    // 分配速率：按线程 ID 汇总 ThreadMXBean 的累计分配字节
+    private final com.sun.management.ThreadMXBean threadBean;
+    private long[] threadIds = new long[0];
+    private long lastAllocBytes = -1;
+    // 窗口历史：[时间戳毫秒, 每指标 p50/p95/p99/max, 特效数, 粒子数, 投射物数, 分配 MB/s]
+    private final double[][] history;
+    private int historyHead = 0, historySize = 0;
+    private volatile long windowStart = System.nanoTime();
+    private double allocMBps;
+
+    public PerfMetrics(){
+        for(int i=0;i<histograms.length;i++) histograms[i] = new Histogram();
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        threadBean = bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) bean : null;
+        history = new double[HISTORY][1 + Metric.values().length * COLS + 4];
+    }
+
+    public static PerfMetrics global(){ return GLOBAL; }
+
+    public void record(Metric m, long nanos){ histograms[m.ordinal()].record(nanos); }
+
+    public void setCounts(int effects, int particles, int projectiles){ this.effects = effects; this.particles = particles; this.projectiles = projectiles; }
+
+    /** 把线程纳入分配速率统计（模拟线程、EDT、渲染线程） */
+    public synchronized void registerThread(Thread t){
+        long id = t.getId();
+        for(long existing: threadIds) if(existing == id) return;
+        threadIds = java.util.Arrays.copyOf(threadIds, threadIds.length + 1);
+        threadIds[threadIds.length - 1] = id;
+        lastAllocBytes = -1;
+    }
+
+    /** 距上次滚动超过一个窗口时结算（可在任意线程频繁调用，未到期时只读一次时间） */
+    public void maybeRoll(long nowNanos){
+        if(nowNanos - windowStart < WINDOW_NANOS) return;
+        synchronized (this){
+            if(nowNanos - windowStart < WINDOW_NANOS) return;
+            double seconds = (nowNanos - windowStart) / 1e9;
+            windowStart = nowNanos;
+            long alloc = allocatedBytes();
+            allocMBps = lastAllocBytes < 0 || alloc < 0 ? 0 : (alloc - lastAllocBytes) / seconds / (1024 * 1024);
+            lastAllocBytes = alloc;
+            double[] row = history[historyHead];
+            row[0] = System.currentTimeMillis();
+            int c = 1;
+            for(Histogram h: histograms){
+                h.roll();
+                for(double q: QUANTILES) row[c++] = h.percentileMs(q);
+                row[c++] = h.windowMax / 1000.0;
+            }
+            row[c++] = effects; row[c++] = particles; row[c++] = projectiles; row[c] = allocMBps;
+            historyHead = (historyHead + 1) % HISTORY;
+            if(historySize < HISTORY) historySize++;
+        }
+    }
+
+    private long allocatedBytes(){
+        if(threadBean == null || threadIds.length == 0) return -1;
+        long sum = 0;
+        for(long b: threadBean.getThreadAllocatedBytes(threadIds)) if(b > 0) sum += b;
+        return sum;
+    }
+
+    /** 最近一个完整窗口的分位数（毫秒），q 取 0.5 / 0.95 / 0.99，其余值取 max */
+    public synchronized double lastWindowMs(Metric m, double q){
+        if(historySize == 0) return 0;
+        double[] row = history[(historyHead - 1 + HISTORY) % HISTORY];
+        int base = 1 + m.ordinal() * COLS;
+        for(int i=0;i<QUANTILES.length;i++) if(QUANTILES[i] == q) return row[base + i];
+        return row[base + COLS - 1];
+    }
+
+    public double getAllocMBps(){ return allocMBps; }
+    public int getEffects(){ return effects; }
+    public int getParticles(){ return particles; }
+    public int getProjectiles(){ return projectiles; }
+
+    /** 把历史窗口写成 CSV（每行一秒） */
+    public void exportCsv(Path file) throws IOException {
+        double[][] rows; int n;
+        synchronized (this){
+            n = historySize; rows = new double[n][];
+            for(int i=0;i<n;i++) rows[i] = history[(historyHead - n + i + HISTORY) % HISTORY].clone();
+        }
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            StringBuilder sb = new StringBuilder("epoch_ms");
+            for(Metric m: Metric.values()){ String k = m.name().toLowerCase(Locale.ROOT); sb.append(',').append(k).append("_p50_ms,").append(k).append("_p95_ms,").append(k).append("_p99_ms,").append(k).append("_max_ms"); }
+            sb.append(",effects,particles,projectiles,alloc_mb_per_s\n");
+            w.write(sb.toString());
+            for(double[] row: rows){
+                sb.setLength(0);
+                sb.append((long)row[0]);
+                for(int i=1;i<row.length;i++) sb.append(',').append(String.format(Locale.ROOT, "%.3f", row[i]));
+                sb.append('\n');
+                w.write(sb.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.example;
+
+import java.awt.Color;
+
+/**
+ * 投射物池：固定容量的结构数组（位置/上一 tick 位置/目标/速度/伤害/颜色），
+ * 每个投射物一段定长环形缓冲保存拖尾采样；命中后与末尾元素交换删除。生成、推进、删除都不分配对象。
+ * 模拟线程持有一份实时数据，快照端各持一份副本（copyFrom），渲染线程只读副本。
+ */
+public class ProjectileStore {
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("codesymphony.projectiles.max", 256);
+    public static final int MAX_TRAIL = 12;
+
+    private final int capacity;
+    private final float[] x, y, px, py, tx, ty, speed;
+    private final int[] damage;
+    private final Color[] color;
+    private final boolean[] hit;
+    private final int[] trailX, trailY; // 第 i 个投射物的拖尾占 [i*MAX_TRAIL, (i+1)*MAX_TRAIL)
+    private final int[] trailHead, trailLen; // 最新采样所在位置 / 有效采样数
+    private int count = 0;
+    private long dropped = 0;
+
+    public ProjectileStore(int capacity){
+        this.capacity = capacity;
+        x = new float[capacity]; y = new float[capacity]; px = new float[capacity]; py = new float[capacity];
+        tx = new float[capacity]; ty = new float[capacity]; speed = new float[capacity];
+        damage = new int[capacity]; color = new Color[capacity]; hit = new boolean[capacity];
+        trailX = new int[capacity * MAX_TRAIL]; trailY = new int[capacity * MAX_TRAIL];
+        trailHead = new int[capacity]; trailLen = new int[capacity];
+    }
+
+    /** 生成一个投射物；池满时返回 false（调用方直接结算伤害） */
+    public boolean spawn(float sx, float sy, float targetX, float targetY, float spd, int dmg, Color c){
+        if(count == capacity){ dropped++; return false; }
+        int i = count++;
+        x[i] = px[i] = sx; y[i] = py[i] = sy; tx[i] = targetX; ty[i] = targetY; speed[i] = spd;
+        damage[i] = dmg; color[i] = c; hit[i] = false; trailHead[i] = 0; trailLen[i] = 0;
+        return true;
+    }
+
+    /** 推进 [from, to) 内的投射物；只写该区间，可分块并行调用 */
+    public void move(int from, int to, float dtSec, boolean sampleTrail, int maxTrail){
+        for(int i=from;i<to;i++){
+            if(hit[i]) continue;
+            px[i] = x[i]; py[i] = y[i];
+            float dx = tx[i] - x[i], dy = ty[i] - y[i];
+            float dist = (float)Math.sqrt(dx*dx + dy*dy);
+            float step = speed[i] * dtSec;
+            if(step >= dist){ x[i] = tx[i]; y[i] = ty[i]; hit[i] = true; }
+            else { x[i] += dx/dist * step; y[i] += dy/dist * step; }
+            if(!sampleTrail) continue;
+            int head = (trailHead[i] + 1) % MAX_TRAIL, base = i * MAX_TRAIL;
+            trailX[base + head] = (int)x[i]; trailY[base + head] = (int)y[i];
+            trailHead[i] = head;
+            trailLen[i] = Math.min(maxTrail, trailLen[i] + 1);
+        }
+    }
+
+    /** 删除已命中的投射物：末尾元素换入空位 */
+    public void removeHits(){
+        for(int i=0;i<count;){
+            if(hit[i]) moveLast(i); else i++;
+        }
+    }
+
+    private void moveLast(int i){
+        int last = --count;
+        if(i != last){
+            x[i] = x[last]; y[i] = y[last]; px[i] = px[last]; py[i] = py[last];
+            tx[i] = tx[last]; ty[i] = ty[last]; speed[i] = speed[last];
+            damage[i] = damage[last]; color[i] = color[last]; hit[i] = hit[last];
+            System.arraycopy(trailX, last * MAX_TRAIL, trailX, i * MAX_TRAIL, MAX_TRAIL);
+            System.arraycopy(trailY, last * MAX_TRAIL, trailY, i * MAX_TRAIL, MAX_TRAIL);
+            trailHead[i] = trailHead[last]; trailLen[i] = trailLen[last];
+        }
+        color[last] = null;
+    }
+
+    /** 截短所有拖尾（降到低画质时） */
+    public void trimTrails(int maxTrail){ for(int i=0;i<count;i++) trailLen[i] = Math.min(trailLen[i], maxTrail); }
+
+    /** 复制另一份池的全部内容（快照发布），只拷贝有效区间 */
+    public void copyFrom(ProjectileStore o){
+        int n = Math.min(o.count, capacity);
+        System.arraycopy(o.x, 0, x, 0, n); System.arraycopy(o.y, 0, y, 0, n);
+        System.arraycopy(o.px, 0, px, 0, n); System.arraycopy(o.py, 0, py, 0, n);
+        System.arraycopy(o.tx, 0, tx, 0, n); System.arraycopy(o.ty, 0, ty, 0, n); System.arraycopy(o.speed, 0, speed, 0, n);
+        System.arraycopy(o.damage, 0, damage, 0, n); System.arraycopy(o.hit, 0, hit, 0, n);
+        System.arraycopy(o.trailX, 0, trailX, 0, n * MAX_TRAIL); System.arraycopy(o.trailY, 0, trailY, 0, n * MAX_TRAIL);
+        System.arraycopy(o.trailHead, 0, trailHead, 0, n); System.arraycopy(o.trailLen, 0, trailLen, 0, n);
+        System.arraycopy(o.color, 0, color, 0, n);
+        for(int i=n;i<count;i++) color[i] = null;
+        count = n;
+    }
+
+    /** 投射物（含拖尾与上一 tick 位置）的包围盒并入脏区域 */
+    public void addDirtyBounds(DirtyRegions dirty){
+        for(int i=0;i<count;i++){
+            float x0 = Math.min(px[i], x[i]), x1 = Math.max(px[i], x[i]), y0 = Math.min(py[i], y[i]), y1 = Math.max(py[i], y[i]);
+            for(int k=0;k<trailLen[i];k++){ int tX = trailX(i, k), tY = trailY(i, k); x0 = Math.min(x0, tX); x1 = Math.max(x1, tX); y0 = Math.min(y0, tY); y1 = Math.max(y1, tY); }
+            dirty.add((int)x0 - 8, (int)y0 - 8, (int)(x1 - x0) + 17, (int)(y1 - y0) + 17);
+        }
+    }
+
+    public void clear(){ for(int i=0;i<count;i++) color[i] = null; count = 0; }
+
+    public int size(){ return count; }
+    public boolean isEmpty(){ return count == 0; }
+    public int getCapacity(){ return capacity; }
+    public long getDropped(){ return dropped; }
+    public boolean isHit(int i){ return hit[i]; }
+    public int damage(int i){ return damage[i]; }
+    public Color color(int i){ return color[i]; }
+    public float x(int i){ return x[i]; }
+    public float y(int i){ return y[i]; }
+    public float prevX(int i){ return px[i]; }
+    public float prevY(int i){ return py[i]; }
+    public int trailLen(int i){ return trailLen[i]; }
+    /** 第 k 新的拖尾采样（k = 0 为最新） */
+    public int trailX(int i, int k){ return trailX[i * MAX_TRAIL + (trailHead[i] - k + MAX_TRAIL) % MAX_TRAIL]; }
+    public int trailY(int i, int k){ return trailY[i * MAX_TRAIL + (trailHead[i] - k + MAX_TRAIL) % MAX_TRAIL]; }
+}
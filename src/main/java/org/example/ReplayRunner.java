@@ -0,0 +1,158 @@
+package org.example;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 回放输入录制：用手动时钟和录制时的随机种子重建 GameSimulation 与特效，在原 tick 投递录制的命令，
+ * 每两个 tick（约 60Hz）把 Boss、特效、粒子、投射物画到离屏图像，统计模拟步与绘制耗时以及分配量。
+ * 用法：java -Djava.awt.headless=true org.example.ReplayRunner 录制文件 [--realtime] [--no-render] [--report=frames.csv]
+ * 默认尽快跑完；--realtime 按录制时的节奏推进；--no-render 只跑模拟（无界面环境下软件绘制占大头）。
+ * 结尾打印的 fingerprint 两次回放应一致。录制时游戏固定 HIGH 画质，回放的特效与粒子数量与录制时相同。
+ */
+public class ReplayRunner {
+    private static final int FRAME_EVERY_TICKS = 2;
+
+    /** 回放结果：每帧（两个 tick + 一次绘制）的耗时与分配 */
+    static final class Report {
+        long[] tickNanos, renderNanos, allocBytes; int frames;
+        long wallNanos, totalAlloc; int peakEffects, peakParticles, peakProjectiles;
+        String fingerprint;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0){ System.err.println("usage: ReplayRunner <recording.csir> [--realtime] [--no-render] [--report=frames.csv]"); System.exit(2); }
+        System.setProperty("java.awt.headless", "true");
+        boolean realtime = false, draw = true; Path reportFile = null;
+        for(int i=1;i<args.length;i++){
+            if(args[i].equals("--realtime")) realtime = true;
+            else if(args[i].equals("--no-render")) draw = false;
+            else if(args[i].startsWith("--report=")) reportFile = Paths.get(args[i].substring("--report=".length()));
+        }
+        InputRecording rec = InputRecording.read(Paths.get(args[0]));
+        Report r = replay(rec, realtime, draw);
+        printSummary(rec, r);
+        if(reportFile != null) writeCsv(r, reportFile);
+    }
+
+    static Report replay(InputRecording rec, boolean realtime, boolean draw){
+        AttackEffects.seedRandom(rec.effectsSeed);
+        ParticleSystem.global().clear();
+        HeadlessSimulationRunner.ManualClock clock = new HeadlessSimulationRunner.ManualClock(0);
+        GameSimulation sim = new GameSimulation(GameSimulation.createBosses(), GameSimulation.createInstruments(), clock, rec.simSeed);
+        sim.restore(rec.initial);
+        List<AttackEffects.AttackEffect> effects = new ArrayList<>();
+        SimulationEffects fx = new SimulationEffects(effects); // 录制期间画质固定 HIGH：密度 1.0、拖尾上限为默认值
+        sim.setEffectsSink(fx);
+        int w = rec.viewW, h = rec.viewH;
+        BufferedImage canvas = null; Graphics2D g = null;
+        long ticks = rec.getTotalTicks(), dt = rec.tickMs;
+        int maxFrames = (int)(ticks / FRAME_EVERY_TICKS) + 1;
+        Report r = new Report();
+        r.tickNanos = new long[maxFrames]; r.renderNanos = new long[maxFrames]; r.allocBytes = new long[maxFrames];
+        com.sun.management.ThreadMXBean mx = allocationBean();
+        long threadId = Thread.currentThread().getId();
+        long allocStart = mx != null ? mx.getThreadAllocatedBytes(threadId) : 0, allocMark = allocStart;
+        long start = System.nanoTime();
+        int next = 0, frame = 0;
+        for(long tick = 0; tick < ticks; tick++){
+            long t0 = System.nanoTime();
+            for(; next < rec.size() && rec.tick(next) == tick; next++){
+                switch(rec.type(next)){
+                    case InputRecording.TRIGGER -> sim.triggerInstrument(rec.arg(next));
+                    case InputRecording.SUPER -> sim.triggerSuperSkill();
+                    case InputRecording.COUNTER -> sim.attemptCounterResolve();
+                    case InputRecording.ADVANCE -> sim.advanceToNextBoss();
+                    case InputRecording.RESTART -> { sim.restart(); effects.clear(); ParticleSystem.global().clear(); }
+                    case InputRecording.RESIZE -> { w = rec.resizeWidth(next); h = rec.resizeHeight(next); }
+                    default -> {} // PRESS / RELEASE 只作记录，实际触发已单独录为 TRIGGER
+                }
+            }
+            sim.setViewSize(w, h); fx.setViewSize(w, h);
+            // 与游戏的模拟步相同的顺序：粒子与特效，随后投射物、Boss、规则
+            ParticleSystem.global().update(dt);
+            for(int i=effects.size()-1;i>=0;i--){ AttackEffects.AttackEffect ef = effects.get(i); ef.update(dt); if(!ef.isAlive()) effects.remove(i); }
+            sim.step(dt);
+            clock.advance(dt);
+            r.tickNanos[frame] += System.nanoTime() - t0;
+            if((tick + 1) % FRAME_EVERY_TICKS == 0 || tick + 1 == ticks){
+                if(draw && (canvas == null || canvas.getWidth() != w || canvas.getHeight() != h)){
+                    if(g != null) g.dispose();
+                    canvas = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB); g = canvas.createGraphics(); g.setClip(0, 0, w, h);
+                }
+                long t1 = System.nanoTime();
+                if(draw) render(g, sim, effects, w, h);
+                r.renderNanos[frame] = System.nanoTime() - t1;
+                if(mx != null){ long a = mx.getThreadAllocatedBytes(threadId); r.allocBytes[frame] = a - allocMark; allocMark = a; }
+                r.peakEffects = Math.max(r.peakEffects, effects.size());
+                r.peakParticles = Math.max(r.peakParticles, ParticleSystem.global().getAlive());
+                r.peakProjectiles = Math.max(r.peakProjectiles, sim.getProjectiles().size());
+                frame++;
+            }
+            if(realtime){ long due = start + (tick + 1) * dt * 1_000_000L; long wait = due - System.nanoTime(); if(wait > 0) LockSupport.parkNanos(wait); }
+        }
+        r.wallNanos = System.nanoTime() - start;
+        r.frames = frame;
+        r.totalAlloc = mx != null ? allocMark - allocStart : -1;
+        if(g != null) g.dispose();
+        r.fingerprint = sim.getCurrentBossIndex() + ":" + sim.getBoss().getHealth() + ":" + sim.getTotalScore() + ":" + sim.getComboCount() + ":" + (long)(sim.getSkillCharge() * 1000);
+        return r;
+    }
+
+    // 离屏绘制世界元素（HUD 与背景不在统计范围内）
+    private static void render(Graphics2D g, GameSimulation sim, List<AttackEffects.AttackEffect> effects, int w, int h){
+        g.setColor(Color.BLACK); g.fillRect(0, 0, w, h);
+        sim.getBoss().draw(g, w/2, h/3);
+        ProjectileStore ps = sim.getProjectiles();
+        for(int p=0;p<ps.size();p++) g.drawImage(SpriteAtlas.dot(ps.color(p).getRGB(), 12), (int)ps.x(p)-6, (int)ps.y(p)-6, null);
+        ParticleSystem.global().draw(g);
+        for(AttackEffects.AttackEffect ef: effects) ef.draw(g);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean(){
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    private static void printSummary(InputRecording rec, Report r){
+        long[] frameNanos = new long[r.frames];
+        for(int i=0;i<r.frames;i++) frameNanos[i] = r.tickNanos[i] + r.renderNanos[i];
+        double gameSec = rec.getTotalTicks() * rec.tickMs / 1000.0, wallSec = r.wallNanos / 1e9;
+        System.out.println(String.format(Locale.ROOT, "replay: %d ticks (%.1fs game time) in %.2fs wall, %.1fx, %d commands",
+                rec.getTotalTicks(), gameSec, wallSec, gameSec / wallSec, rec.size()));
+        System.out.println("frame  ms " + percentiles(frameNanos, r.frames));
+        System.out.println("tick   ms " + percentiles(r.tickNanos, r.frames));
+        System.out.println("render ms " + percentiles(r.renderNanos, r.frames));
+        if(r.totalAlloc >= 0) System.out.println(String.format(Locale.ROOT, "alloc: %.1f MB total, %.1f KB/frame, %.1f MB per game second",
+                r.totalAlloc / 1048576.0, r.frames == 0 ? 0 : r.totalAlloc / 1024.0 / r.frames, r.totalAlloc / 1048576.0 / gameSec));
+        System.out.println("peak: effects=" + r.peakEffects + " particles=" + r.peakParticles + " projectiles=" + r.peakProjectiles);
+        System.out.println("fingerprint " + r.fingerprint);
+    }
+
+    private static String percentiles(long[] nanos, int n){
+        if(n == 0) return "-";
+        long[] sorted = Arrays.copyOf(nanos, n); Arrays.sort(sorted);
+        return String.format(Locale.ROOT, "p50=%.3f p95=%.3f p99=%.3f max=%.3f",
+                sorted[(int)(0.50 * (n - 1))] / 1e6, sorted[(int)(0.95 * (n - 1))] / 1e6, sorted[(int)(0.99 * (n - 1))] / 1e6, sorted[n - 1] / 1e6);
+    }
+
+    private static void writeCsv(Report r, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("frame,tick_ms,render_ms,alloc_bytes\n");
+            for(int i=0;i<r.frames;i++) out.write(String.format(Locale.ROOT, "%d,%.4f,%.4f,%d%n", i, r.tickNanos[i] / 1e6, r.renderNanos[i] / 1e6, r.allocBytes[i]));
+        }
+    }
+}
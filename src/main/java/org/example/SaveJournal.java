@@ -0,0 +1,147 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 存档预写日志：每个事件追加一条定长小记录（伤害、回血、BPM、Boss 切换、设置），
+ * 启动时在最近一次快照之上重放 seq 更大的记录。记录先进入内存批次，由后台写线程批量落盘。
+ * <pre>记录 28 字节: seq(long) type(int) a(int) value(long) crc(int)</pre>
+ */
+public class SaveJournal {
+    public static final int DAMAGE = 1;      // a=bossIndex value=伤害（同时计入总分）
+    public static final int HEAL = 2;        // a=bossIndex value=回复量
+    public static final int BPM = 3;         // a=bpm
+    public static final int BOSS_SWITCH = 4; // a=新 Boss 索引
+    public static final int SETTINGS = 5;    // a=音量 value=BPM 上限
+
+    private static final int RECORD_SIZE = 28;
+    private static final int BATCH_RECORDS = 256;
+
+    private final Path path;
+    private final int snapshotEvery;
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(RECORD_SIZE * BATCH_RECORDS);
+    private final CRC32 crc = new CRC32();
+    private final byte[] crcScratch = new byte[RECORD_SIZE - 4];
+    private FileChannel channel;
+    private long seq; // 最近一次追加的序号
+    private int sinceSnapshot = 0;
+
+    SaveJournal(Path path, int snapshotEvery){ this.path = path; this.snapshotEvery = snapshotEvery; }
+
+    /** 追加一条记录（仅写入内存批次，不触碰磁盘）；批次满时由调用方线程直接落盘 */
+    public synchronized long append(int type, int a, long value){
+        if(!batch.hasRemaining()) flushBatch();
+        seq++; sinceSnapshot++;
+        int start = batch.position();
+        batch.putLong(seq).putInt(type).putInt(a).putLong(value);
+        batch.putInt(checksum(batch, start));
+        return seq;
+    }
+
+    /** 最近一次追加的序号；快照记录该值，重放时跳过已包含的记录 */
+    public synchronized long currentSeq(){ return seq; }
+    /** 距上次快照已累计 snapshotEvery 条记录时返回 true */
+    public synchronized boolean needsSnapshot(){ return sinceSnapshot >= snapshotEvery; }
+    public synchronized void markSnapshot(){ sinceSnapshot = 0; }
+
+    /** 把内存批次写入日志文件并刷盘 */
+    public synchronized void flush(){ flushBatch(); }
+
+    private void flushBatch(){
+        if(batch.position() == 0) return;
+        try {
+            FileChannel ch = channel();
+            batch.flip();
+            while(batch.hasRemaining()) ch.write(batch);
+            ch.force(false);
+        } catch (IOException ignored) {
+        } finally { batch.clear(); }
+    }
+
+    /** 快照已包含 snapshotSeq 及之前的记录：重写日志，只保留更新的记录 */
+    public synchronized void compact(long snapshotSeq){
+        flushBatch();
+        try {
+            long size = Files.exists(path) ? Files.size(path) : 0; // 按文件大小而非内存中的 seq：重放之前压缩时 seq 仍为 0
+            ByteBuffer keep = ByteBuffer.allocate((int)Math.min(Integer.MAX_VALUE - 8, size / RECORD_SIZE * RECORD_SIZE));
+            readRecords((s, type, a, value, rec) -> {
+                seq = Math.max(seq, s); // 之后追加的记录不会复用已有序号
+                if(s > snapshotSeq && keep.remaining() >= RECORD_SIZE) keep.put(rec);
+            });
+            keep.flip();
+            closeChannel();
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+                while(keep.hasRemaining()) out.write(keep);
+                out.force(false);
+            }
+            try { Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING); }
+            catch (AtomicMoveNotSupportedException e){ Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING); }
+        } catch (IOException ignored) {}
+    }
+
+    /** 在快照之上重放 seq 大于 snapshot.journalSeq 的记录；遇到损坏的尾部记录即停止 */
+    public synchronized void replay(SaveManager.SaveData d, double[] maxHealths){
+        long[] last = { d.journalSeq };
+        replayUnchecked((s, type, a, value, rec) -> {
+            if(s <= d.journalSeq) return;
+            apply(d, type, a, value, maxHealths);
+            last[0] = Math.max(last[0], s);
+        });
+        d.journalSeq = last[0];
+        seq = Math.max(seq, last[0]);
+    }
+
+    private static void apply(SaveManager.SaveData d, int type, int a, long value, double[] maxHealths){
+        switch (type){
+            case DAMAGE -> { if(a >= 0 && a < d.bossHealths.length){ d.bossHealths[a] = Math.max(0, d.bossHealths[a] - value); } d.totalScore += value; }
+            case HEAL -> { if(a >= 0 && a < d.bossHealths.length) d.bossHealths[a] = Math.min(maxHealths[a], d.bossHealths[a] + value); }
+            case BPM -> d.bpm = a;
+            case BOSS_SWITCH -> { d.currentBossIndex = a; d.comboCount = 0; d.skillCharge = 0; d.ultimateComboRemainMs = 0; }
+            case SETTINGS -> { d.volume = a; d.bpmMax = (int)value; }
+            default -> {}
+        }
+    }
+
+    private interface RecordVisitor { void visit(long seq, int type, int a, long value, ByteBuffer record); }
+
+    private void readRecords(RecordVisitor v) throws IOException {
+        if(!Files.exists(path)) return;
+        ByteBuffer all = ByteBuffer.wrap(Files.readAllBytes(path));
+        while(all.remaining() >= RECORD_SIZE){
+            int start = all.position();
+            long s = all.getLong(); int type = all.getInt(); int a = all.getInt(); long value = all.getLong(); int c = all.getInt();
+            if(c != checksum(all, start)) break; // 崩溃时写了一半的尾部
+            v.visit(s, type, a, value, all.duplicate().position(start).limit(start + RECORD_SIZE));
+        }
+    }
+
+    private void replayUnchecked(RecordVisitor v){ try { readRecords(v); } catch (IOException ignored) {} }
+
+    private int checksum(ByteBuffer b, int start){
+        for(int i=0;i<crcScratch.length;i++) crcScratch[i] = b.get(start + i);
+        crc.reset(); crc.update(crcScratch, 0, crcScratch.length);
+        return (int)crc.getValue();
+    }
+
+    private FileChannel channel() throws IOException {
+        if(channel == null) channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return channel;
+    }
+
+    private void closeChannel(){
+        if(channel == null) return;
+        try { channel.close(); } catch (IOException ignored) {}
+        channel = null;
+    }
+
+    public synchronized void close(){ flushBatch(); closeChannel(); }
+}
@@ -2,16 +2,28 @@ package org.example;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
-/** 简单存档管理：保存/读取 JSON（手写轻量实现，无第三方依赖） */
+/** 存档管理：内存映射二进制快照 + 预写日志，可导入旧版 JSON 存档（手写轻量实现，无第三方依赖） */
 public class SaveManager {
+    private static final Logger LOGGER = Logger.getLogger(SaveManager.class.getName());
     private static final String FILE_NAME = System.getProperty("user.home") + "/.code_symphony_save.json";
+    private static final String BINARY_FILE_NAME = System.getProperty("user.home") + "/.code_symphony_save.bin";
+    // -Dcodesymphony.save.format=json 时继续写旧版 JSON
+    private static final boolean LEGACY_JSON = "json".equalsIgnoreCase(System.getProperty("codesymphony.save.format"));
+    private static final String JOURNAL_FILE_NAME = System.getProperty("user.home") + "/.code_symphony_save.journal";
+    private static final int SNAPSHOT_EVERY = 200; // 每累计 200 条日志生成一次快照
+    private static BinarySaveStore store; // 懒打开，按 boss 数量固定布局
+    private static SaveJournal journal;
 
     public static class SaveData {
         public int currentBossIndex;
@@ -23,16 +35,91 @@ public class SaveManager {
         public long ultimateComboRemainMs; // 终极连击剩余
         public int volume = 100; // 新增
         public int bpmMax = 180; // 新增
+        public long journalSeq; // 快照已包含的最后一条日志序号
     }
 
-    public static void save(SaveData data) {
+    public static synchronized void save(SaveData data) {
+        if (LEGACY_JSON) { saveJson(data); journal().compact(data.journalSeq); return; }
+        try {
+            openStore(data.bossHealths.length).write(data);
+            journal().compact(data.journalSeq); // 快照落盘后丢弃已包含的日志
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "写入二进制存档失败", e);
+        }
+    }
+
+    /** 预写日志（单例） */
+    public static synchronized SaveJournal journal() {
+        if (journal == null) journal = new SaveJournal(Paths.get(JOURNAL_FILE_NAME), SNAPSHOT_EVERY);
+        return journal;
+    }
+
+    /** 先写临时文件再原子替换，写到一半崩溃也不会损坏旧存档 */
+    private static void saveJson(SaveData data) {
         try {
             String json = toJson(data);
-            Files.write(Paths.get(FILE_NAME), json.getBytes(StandardCharsets.UTF_8));
+            Path target = Paths.get(FILE_NAME);
+            Path tmp = Paths.get(FILE_NAME + ".tmp");
+            Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException ignored) {}
     }
 
-    public static SaveData load(int bossCount, double[] maxHealths) {
+    /** 读取最近快照并重放其后的日志；重放过记录或刚导入旧版 JSON 时立即生成新快照 */
+    public static synchronized SaveData load(int bossCount, double[] maxHealths) {
+        SaveData d = loadSnapshot(bossCount, maxHealths);
+        boolean migrate = false;
+        if (d == null) {
+            d = loadJson(bossCount, maxHealths);
+            migrate = d != null && !LEGACY_JSON; // 迁移：导入旧版 JSON 后写入二进制存档（须在重放之后，否则压缩会丢掉未重放的日志）
+        }
+        if (d == null) {
+            if (!Files.exists(Paths.get(JOURNAL_FILE_NAME))) return null;
+            d = new SaveData(); d.bpm = 120; d.bossHealths = maxHealths.clone(); // 从未生成快照：从初始状态重放
+        }
+        long before = d.journalSeq;
+        journal().replay(d, maxHealths);
+        if (d.currentBossIndex < 0 || d.currentBossIndex >= bossCount) d.currentBossIndex = 0;
+        if (d.journalSeq != before || migrate) save(d);
+        return d;
+    }
+
+    private static SaveData loadSnapshot(int bossCount, double[] maxHealths) {
+        if (!LEGACY_JSON && Files.exists(Paths.get(BINARY_FILE_NAME))) {
+            try {
+                SaveData d = openStore(bossCount).read();
+                if (d != null) {
+                    if (d.currentBossIndex < 0 || d.currentBossIndex >= bossCount) d.currentBossIndex = 0;
+                    for (int i = 0; i < d.bossHealths.length; i++) if (Double.isNaN(d.bossHealths[i])) d.bossHealths[i] = maxHealths[i]; // 迁移新增的 boss
+                    return d;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "读取二进制存档失败，尝试旧版 JSON", e);
+            }
+        }
+        return null;
+    }
+
+    /** 关闭二进制存档文件 */
+    public static synchronized void close() {
+        if (journal != null) journal.close();
+        if (store == null) return;
+        try { store.close(); } catch (IOException ignored) {}
+        store = null;
+    }
+
+    private static BinarySaveStore openStore(int bossCount) throws IOException {
+        if (store != null && store.getBossCount() == bossCount) return store;
+        close();
+        store = BinarySaveStore.open(Paths.get(BINARY_FILE_NAME), bossCount);
+        return store;
+    }
+
+    private static SaveData loadJson(int bossCount, double[] maxHealths) {
         Path p = Paths.get(FILE_NAME);
         if (!Files.exists(p)) return null;
         try {
@@ -57,6 +144,7 @@ public class SaveManager {
         sb.append("\"ultimateComboRemainMs\":").append(d.ultimateComboRemainMs).append(',');
         sb.append("\"volume\":").append(d.volume).append(',');
         sb.append("\"bpmMax\":").append(d.bpmMax).append(',');
+        sb.append("\"journalSeq\":").append(d.journalSeq).append(',');
         sb.append("\"bossHealths\":[");
         for(int i=0;i<d.bossHealths.length;i++){ if(i>0) sb.append(','); sb.append(String.format("%.0f", d.bossHealths[i])); }
         sb.append(']');
@@ -90,6 +178,7 @@ public class SaveManager {
         d.ultimateComboRemainMs = (long)extractNumber(s, "ultimateComboRemainMs", 0);
         d.volume = (int)extractNumber(s, "volume", 100);
         d.bpmMax = (int)extractNumber(s, "bpmMax", 180);
+        d.journalSeq = (long)extractNumber(s, "journalSeq", 0);
         if(d.bossHealths==null){
             d.bossHealths = maxHealths.clone();
         }
@@ -0,0 +1,78 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/** 后台存档写入：只保留最新快照，按最高频率合并写入，并定期把预写日志批次落盘；调用线程（EDT）从不触碰磁盘 */
+public class SaveWriter {
+    private static final long JOURNAL_FLUSH_NANOS = 250_000_000L; // 崩溃最多丢失这段时间内的日志
+    private static final long JOIN_MILLIS = 2000; // close 时等待写线程结束的上限（正在写盘时需等它写完）
+
+    /** 待写快照及其提交序号；写出时跳过不比已落盘序号新的快照 */
+    private static final class Pending {
+        final SaveManager.SaveData data; final long seq;
+        Pending(SaveManager.SaveData data, long seq){ this.data = data; this.seq = seq; }
+    }
+
+    private final AtomicReference<Pending> latest = new AtomicReference<>();
+    private final AtomicLong submitSeq = new AtomicLong();
+    private final Object writeLock = new Object();
+    private final long minIntervalNanos;
+    private final SaveJournal journal;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private long lastWriteNanos = 0;
+    private long persistedSeq = 0; // writeLock 保护
+
+    public SaveWriter(int maxWritesPerSecond, SaveJournal journal){
+        this.journal = journal;
+        this.minIntervalNanos = 1_000_000_000L / Math.max(1, maxWritesPerSecond);
+        thread = new Thread(this::writeLoop, "Save-Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** 提交最新存档快照；未写出的旧快照直接被覆盖 */
+    public void submit(SaveManager.SaveData data){
+        latest.set(new Pending(data, submitSeq.incrementAndGet()));
+        LockSupport.unpark(thread);
+    }
+
+    /** 同步写出尚未落盘的快照（用于 dispose） */
+    public void flush(){
+        if(journal != null) journal.flush();
+        Pending p = latest.getAndSet(null);
+        if(p != null) write(p);
+    }
+
+    /** 先停下并等待写线程（它可能已取走较旧的快照正在写），再在调用线程写出最后一份 */
+    public void close(){
+        running = false;
+        LockSupport.unpark(thread);
+        if(Thread.currentThread() != thread){
+            try { thread.join(JOIN_MILLIS); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+        }
+        flush();
+    }
+
+    private void writeLoop(){
+        while(running){
+            if(journal != null) journal.flush();
+            if(latest.get() == null){ LockSupport.parkNanos(this, JOURNAL_FLUSH_NANOS); continue; }
+            long wait = lastWriteNanos + minIntervalNanos - System.nanoTime();
+            if(wait > 0){ LockSupport.parkNanos(this, Math.min(wait, JOURNAL_FLUSH_NANOS)); continue; } // 限频：期间到达的快照被合并
+            Pending p = latest.getAndSet(null);
+            if(p != null) write(p);
+        }
+    }
+
+    private void write(Pending p){
+        synchronized (writeLock){
+            if(p.seq <= persistedSeq) return; // 已有更新的快照落盘（join 超时后写线程才写到这里）
+            SaveManager.save(p.data);
+            persistedSeq = p.seq;
+            lastWriteNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.example;
+
+import org.example.AttackEffects.AttackEffect;
+
+import java.awt.Color;
+import java.util.List;
+
+/** 规则核心的特效事件转换成具体特效（位置按当前画布，密度按画质）；游戏与回放共用 */
+public class SimulationEffects implements GameSimulation.EffectsSink {
+    private final List<AttackEffect> effects;
+    private int viewW = 900, viewH = 700;
+    private double density = 1.0;
+
+    public SimulationEffects(List<AttackEffect> effects){ this.effects = effects; }
+
+    public void setViewSize(int w, int h){ viewW = w; viewH = h; }
+    public void setDensity(double density){ this.density = density; }
+
+    @Override public void projectileHit(Color color){
+        effects.add(new AttackEffects.SuperFireworkEffect(viewW, viewH/2, color, density));
+    }
+    @Override public void counterAttack(long windowMs){
+        effects.add(new AttackEffects.ShockwaveEffect(viewW, viewH));
+        // 中央显示格挡提示 telegraph
+        effects.add(new AttackEffects.CircleTelegraphEffect(viewW/2, viewH/3, 300, windowMs, "SPACE"));
+    }
+    @Override public void bossSkill(GameSimulation.BossSkill skill, Color telegraph, long telegraphMs){
+        if(skill == GameSimulation.BossSkill.CORE_PULSE) effects.add(new AttackEffects.CorePulseEffect(viewW, viewH, new Color(120,200,255)));
+        effects.add(new AttackEffects.BlurTelegraphEffect(viewW/2, viewH/3, 260, telegraphMs, telegraph.brighter(), true));
+    }
+    @Override public void absorbReleased(){
+        effects.add(new AttackEffects.HealingBurstEffect(viewW, viewH, new Color(255,140,90), 0.35, 1200));
+        effects.add(new AttackEffects.HealingBurstEffect(viewW, viewH, new Color(255,200,140), 0.5, 900));
+        effects.add(new AttackEffects.HealingBurstEffect(viewW, viewH, new Color(255,255,200), 0.7, 700));
+    }
+    @Override public void ultimate(Instrument last){
+        effects.add(new AttackEffects.UltimateOverlayEffect(last.getColor(), 5000));
+        effects.add(new AttackEffects.HackOverlayEffect());
+        effects.add(last.getEffectType()== Instrument.EffectType.FIREWORK
+                ? new AttackEffects.SuperFireworkEffect(viewW, viewH, last.getColor(), density)
+                : new AttackEffects.FullScreenRippleEffect(viewW, viewH, last.getColor()));
+    }
+}
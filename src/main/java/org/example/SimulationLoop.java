@@ -0,0 +1,83 @@
+package org.example;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** 固定步长模拟线程：按固定 tick 推进游戏逻辑，累加器追赶落后的步数，每批步进后发布一次帧快照 */
+public class SimulationLoop {
+    private static final Logger LOGGER = Logger.getLogger(SimulationLoop.class.getName());
+    public static final long TICK_MS = 8; // 125Hz，保持整数毫秒 dt 以兼容现有 update(long dt)
+    public static final long TICK_NANOS = TICK_MS * 1_000_000L;
+    private static final int MAX_CATCH_UP = 12; // 单批最多追 12 步，超出的积压直接丢弃，避免死亡螺旋
+
+    /** 被驱动的世界：step 推进一个固定步长，publish 在一批步进后导出快照 */
+    public interface World {
+        void step(long dtMs);
+        void publish(long tickNanos);
+    }
+
+    private final World world;
+    private final Object worldLock;
+    private final ConcurrentLinkedQueue<Runnable> inputs = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean halted = false;
+    private volatile long steps = 0, droppedSteps = 0;
+
+    public SimulationLoop(World world, Object worldLock){
+        this.world = world; this.worldLock = worldLock;
+        thread = new Thread(this::run, "Sim-Loop");
+        thread.setDaemon(true);
+    }
+
+    public void start(){ thread.start(); }
+
+    /** 投递输入/命令，在模拟线程下一次循环开头执行（会立即唤醒线程） */
+    public void post(Runnable command){
+        inputs.add(command);
+        LockSupport.unpark(thread);
+    }
+
+    /** 暂停步进：线程挂起不占 CPU，仍会执行投递的命令；恢复时不补偿暂停期间的时间 */
+    public void setHalted(boolean h){
+        halted = h;
+        LockSupport.unpark(thread);
+    }
+    public boolean isHalted(){ return halted; }
+
+    public long getSteps(){ return steps; }
+    public long getDroppedSteps(){ return droppedSteps; }
+    public boolean isSimulationThread(){ return Thread.currentThread() == thread; }
+
+    public void shutdown(){
+        running = false;
+        LockSupport.unpark(thread);
+        if(!isSimulationThread()){
+            try { thread.join(500); } catch (InterruptedException e){ Thread.currentThread().interrupt(); }
+        }
+    }
+
+    private void run(){
+        long last = System.nanoTime();
+        long acc = 0;
+        while(running){
+            long now = System.nanoTime();
+            acc += now - last; last = now;
+            synchronized (worldLock){
+                Runnable cmd;
+                while((cmd = inputs.poll()) != null){
+                    try { cmd.run(); } catch (RuntimeException e){ LOGGER.log(Level.WARNING, "模拟命令异常", e); }
+                }
+                if(halted) acc = 0;
+                int n = 0;
+                while(acc >= TICK_NANOS && n < MAX_CATCH_UP){ world.step(TICK_MS); acc -= TICK_NANOS; n++; }
+                if(acc >= TICK_NANOS){ droppedSteps += acc / TICK_NANOS; acc %= TICK_NANOS; }
+                if(n > 0){ steps += n; world.publish(now - acc); }
+            }
+            if(halted){ LockSupport.park(this); last = System.nanoTime(); }
+            else LockSupport.parkNanos(this, TICK_NANOS - acc);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 帧快照交换（三缓冲）：写端与读端各独占一个缓冲，中间缓冲通过原子交换传递，
+ * 写端发布与读端获取都不阻塞，读端拿到的永远是完整的一帧。
+ */
+public class SnapshotExchange<T> {
+    private static final int FRESH = 4; // 中间缓冲含未读的新帧
+    private final Object[] buffers = new Object[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;  // 仅写端访问
+    private int front = 2; // 仅读端访问
+
+    public SnapshotExchange(Supplier<T> factory){ for(int i=0;i<3;i++) buffers[i] = factory.get(); }
+
+    /** 写端当前可写的缓冲 */
+    @SuppressWarnings("unchecked")
+    public T back(){ return (T) buffers[back]; }
+
+    /** 写端填好 back() 后发布，并换到另一个空闲缓冲 */
+    public void publish(){ back = middle.getAndSet(back | FRESH) & 3; }
+
+    /** 读端获取最新完整帧；没有新帧时返回上一次的帧 */
+    @SuppressWarnings("unchecked")
+    public T acquire(){
+        if((middle.get() & FRESH) != 0) front = middle.getAndSet(front) & 3;
+        return (T) buffers[front];
+    }
+}
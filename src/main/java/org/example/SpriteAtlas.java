@@ -0,0 +1,94 @@
+package org.example;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * 预光栅化精灵缓存：按量化颜色（RGB444）与尺寸缓存圆点、径向光晕、叠层光盘的兼容图像，
+ * 绘制时用 drawImage 贴图，代替逐帧的抗锯齿形状填充与 RadialGradientPaint 构建。
+ * 仅在绘制线程上访问（EDT 或主动渲染线程，二者不会同时工作）。
+ */
+public final class SpriteAtlas {
+    public static final int MAX_DOT = 32; // 圆点直径上限（像素）
+    private static final int GLOW_SIZE = 128; // 光晕贴图边长，绘制时双线性缩放
+    private static final int ALPHA_LEVELS = 32;
+    private static final AlphaComposite[] ALPHA = new AlphaComposite[ALPHA_LEVELS + 1];
+    static { for(int i=0;i<=ALPHA_LEVELS;i++) ALPHA[i] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, i/(float)ALPHA_LEVELS); }
+    private static final BufferedImage[] DOTS = new BufferedImage[4096 * (MAX_DOT + 1)];
+    private static final BufferedImage[] GLOWS = new BufferedImage[4096];
+    private static final BufferedImage[] DISCS = new BufferedImage[4096];
+
+    private SpriteAtlas(){}
+
+    private static int key(int rgb){ return ((rgb >> 12) & 0xF00) | ((rgb >> 8) & 0x0F0) | ((rgb >> 4) & 0x00F); }
+    private static Color color(int key, int alpha){ return new Color(((key >> 8) & 15) * 17, ((key >> 4) & 15) * 17, (key & 15) * 17, alpha); }
+
+    /** 量化后的 SRC_OVER 透明度（0..1），返回缓存实例 */
+    public static AlphaComposite alpha(float a){
+        int level = Math.round(a * ALPHA_LEVELS);
+        return ALPHA[level < 0 ? 0 : Math.min(ALPHA_LEVELS, level)];
+    }
+
+    /** 不透明抗锯齿实心圆点，直径 diameter（1..MAX_DOT） */
+    public static BufferedImage dot(int rgb, int diameter){
+        int d = Math.max(1, Math.min(MAX_DOT, diameter));
+        int k = key(rgb), idx = k * (MAX_DOT + 1) + d;
+        BufferedImage img = DOTS[idx];
+        if(img == null){
+            img = create(d, d);
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(color(k, 255)); g.fillOval(0, 0, d, d);
+            g.dispose();
+            DOTS[idx] = img;
+        }
+        return img;
+    }
+
+    /** 中心不透明、边缘全透明的径向光晕 */
+    public static BufferedImage glow(int rgb){
+        int k = key(rgb);
+        BufferedImage img = GLOWS[k];
+        if(img == null){ img = radial(new float[]{0f, 1f}, new Color[]{color(k, 255), color(k, 0)}); GLOWS[k] = img; }
+        return img;
+    }
+
+    /** 10 层半透明同心圆叠加出的柔光盘（模糊预警圈） */
+    public static BufferedImage layeredDisc(int rgb){
+        int k = key(rgb);
+        BufferedImage img = DISCS[k];
+        if(img == null){
+            img = create(GLOW_SIZE, GLOW_SIZE);
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            int r = GLOW_SIZE / 2, layers = 10;
+            for(int i=layers;i>=1;i--){ float f = i/(float)layers; int rr = (int)(r*f); g.setColor(color(k, (int)(Math.min(0.9f, f) * 140))); g.fillOval(r-rr, r-rr, rr*2, rr*2); }
+            g.dispose();
+            DISCS[k] = img;
+        }
+        return img;
+    }
+
+    /** 按给定色标预渲染一张径向渐变圆（不缓存，调用方自行持有） */
+    public static BufferedImage radial(float[] fractions, Color[] colors){
+        BufferedImage img = create(GLOW_SIZE, GLOW_SIZE);
+        Graphics2D g = img.createGraphics();
+        float r = GLOW_SIZE / 2f;
+        g.setPaint(new RadialGradientPaint(r, r, r, fractions, colors));
+        g.fillRect(0, 0, GLOW_SIZE, GLOW_SIZE);
+        g.dispose();
+        return img;
+    }
+
+    /** 把光晕类贴图缩放绘制到以 (cx, cy) 为圆心、半径 r 的区域 */
+    public static void drawScaled(Graphics2D g, BufferedImage img, int cx, int cy, int r){
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(img, cx - r, cy - r, r * 2, r * 2, null);
+    }
+
+    private static BufferedImage create(int w, int h){
+        if(GraphicsEnvironment.isHeadless()) return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+    }
+}
@@ -0,0 +1,81 @@
+package org.example;
+
+/** 发声管理：记录每个通道上正在发声的音符，限制总复音数，超限时抢占最旧或最弱的音 */
+public class VoiceAllocator {
+    public enum StealPolicy { OLDEST, QUIETEST }
+
+    private static final int CHANNELS = 16;
+    private final long[] startSeq = new long[CHANNELS * 128]; // 0 表示未发声，否则为起音序号
+    private final int[] velocity = new int[CHANNELS * 128];
+    private final int maxPolyphony;
+    private final StealPolicy policy;
+    private long seq = 0;
+    private int active = 0;
+    private long steals = 0;
+
+    public VoiceAllocator(int maxPolyphony, StealPolicy policy){
+        this.maxPolyphony = Math.max(1, maxPolyphony);
+        this.policy = policy;
+    }
+
+    /**
+     * 登记一次起音。同音重复起音视为重新触发；达到上限时选出被抢占的音，
+     * 返回其 (channel<<7 | note) 供调用方先发送 noteOff，无需抢占时返回 -1。
+     */
+    public int noteOn(int channel, int note, int vel){
+        int key = channel << 7 | note;
+        int stolen = -1;
+        if(startSeq[key] == 0){
+            if(active >= maxPolyphony){ stolen = pickVictim(); release(stolen); steals++; }
+            active++;
+        }
+        startSeq[key] = ++seq; velocity[key] = vel;
+        return stolen;
+    }
+
+    /** 登记一次释放；该音并未发声（已被抢占或重复释放）时返回 false */
+    public boolean noteOff(int channel, int note){
+        int key = channel << 7 | note;
+        if(startSeq[key] == 0) return false;
+        release(key);
+        return true;
+    }
+
+    /** 只有该音仍是序号为 startedSeq 的那次起音时才释放（之后被重新触发则保留新的一次） */
+    public boolean noteOff(int channel, int note, long startedSeq){
+        int key = channel << 7 | note;
+        if(startSeq[key] == 0 || startSeq[key] != startedSeq) return false;
+        release(key);
+        return true;
+    }
+
+    /** 该音当前这次起音的序号，未发声时为 0 */
+    public long startSeq(int channel, int note){ return startSeq[channel << 7 | note]; }
+
+    /** 逐个回调所有发声中的音并清空登记 */
+    public void releaseAll(VoiceSink sink){
+        for(int key=0; key<startSeq.length && active>0; key++){
+            if(startSeq[key] != 0){ release(key); sink.noteOff(key >> 7, key & 127); }
+        }
+    }
+
+    private int pickVictim(){
+        int victim = -1; long bestSeq = Long.MAX_VALUE; int bestVel = Integer.MAX_VALUE;
+        for(int key=0; key<startSeq.length; key++){
+            long s = startSeq[key]; if(s == 0) continue;
+            boolean better = policy == StealPolicy.QUIETEST
+                    ? velocity[key] < bestVel || (velocity[key] == bestVel && s < bestSeq)
+                    : s < bestSeq;
+            if(better){ victim = key; bestSeq = s; bestVel = velocity[key]; }
+        }
+        return victim;
+    }
+
+    private void release(int key){ startSeq[key] = 0; velocity[key] = 0; active--; }
+
+    public int getActiveVoices(){ return active; }
+    public int getMaxPolyphony(){ return maxPolyphony; }
+    public long getSteals(){ return steals; }
+
+    public interface VoiceSink { void noteOff(int channel, int note); }
+}
@@ -0,0 +1,101 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySaveStoreTest {
+    @TempDir Path dir;
+
+    private static SaveManager.SaveData data(long score, double... healths){
+        SaveManager.SaveData d = new SaveManager.SaveData();
+        d.currentBossIndex = 1; d.totalScore = score; d.bpm = 140; d.skillCharge = 0.5; d.comboCount = 7;
+        d.ultimateComboRemainMs = 1200; d.volume = 80; d.bpmMax = 200; d.journalSeq = 42; d.bossHealths = healths;
+        return d;
+    }
+
+    @Test
+    void roundTripsAcrossReopen() throws IOException {
+        Path p = dir.resolve("save.bin");
+        try (BinarySaveStore s = BinarySaveStore.open(p, 3)){ assertNull(s.read()); s.write(data(100, 1, 2, 3)); }
+        try (BinarySaveStore s = BinarySaveStore.open(p, 3)){
+            SaveManager.SaveData d = s.read();
+            assertEquals(100, d.totalScore); assertEquals(140, d.bpm); assertEquals(42, d.journalSeq);
+            assertArrayEquals(new double[]{1, 2, 3}, d.bossHealths);
+        }
+    }
+
+    @Test
+    void corruptNewestSlotFallsBackToOlder() throws IOException {
+        Path p = dir.resolve("save.bin");
+        try (BinarySaveStore s = BinarySaveStore.open(p, 2)){ s.write(data(100, 1, 2)); s.write(data(200, 1, 2)); }
+        // seq 2 写在槽位 A（紧跟 16 字节头部），篡改其负载模拟写到一半崩溃
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.WRITE)){ ch.write(ByteBuffer.wrap(new byte[]{(byte)0xFF}), 16 + 12 + 5); }
+        try (BinarySaveStore s = BinarySaveStore.open(p, 2)){
+            assertEquals(100, s.read().totalScore);
+            s.write(data(300, 1, 2)); // 覆盖损坏的槽位
+            assertEquals(300, s.read().totalScore);
+        }
+    }
+
+    @Test
+    void upgradesVersion1File() throws IOException {
+        Path p = dir.resolve("save.bin");
+        Files.write(p, v1File(3, 777, 100, 101, 102));
+        try (BinarySaveStore s = BinarySaveStore.open(p, 3)){
+            SaveManager.SaveData d = s.read();
+            assertEquals(777, d.totalScore); assertEquals(0, d.journalSeq);
+            assertArrayEquals(new double[]{100, 101, 102}, d.bossHealths);
+        }
+        assertFalse(Files.exists(dir.resolve("save.bin.tmp")));
+        try (BinarySaveStore s = BinarySaveStore.open(p, 3)){ assertEquals(777, s.read().totalScore); }
+    }
+
+    @Test
+    void migratesWhenBossCountChanges() throws IOException {
+        Path p = dir.resolve("save.bin");
+        try (BinarySaveStore s = BinarySaveStore.open(p, 3)){ s.write(data(500, 10, 20, 30)); }
+        try (BinarySaveStore s = BinarySaveStore.open(p, 5)){
+            SaveManager.SaveData d = s.read();
+            assertEquals(500, d.totalScore); assertEquals(42, d.journalSeq);
+            assertEquals(5, d.bossHealths.length);
+            assertEquals(30, d.bossHealths[2]); assertTrue(Double.isNaN(d.bossHealths[3])); // 新增的 boss 由 SaveManager 补满血
+        }
+        try (BinarySaveStore s = BinarySaveStore.open(p, 2)){ assertArrayEquals(new double[]{10, 20}, s.read().bossHealths); }
+    }
+
+    @Test
+    void rebuildsUnrecognisedFileAsEmpty() throws IOException {
+        Path p = dir.resolve("save.bin");
+        Files.write(p, new byte[40]);
+        try (BinarySaveStore s = BinarySaveStore.open(p, 2)){ assertNull(s.read()); s.write(data(1, 1, 1)); }
+        try (BinarySaveStore s = BinarySaveStore.open(p, 2)){ assertEquals(1, s.read().totalScore); }
+    }
+
+    /** 按 v1 布局（无 journalSeq）手工生成一个存档，槽位 A 有效 */
+    private static byte[] v1File(int bossCount, long score, double... healths){
+        int slot = 12 + 44 + 8 * bossCount;
+        ByteBuffer b = ByteBuffer.allocate(16 + 2 * slot);
+        b.putInt(0, BinarySaveStore.MAGIC).putShort(4, (short)1).putShort(6, (short)bossCount).putInt(8, slot);
+        ByteBuffer s = b.slice(16, slot);
+        int o = 12;
+        s.putInt(o, 0); o += 4; s.putLong(o, score); o += 8; s.putInt(o, 120); o += 4; s.putDouble(o, 0); o += 8;
+        s.putInt(o, 0); o += 4; s.putLong(o, 0); o += 8; s.putInt(o, 100); o += 4; s.putInt(o, 180); o += 4;
+        for (double h : healths){ s.putDouble(o, h); o += 8; }
+        s.putLong(0, 1);
+        CRC32 crc = new CRC32();
+        s.limit(8).position(0); crc.update(s);
+        s.limit(slot).position(12); crc.update(s);
+        s.clear().putInt(8, (int)crc.getValue());
+        return b.array();
+    }
+}
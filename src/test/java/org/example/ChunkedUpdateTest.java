@@ -0,0 +1,56 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedUpdateTest {
+    @Test
+    void coversEveryIndexExactlyOnce() {
+        ChunkedUpdate forced = new ChunkedUpdate(0, 1); // 任意规模都分块
+        for (int n : new int[]{0, 1, 2, 7, 64, 1000}) {
+            AtomicIntegerArray hits = new AtomicIntegerArray(n);
+            forced.run(n, (from, to) -> { for (int i = from; i < to; i++) hits.incrementAndGet(i); });
+            for (int i = 0; i < n; i++) assertEquals(1, hits.get(i), "n=" + n + " i=" + i);
+        }
+    }
+
+    @Test
+    void parallelProjectileMoveMatchesSerial() {
+        ProjectileStore serial = new ProjectileStore(512), parallel = new ProjectileStore(512);
+        Random r = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            float sx = r.nextFloat() * 600, sy = r.nextFloat() * 400, tx = r.nextFloat() * 600, ty = r.nextFloat() * 400, spd = 100 + r.nextFloat() * 900;
+            serial.spawn(sx, sy, tx, ty, spd, i, Color.WHITE);
+            parallel.spawn(sx, sy, tx, ty, spd, i, Color.WHITE);
+        }
+        ChunkedUpdate forced = new ChunkedUpdate(0, 1);
+        for (int tick = 0; tick < 60; tick++) {
+            boolean trail = tick % 2 == 0;
+            serial.move(0, serial.size(), 1 / 60f, trail, ProjectileStore.MAX_TRAIL);
+            forced.run(parallel.size(), (from, to) -> parallel.move(from, to, 1 / 60f, trail, ProjectileStore.MAX_TRAIL));
+            serial.removeHits(); parallel.removeHits();
+            assertEquals(serial.size(), parallel.size(), "tick " + tick);
+            for (int i = 0; i < serial.size(); i++) {
+                assertEquals(serial.damage(i), parallel.damage(i));
+                assertEquals(serial.x(i), parallel.x(i)); assertEquals(serial.y(i), parallel.y(i));
+                assertEquals(serial.trailLen(i), parallel.trailLen(i));
+                for (int k = 0; k < serial.trailLen(i); k++) {
+                    assertEquals(serial.trailX(i, k), parallel.trailX(i, k)); assertEquals(serial.trailY(i, k), parallel.trailY(i, k));
+                }
+            }
+        }
+    }
+
+    @Test
+    void runsSeriallyBelowThreshold() {
+        ChunkedUpdate c = new ChunkedUpdate(100, 1);
+        int[] calls = {0};
+        c.run(99, (from, to) -> { calls[0]++; assertEquals(0, from); assertEquals(99, to); });
+        assertEquals(1, calls[0]);
+    }
+}
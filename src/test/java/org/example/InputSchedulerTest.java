@@ -0,0 +1,71 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputSchedulerTest {
+    private static final long GAP = 1000 / InputScheduler.MAX_RATE;
+
+    @Test
+    void firesOnPressThenRepeatsWhileHeld() {
+        InputScheduler s = new InputScheduler(4);
+        s.press(2, 0);
+        assertEquals(1 << 2, s.poll(0, 100));
+        assertEquals(0, s.poll(100, 100));
+        assertEquals(1 << 2, s.poll(160, 100)); // 首次重复延迟 = 间隔 * 1.6
+        assertEquals(0, s.poll(250, 100));
+        assertEquals(1 << 2, s.poll(260, 100));
+        s.release(2, 270);
+        assertEquals(0, s.poll(360, 100));
+    }
+
+    @Test
+    void mergesKeysDueInSameTick() {
+        InputScheduler s = new InputScheduler(4);
+        s.press(0, 0); s.press(3, 0);
+        assertEquals(1 | 1 << 3, s.poll(0, 100));
+    }
+
+    @Test
+    void debouncesAutoRepeatPress() {
+        InputScheduler s = new InputScheduler(4);
+        s.press(1, 0);
+        assertEquals(1 << 1, s.poll(0, 100));
+        s.press(1, 30); // 系统自动重复
+        assertEquals(0, s.poll(30, 100));
+        s.release(1, 50); s.press(1, 52); // X11 的 RELEASE/PRESS 对
+        assertEquals(0, s.poll(52, 100));
+        assertEquals(1 << 1, s.poll(160, 100)); // 保留原有的重复节奏
+        assertEquals(2, s.getDebounced());
+    }
+
+    @Test
+    void capsFireRatePerKey() {
+        InputScheduler s = new InputScheduler(1);
+        s.press(0, 0);
+        assertEquals(1, s.poll(0, 10));
+        assertEquals(0, s.poll(16, 10));
+        assertEquals(1, s.getCapped());
+        assertEquals(0, s.poll(GAP - 1, 10));
+        assertEquals(1, s.poll(GAP, 10));
+    }
+
+    @Test
+    void pressNanosTakenOnce() {
+        InputScheduler s = new InputScheduler(2);
+        s.press(0, 0, 1234);
+        assertEquals(1234, s.takePressNanos(0));
+        assertEquals(0, s.takePressNanos(0));
+        assertEquals(0, s.takePressNanos(5));
+    }
+
+    @Test
+    void ignoresOutOfRangeKeys() {
+        InputScheduler s = new InputScheduler(2);
+        s.press(-1, 0); s.press(2, 0);
+        assertEquals(0, s.poll(0, 100));
+        assertFalse(s.isDown(2));
+        assertThrows(IllegalArgumentException.class, () -> new InputScheduler(32));
+    }
+}
@@ -0,0 +1,61 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MidiSchedulerTest {
+    private static final long MS = 1_000_000L;
+    private final List<ShortMessage> sent = new ArrayList<>();
+    private final MidiScheduler scheduler = new MidiScheduler(null, new Receiver(){
+        @Override public void send(MidiMessage m, long timeStamp){ synchronized (sent){ sent.add((ShortMessage) m); } }
+        @Override public void close(){}
+    }, 256, new VoiceAllocator(8, VoiceAllocator.StealPolicy.OLDEST));
+
+    @AfterEach void shutdown(){ scheduler.shutdown(); }
+
+    private int count(int command, int note){
+        synchronized (sent){ return (int) sent.stream().filter(m -> m.getCommand() == command && m.getData1() == note).count(); }
+    }
+
+    private void awaitCount(int command, int note, int n) throws InterruptedException {
+        long deadline = System.nanoTime() + 2000 * MS;
+        while(count(command, note) < n && System.nanoTime() < deadline) Thread.sleep(2);
+        assertEquals(n, count(command, note));
+    }
+
+    @Test
+    void patternReleaseDoesNotCutPlayerRestrike() throws InterruptedException {
+        long start = System.nanoTime();
+        scheduler.note(start, 0, 60, 100, 100 * MS); // 模式持有该音 100ms
+        awaitCount(ShortMessage.NOTE_ON, 60, 1);
+        scheduler.sendHit(0, -1, 60, 110, 400 * MS); // 玩家在同一通道重击同一个音
+        while(System.nanoTime() - start < 250 * MS) Thread.sleep(5); // 模式的释放早已到期
+        assertEquals(0, count(ShortMessage.NOTE_OFF, 60));
+        assertEquals(1, scheduler.getVoices().getActiveVoices());
+        awaitCount(ShortMessage.NOTE_OFF, 60, 1); // 击打自己的释放
+        assertEquals(0, scheduler.getVoices().getActiveVoices());
+    }
+
+    @Test
+    void patternNoteReleasesAfterGate() throws InterruptedException {
+        scheduler.note(System.nanoTime(), 2, 64, 90, 20 * MS);
+        awaitCount(ShortMessage.NOTE_OFF, 64, 1);
+        assertEquals(1, count(ShortMessage.NOTE_ON, 64));
+        assertEquals(0, scheduler.getVoices().getActiveVoices());
+    }
+
+    @Test
+    void percussionGatesItselfWithoutExplicitRelease() throws InterruptedException {
+        scheduler.sendHit(9, -1, 38, 100);
+        awaitCount(ShortMessage.NOTE_OFF, 38, 1);
+        assertEquals(0, scheduler.getVoices().getActiveVoices());
+    }
+}
@@ -0,0 +1,117 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SaveJournalTest {
+    private static final double[] MAX = {100, 100};
+    @TempDir Path dir;
+
+    private static SaveManager.SaveData fresh(){
+        SaveManager.SaveData d = new SaveManager.SaveData();
+        d.bpm = 120; d.bossHealths = MAX.clone();
+        return d;
+    }
+
+    @Test
+    void replaysRecordsInOrder() {
+        Path p = dir.resolve("j");
+        SaveJournal j = new SaveJournal(p, 200);
+        j.append(SaveJournal.DAMAGE, 0, 30);
+        j.append(SaveJournal.HEAL, 0, 50); // 不超过满血
+        j.append(SaveJournal.BPM, 150, 0);
+        j.append(SaveJournal.DAMAGE, 1, 15);
+        j.close();
+        SaveManager.SaveData d = fresh();
+        new SaveJournal(p, 200).replay(d, MAX);
+        assertArrayEquals(new double[]{100, 85}, d.bossHealths);
+        assertEquals(45, d.totalScore); assertEquals(150, d.bpm); assertEquals(4, d.journalSeq);
+    }
+
+    @Test
+    void ignoresTornTailRecord() throws IOException {
+        Path p = dir.resolve("j");
+        SaveJournal j = new SaveJournal(p, 200);
+        j.append(SaveJournal.DAMAGE, 0, 10);
+        j.append(SaveJournal.DAMAGE, 0, 20);
+        j.close();
+        byte[] all = Files.readAllBytes(p);
+        Files.write(p, java.util.Arrays.copyOf(all, all.length - 5)); // 第二条记录只写了一半
+        SaveManager.SaveData d = fresh();
+        new SaveJournal(p, 200).replay(d, MAX);
+        assertEquals(90, d.bossHealths[0]); assertEquals(1, d.journalSeq);
+    }
+
+    @Test
+    void stopsAtCorruptRecord() throws IOException {
+        Path p = dir.resolve("j");
+        SaveJournal j = new SaveJournal(p, 200);
+        for (int i = 0; i < 3; i++) j.append(SaveJournal.DAMAGE, 0, 10);
+        j.close();
+        byte[] all = Files.readAllBytes(p);
+        all[28 + 20] ^= 1; // 第二条记录的 value
+        Files.write(p, all, StandardOpenOption.TRUNCATE_EXISTING);
+        SaveManager.SaveData d = fresh();
+        new SaveJournal(p, 200).replay(d, MAX);
+        assertEquals(90, d.bossHealths[0]); assertEquals(1, d.journalSeq);
+    }
+
+    @Test
+    void skipsRecordsAlreadyInSnapshot() {
+        Path p = dir.resolve("j");
+        SaveJournal j = new SaveJournal(p, 200);
+        j.append(SaveJournal.DAMAGE, 0, 10);
+        j.append(SaveJournal.DAMAGE, 0, 10);
+        j.close();
+        SaveManager.SaveData d = fresh();
+        d.bossHealths[0] = 90; d.totalScore = 10; d.journalSeq = 1;
+        new SaveJournal(p, 200).replay(d, MAX);
+        assertEquals(80, d.bossHealths[0]); assertEquals(20, d.totalScore); assertEquals(2, d.journalSeq);
+    }
+
+    @Test
+    void compactKeepsOnlyNewerRecords() throws IOException {
+        Path p = dir.resolve("j");
+        SaveJournal j = new SaveJournal(p, 2);
+        j.append(SaveJournal.DAMAGE, 0, 10);
+        j.append(SaveJournal.DAMAGE, 0, 10);
+        assertTrue(j.needsSnapshot());
+        j.append(SaveJournal.BOSS_SWITCH, 1, 0);
+        j.compact(2);
+        j.markSnapshot();
+        assertFalse(j.needsSnapshot());
+        assertEquals(28, Files.size(p));
+        assertFalse(Files.exists(dir.resolve("j.tmp")));
+        j.append(SaveJournal.DAMAGE, 1, 5); // 压缩后继续追加
+        j.close();
+        SaveManager.SaveData d = fresh();
+        d.bossHealths[0] = 80; d.journalSeq = 2;
+        new SaveJournal(p, 2).replay(d, MAX);
+        assertEquals(1, d.currentBossIndex); assertEquals(95, d.bossHealths[1]); assertEquals(4, d.journalSeq);
+    }
+
+    @Test
+    void compactBeforeReplayKeepsNewerRecords() throws IOException {
+        Path p = dir.resolve("j");
+        SaveJournal j = new SaveJournal(p, 200);
+        for (int i = 0; i < 3; i++) j.append(SaveJournal.DAMAGE, 0, 10);
+        j.close();
+        SaveJournal reopened = new SaveJournal(p, 200); // 重启后尚未重放，内存中的 seq 为 0
+        reopened.compact(1);
+        assertEquals(2 * 28, Files.size(p));
+        assertEquals(3, reopened.currentSeq());
+        reopened.append(SaveJournal.DAMAGE, 1, 5);
+        reopened.close();
+        SaveManager.SaveData d = fresh();
+        d.bossHealths[0] = 90; d.journalSeq = 1;
+        new SaveJournal(p, 200).replay(d, MAX);
+        assertEquals(70, d.bossHealths[0]); assertEquals(95, d.bossHealths[1]); assertEquals(4, d.journalSeq);
+    }
+}
@@ -0,0 +1,65 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoiceAllocatorTest {
+    private static int key(int channel, int note){ return channel << 7 | note; }
+
+    @Test
+    void stealsOldestVoiceAtLimit() {
+        VoiceAllocator v = new VoiceAllocator(2, VoiceAllocator.StealPolicy.OLDEST);
+        assertEquals(-1, v.noteOn(0, 60, 100));
+        assertEquals(-1, v.noteOn(0, 64, 10));
+        assertEquals(key(0, 60), v.noteOn(1, 67, 100));
+        assertEquals(2, v.getActiveVoices()); assertEquals(1, v.getSteals());
+        assertFalse(v.noteOff(0, 60)); // 已被抢占
+        assertTrue(v.noteOff(0, 64));
+    }
+
+    @Test
+    void stealsQuietestVoiceAtLimit() {
+        VoiceAllocator v = new VoiceAllocator(2, VoiceAllocator.StealPolicy.QUIETEST);
+        v.noteOn(0, 60, 100);
+        v.noteOn(0, 64, 10);
+        assertEquals(key(0, 64), v.noteOn(0, 67, 90));
+    }
+
+    @Test
+    void retriggerDoesNotTakeAnotherVoice() {
+        VoiceAllocator v = new VoiceAllocator(2, VoiceAllocator.StealPolicy.OLDEST);
+        v.noteOn(0, 60, 100);
+        v.noteOn(0, 64, 100);
+        assertEquals(-1, v.noteOn(0, 60, 100));
+        assertEquals(2, v.getActiveVoices()); assertEquals(0, v.getSteals());
+        assertEquals(key(0, 64), v.noteOn(0, 67, 100)); // 重新触发后 60 不再是最旧的
+    }
+
+    @Test
+    void gatedNoteOffIgnoresRetriggeredNote() {
+        VoiceAllocator v = new VoiceAllocator(4, VoiceAllocator.StealPolicy.OLDEST);
+        v.noteOn(9, 38, 100);
+        long first = v.startSeq(9, 38);
+        v.noteOn(9, 38, 100);
+        long second = v.startSeq(9, 38);
+        assertNotEquals(first, second);
+        assertFalse(v.noteOff(9, 38, first)); // 第一次击打的门限到期，不能截断第二次
+        assertEquals(1, v.getActiveVoices());
+        assertTrue(v.noteOff(9, 38, second));
+        assertEquals(0, v.startSeq(9, 38)); assertEquals(0, v.getActiveVoices());
+    }
+
+    @Test
+    void releaseAllReportsEveryVoice() {
+        VoiceAllocator v = new VoiceAllocator(8, VoiceAllocator.StealPolicy.OLDEST);
+        v.noteOn(0, 60, 100); v.noteOn(3, 40, 100); v.noteOn(9, 36, 100);
+        List<Integer> off = new ArrayList<>();
+        v.releaseAll((ch, note) -> off.add(key(ch, note)));
+        assertEquals(List.of(key(0, 60), key(3, 40), key(9, 36)), off);
+        assertEquals(0, v.getActiveVoices());
+    }
+}